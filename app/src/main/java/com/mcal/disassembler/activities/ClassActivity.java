@@ -1,31 +1,26 @@
 package com.mcal.disassembler.activities;
 
-import android.annotation.SuppressLint;
 import android.app.ProgressDialog;
-import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Environment;
-import android.os.Handler;
-import android.os.Message;
-import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.AdapterView.OnItemClickListener;
-import android.widget.BaseAdapter;
-import android.widget.ListView;
 
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.appcompat.widget.AppCompatImageView;
-import androidx.appcompat.widget.AppCompatTextView;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mcal.disassembler.R;
+import com.mcal.disassembler.adapters.SymbolsAdapter;
 import com.mcal.disassembler.nativeapi.DisassemblerClass;
-import com.mcal.disassembler.nativeapi.DisassemblerSymbol;
 import com.mcal.disassembler.nativeapi.DisassemblerVtable;
 import com.mcal.disassembler.nativeapi.Dumper;
+import com.mcal.disassembler.nativeapi.SymbolTable;
+import com.mcal.disassembler.task.CancellationToken;
+import com.mcal.disassembler.task.Priority;
+import com.mcal.disassembler.task.TaskCallback;
+import com.mcal.disassembler.task.TaskScheduler;
 import com.mcal.disassembler.util.ClassGeter;
 import com.mcal.disassembler.util.FileSaver;
 import com.mcal.disassembler.util.HeaderGenerator;
@@ -35,33 +30,13 @@ import com.mcal.materialdesign.widgets.SnackBar;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 public class ClassActivity extends AppCompatActivity {
     ProgressDialog dialog;
-
-    @SuppressLint("HandlerLeak")
-    Handler mHandler = new Handler() {
-        @Override
-        public void handleMessage(Message msg) {
-            super.handleMessage(msg);
-            switch (msg.what) {
-                case 0:
-                    showSavingProgressDialog();
-                    break;
-                case 1:
-                    new SnackBar(ClassActivity.this, ClassActivity.this.getString(R.string.done)).show();
-                    dismissProgressDialog();
-                    break;
-            }
-        }
-    };
+    private CancellationToken taskToken;
+    private CancellationToken classToken;
+    private CancellationToken vtableToken;
     private String path;
     private String name;
-    private List<Map<String, Object>> data;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -71,17 +46,27 @@ public class ClassActivity extends AppCompatActivity {
         name = getIntent().getExtras().getString("name");
         path = getIntent().getExtras().getString("path");
 
-        ListView list = findViewById(R.id.class_activity_list_view);
-        data = getData();
-        SymbolsAdapter adapter = new SymbolsAdapter(this);
+        RecyclerView list = findViewById(R.id.class_activity_list_view);
+        list.setLayoutManager(new LinearLayoutManager(this));
+        SymbolsAdapter adapter = new SymbolsAdapter(path);
         list.setAdapter(adapter);
-        list.setOnItemClickListener(new ItemClickListener());
 
         setTitle(name);
 
-        if (hasVtable()) {
-            findViewById(R.id.classactivityButtonFloat).setVisibility(View.VISIBLE);
-        }
+        classToken = TaskScheduler.getInstance().submit(Priority.INTERACTIVE, (token, progress) -> findClass(), new TaskCallback<DisassemblerClass>() {
+            @Override
+            public void onSuccess(DisassemblerClass classThis) {
+                if (classThis != null)
+                    adapter.setSymbols(classThis.getSymbols());
+            }
+        });
+        vtableToken = TaskScheduler.getInstance().submit(Priority.INTERACTIVE, (token, progress) -> hasVtable(), new TaskCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean hasVtable) {
+                if (hasVtable)
+                    findViewById(R.id.classactivityButtonFloat).setVisibility(View.VISIBLE);
+            }
+        });
     }
 
     @SuppressWarnings("ConstantConditions")
@@ -93,51 +78,50 @@ public class ClassActivity extends AppCompatActivity {
         getSupportActionBar().setDisplayShowHomeEnabled(true);
     }
 
-    @NotNull
-    private List<Map<String, Object>> getData() {
-        List<Map<String, Object>> list = new ArrayList<>();
-        Map<String, Object> map;
-        DisassemblerClass classThis = findClass();
-        if (classThis == null)
-            return list;
-        for (int i = 0; i < classThis.getSymbols().size(); ++i) {
-            map = new HashMap<>();
-            if (classThis.getSymbols().get(i).getType() == 1)
-                map.put("img", R.drawable.ic_box_blue);
-            else if (classThis.getSymbols().get(i).getType() == 2)
-                map.put("img", R.drawable.ic_box_red);
-            else map.put("img", R.drawable.ic_box_green);
-            map.put("title", classThis.getSymbols().get(i).getDemangledName());
-            map.put("info", classThis.getSymbols().get(i).getName());
-            map.put("type", classThis.getSymbols().get(i).getType());
-            list.add(map);
-        }
-        return list;
-    }
-
     public void save(View view) {
-        new Thread() {
-            public void run() {
-                mHandler.sendEmptyMessage(0);
-                HeaderGenerator generator = new HeaderGenerator(findClass(), findVtable(), path);
-                FileSaver saver = new FileSaver(Environment.getExternalStorageDirectory().toString() + "/Disassembler/headers/", getSaveName(name), generator.generate());
-                saver.save();
-                mHandler.sendEmptyMessage(1);
+        cancelTask();
+        showSavingProgressDialog();
+        taskToken = TaskScheduler.getInstance().submit(Priority.BACKGROUND, (token, progress) -> {
+            HeaderGenerator generator = new HeaderGenerator(findClass(), findVtable(), path);
+            token.throwIfCancelled();
+            FileSaver saver = new FileSaver(Environment.getExternalStorageDirectory().toString() + "/Disassembler/headers/", getSaveName(name), generator.generate());
+            saver.save();
+            return null;
+        }, new TaskCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                new SnackBar(ClassActivity.this, getString(R.string.done)).show();
+                dismissProgressDialog();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                super.onError(error);
+                dismissProgressDialog();
             }
-        }.start();
+        });
+    }
+
+    private void cancelTask() {
+        if (taskToken != null)
+            taskToken.cancel();
+        taskToken = null;
+    }
+
+    @Override
+    protected void onDestroy() {
+        cancelTask();
+        classToken.cancel();
+        vtableToken.cancel();
+        dismissProgressDialog();
+        super.onDestroy();
     }
 
     private DisassemblerClass findClass() {
-        for (DisassemblerClass clasz : Dumper.classes)
-            if (clasz.getName().equals(name))
-                return clasz;
-        return ClassGeter.getClass(name);
+        return ClassGeter.getClass(path, name);
     }
 
     private DisassemblerVtable findVtable() {
-        for (DisassemblerVtable clasz : Dumper.exploed)
-            if (clasz.getName().equals(getZTVName(name)))
-                return clasz;
         return VtableDumper.dump(path, getZTVName(name));
     }
 
@@ -166,30 +150,33 @@ public class ClassActivity extends AppCompatActivity {
     }
 
     public void toVtableActivity(View view) {
+        cancelTask();
         showLoadingProgressDialog();
-        new Thread() {
-            public void run() {
-                DisassemblerVtable vtable = VtableDumper.dump(path, getZTVName(name));
+        taskToken = TaskScheduler.getInstance().submit(Priority.INTERACTIVE, (token, progress) -> VtableDumper.dump(path, getZTVName(name)), new TaskCallback<DisassemblerVtable>() {
+            @Override
+            public void onSuccess(DisassemblerVtable vtable) {
                 if (vtable != null)
-                    ClassActivity.this.toVtableActivity_(vtable);
+                    toVtableActivity_(vtable);
+                dismissProgressDialog();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                super.onError(error);
                 dismissProgressDialog();
             }
-        }.start();
+        });
     }
 
     private boolean hasVtable() {
-        String vtableThis = getZTVName(name);
-        for (DisassemblerSymbol symbol : Dumper.symbols)
-            if (symbol.getName().equals(vtableThis))
-                return true;
-        return false;
+        SymbolTable table = Dumper.getSymbolTable(path);
+        return table != null && table.getSymbol(getZTVName(name)) != null;
     }
 
     public void toVtableActivity_(DisassemblerVtable vtable) {
         Bundle bundle = new Bundle();
         bundle.putString("name", getZTVName(name));
         bundle.putString("path", path);
-        Dumper.exploed.addElement(vtable);
         Intent intent = new Intent(this, VtableActivity.class);
         intent.putExtras(bundle);
         startActivity(intent);
@@ -198,12 +185,14 @@ public class ClassActivity extends AppCompatActivity {
     public void showLoadingProgressDialog() {
         dialog = new ProgressDialog(this);
         dialog.setTitle(getString(R.string.loading));
+        dialog.setOnCancelListener(d -> cancelTask());
         dialog.show();
     }
 
     public void showSavingProgressDialog() {
         dialog = new ProgressDialog(this);
         dialog.setTitle(getString(R.string.saving));
+        dialog.setOnCancelListener(d -> cancelTask());
         dialog.show();
     }
 
@@ -222,71 +211,4 @@ public class ClassActivity extends AppCompatActivity {
         }
         return super.onOptionsItemSelected(item);
     }
-
-    static class ViewHolder {
-        public AppCompatTextView info;
-        public int type;
-        AppCompatImageView img;
-        AppCompatTextView title;
-    }
-
-    private final class ItemClickListener implements OnItemClickListener {
-        @Override
-        public void onItemClick(AdapterView<?> arg0, @NotNull View view, int arg2, long arg3) {
-            Bundle bundle = new Bundle();
-            bundle.putString("demangledName", (String) (((ViewHolder) view.getTag()).title.getText()));
-            bundle.putString("name", (String) (((ViewHolder) view.getTag()).info.getText()));
-            bundle.putInt("type", ((ViewHolder) view.getTag()).type);
-            bundle.putString("filePath", path);
-            Intent intent = new Intent(ClassActivity.this, SymbolActivity.class);
-            intent.putExtras(bundle);
-            startActivity(intent);
-        }
-    }
-
-    public class SymbolsAdapter extends BaseAdapter {
-        private LayoutInflater mInflater;
-
-        private SymbolsAdapter(Context context) {
-            this.mInflater = LayoutInflater.from(context);
-        }
-
-        @Override
-        public int getCount() {
-            return data.size();
-        }
-
-        @Override
-        public Object getItem(int position) {
-            return position;
-        }
-
-        @Override
-        public long getItemId(int position) {
-            return position;
-        }
-
-        @SuppressLint("InflateParams")
-        @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            ViewHolder holder = null;
-
-            if (convertView == null) {
-                holder = new ViewHolder();
-                convertView = mInflater.inflate(R.layout.symbol_list_item, null);
-                holder.img = convertView.findViewById(R.id.symbolslistitemimg);
-                holder.title = convertView.findViewById(R.id.symbolslistitemTextViewtop);
-                holder.info = convertView.findViewById(R.id.symbolslistitemTextViewbottom);
-                convertView.setTag(holder);
-            } else {
-                holder = (ViewHolder) convertView.getTag();
-            }
-            holder.img.setBackgroundResource((Integer) data.get(position).get("img"));
-            holder.title.setText((String) data.get(position).get("title"));
-            holder.info.setText((String) data.get(position).get("info"));
-            holder.type = ((int) data.get(position).get("type"));
-
-            return convertView;
-        }
-    }
 }
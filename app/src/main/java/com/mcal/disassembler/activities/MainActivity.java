@@ -21,8 +21,12 @@ import com.mcal.disassembler.adapters.ListAdapter;
 import com.mcal.disassembler.data.Database;
 import com.mcal.disassembler.data.RecentsManager;
 import com.mcal.disassembler.interfaces.MainView;
-import com.mcal.disassembler.nativeapi.DisassemblerDumper;
+import com.mcal.disassembler.nativeapi.DisassemblerLibrary;
 import com.mcal.disassembler.nativeapi.Dumper;
+import com.mcal.disassembler.task.CancellationToken;
+import com.mcal.disassembler.task.Priority;
+import com.mcal.disassembler.task.TaskCallback;
+import com.mcal.disassembler.task.TaskScheduler;
 import com.mcal.disassembler.util.AdsAdmob;
 import com.mcal.materialdesign.view.CenteredToolBar;
 import com.mcal.materialdesign.widgets.SnackBar;
@@ -38,6 +42,8 @@ public class MainActivity extends AppCompatActivity implements MainView {
     private RecyclerView recentOpened;
     private String path;
     private LinearLayout welcomeLayout;
+    private CancellationToken loadToken;
+    private boolean symbolsShown;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -136,23 +142,61 @@ public class MainActivity extends AppCompatActivity implements MainView {
     }
 
     public void loadSo(final String path) {
+        if (loadToken != null)
+            loadToken.cancel();
         showProgressDialog();
         this.path = path;
-        new Thread() {
-            public void run() {
-                DisassemblerDumper.load(path);
-                Dumper.readData();
-                MainActivity.this.toClassesActivity();
+        symbolsShown = false;
+        loadToken = TaskScheduler.getInstance().submit(Priority.NORMAL, (token, progress) -> {
+            DisassemblerLibrary library = Dumper.open(path);
+            token.throwIfCancelled();
+            Dumper.select(library);
+            while (Dumper.loadNextChunk(library)) {
+                token.throwIfCancelled();
+                progress.onProgress(library.getLoadedCount(), library.getTotalCount());
             }
-        }.start();
+            return library;
+        }, new TaskCallback<DisassemblerLibrary>() {
+            @Override
+            public void onProgress(long current, long total) {
+                if (!symbolsShown) {
+                    // The first chunk is enough to browse; the rest keeps streaming in.
+                    toClassesActivity();
+                }
+            }
+
+            @Override
+            public void onSuccess(DisassemblerLibrary library) {
+                if (!symbolsShown)
+                    toClassesActivity();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                dismissProgressDialog();
+                new SnackBar(MainActivity.this, getString(R.string.loadFailed)).show();
+            }
+        });
     }
 
     public void showProgressDialog() {
         dialog = new ProgressDialog(MainActivity.this);
         dialog.setTitle(getString(R.string.loading));
+        dialog.setOnCancelListener(d -> {
+            if (loadToken != null)
+                loadToken.cancel();
+        });
         dialog.show();
     }
 
+    @Override
+    protected void onDestroy() {
+        if (loadToken != null)
+            loadToken.cancel();
+        dismissProgressDialog();
+        super.onDestroy();
+    }
+
     public void dismissProgressDialog() {
         if (dialog != null)
             dialog.dismiss();
@@ -165,6 +209,7 @@ public class MainActivity extends AppCompatActivity implements MainView {
         Intent intent = new Intent(MainActivity.this, SymbolsActivity.class);
         intent.putExtras(bundle);
         startActivity(intent);
+        symbolsShown = true;
         dismissProgressDialog();
     }
 }
\ No newline at end of file
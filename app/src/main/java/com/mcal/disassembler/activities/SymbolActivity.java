@@ -12,7 +12,10 @@ import androidx.appcompat.widget.AppCompatTextView;
 
 import com.mcal.disassembler.R;
 import com.mcal.disassembler.nativeapi.DisassemblerVtable;
-import com.mcal.disassembler.nativeapi.Dumper;
+import com.mcal.disassembler.task.CancellationToken;
+import com.mcal.disassembler.task.Priority;
+import com.mcal.disassembler.task.TaskCallback;
+import com.mcal.disassembler.task.TaskScheduler;
 import com.mcal.disassembler.vtable.Tables;
 import com.mcal.disassembler.vtable.VtableDumper;
 import com.mcal.materialdesign.view.CenteredToolBar;
@@ -26,6 +29,7 @@ public class SymbolActivity extends AppCompatActivity {
     private String path;
     private String name;
     private String className;
+    private CancellationToken dumpToken;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -107,27 +111,43 @@ public class SymbolActivity extends AppCompatActivity {
     }
 
     public void toVtableActivity(View view) {
-        showProgressDialog();
-        new Thread() {
-            public void run() {
-                DisassemblerVtable vtable = VtableDumper.dump(SymbolActivity.this.path, SymbolActivity.this.name);
-                if (vtable != null)
-                    SymbolActivity.this.toVtableActivity_(vtable);
-                dismissProgressDialog();
-            }
-        }.start();
+        dumpVtable(true);
     }
 
     public void toClassActivity(View view) {
+        dumpVtable(false);
+    }
+
+    private void dumpVtable(final boolean openVtable) {
+        if (dumpToken != null)
+            dumpToken.cancel();
         showProgressDialog();
-        new Thread() {
-            public void run() {
-                DisassemblerVtable vtable = VtableDumper.dump(SymbolActivity.this.path, SymbolActivity.this.name);
-                if (vtable != null)
-                    SymbolActivity.this.toClassActivity_();
+        dumpToken = TaskScheduler.getInstance().submit(Priority.INTERACTIVE, (token, progress) -> VtableDumper.dump(path, name), new TaskCallback<DisassemblerVtable>() {
+            @Override
+            public void onSuccess(DisassemblerVtable vtable) {
+                if (vtable != null) {
+                    if (openVtable)
+                        toVtableActivity_(vtable);
+                    else
+                        toClassActivity_();
+                }
                 dismissProgressDialog();
             }
-        }.start();
+
+            @Override
+            public void onError(Throwable error) {
+                super.onError(error);
+                dismissProgressDialog();
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (dumpToken != null)
+            dumpToken.cancel();
+        dismissProgressDialog();
+        super.onDestroy();
     }
 
     public void toClassActivity_() {
@@ -145,7 +165,6 @@ public class SymbolActivity extends AppCompatActivity {
         Bundle bundle = new Bundle();
         bundle.putString("name", name);
         bundle.putString("path", path);
-        Dumper.exploed.addElement(vtable);
         Intent intent = new Intent(this, VtableActivity.class);
         intent.putExtras(bundle);
         startActivity(intent);
@@ -154,6 +173,7 @@ public class SymbolActivity extends AppCompatActivity {
     public void showProgressDialog() {
         dialog = new ProgressDialog(this);
         dialog.setTitle(getString(R.string.loading));
+        dialog.setOnCancelListener(d -> dumpToken.cancel());
         dialog.show();
     }
 
@@ -1,28 +1,27 @@
 package com.mcal.disassembler.activities;
 
-import android.annotation.SuppressLint;
 import android.app.ProgressDialog;
-import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Environment;
-import android.os.Handler;
-import android.os.Message;
-import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.AdapterView.OnItemClickListener;
-import android.widget.BaseAdapter;
-import android.widget.ListView;
+import android.widget.ProgressBar;
 
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.appcompat.widget.AppCompatImageView;
-import androidx.appcompat.widget.AppCompatTextView;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mcal.disassembler.R;
+import com.mcal.disassembler.adapters.SymbolsAdapter;
+import com.mcal.disassembler.nativeapi.DisassemblerLibrary;
+import com.mcal.disassembler.nativeapi.DisassemblerSymbol;
 import com.mcal.disassembler.nativeapi.Dumper;
+import com.mcal.disassembler.nativeapi.SymbolTable;
+import com.mcal.disassembler.task.CancellationToken;
+import com.mcal.disassembler.task.Priority;
+import com.mcal.disassembler.task.TaskCallback;
+import com.mcal.disassembler.task.TaskScheduler;
 import com.mcal.disassembler.util.FileSaver;
 import com.mcal.disassembler.view.FloatingButton;
 import com.mcal.materialdesign.view.CenteredToolBar;
@@ -30,45 +29,57 @@ import com.mcal.materialdesign.widgets.SnackBar;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
-public class SymbolsActivity extends AppCompatActivity {
-    private List<Map<String, Object>> data;
+public class SymbolsActivity extends AppCompatActivity implements Dumper.OnSymbolTableChangedListener {
+    private SymbolsAdapter adapter;
+    private ProgressBar progressBar;
     private String path;
     private ProgressDialog mDialog;
-    private SnackBar mBar;
-
-    @SuppressLint("HandlerLeak")
-    private final Handler mHandler = new Handler() {
-        @Override
-        public void handleMessage(Message msg) {
-            super.handleMessage(msg);
-            if (mDialog != null)
-                mDialog.dismiss();
-            mDialog = null;
-            if (mBar != null)
-                mBar.show();
-            else
-                new SnackBar(SymbolsActivity.this, SymbolsActivity.this.getString(R.string.done)).show();
-        }
-    };
+    private CancellationToken mSaveToken;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.symbols_activity);
         setupToolbar(getString(R.string.app_symbols));
-        ListView list = findViewById(R.id.symbols_activity_list_view);
-        data = getData();
-        SymbolsAdapter adapter = new SymbolsAdapter(this);
+        path = Objects.requireNonNull(getIntent().getExtras()).getString("filePath");
+        RecyclerView list = findViewById(R.id.symbols_activity_list_view);
+        progressBar = findViewById(R.id.symbols_activity_progress);
+        list.setLayoutManager(new LinearLayoutManager(this));
+        list.setHasFixedSize(true);
+        adapter = new SymbolsAdapter(path);
         list.setAdapter(adapter);
-        list.setOnItemClickListener(new ItemClickListener());
 
-        path = Objects.requireNonNull(getIntent().getExtras()).getString("filePath");
+        SymbolTable table = Dumper.getSymbolTable(path);
+        if (table != null)
+            showTable(table);
+        Dumper.addOnSymbolTableChangedListener(this);
+    }
+
+    @Override
+    public void onSymbolTableChanged(SymbolTable table) {
+        runOnUiThread(() -> showTable(table));
+    }
+
+    private void showTable(@NotNull SymbolTable table) {
+        if (table.getPath() == null || !table.getPath().equals(path))
+            return;
+        // Tables of the same library only ever grow while it loads.
+        if (table.getSymbols().size() >= adapter.getItemCount())
+            adapter.setGrownSymbols(table.getSymbols());
+        else
+            adapter.setSymbols(table.getSymbols());
+        DisassemblerLibrary library = Dumper.getLibrary(path);
+        if (table.isComplete() || library == null) {
+            progressBar.setVisibility(View.GONE);
+        } else {
+            progressBar.setVisibility(View.VISIBLE);
+            progressBar.setMax(library.getTotalCount());
+            progressBar.setProgress(table.getSymbols().size());
+        }
     }
 
     @SuppressWarnings("ConstantConditions")
@@ -80,25 +91,6 @@ public class SymbolsActivity extends AppCompatActivity {
         getSupportActionBar().setDisplayShowHomeEnabled(true);
     }
 
-    @NotNull
-    private List<Map<String, Object>> getData() {
-        List<Map<String, Object>> list = new ArrayList<>();
-        Map<String, Object> map;
-        for (int i = 0; i < Dumper.symbols.size(); ++i) {
-            map = new HashMap<>();
-            if (Dumper.symbols.get(i).getType() == 1)
-                map.put("img", R.drawable.ic_box_blue);
-            else if (Dumper.symbols.get(i).getType() == 2)
-                map.put("img", R.drawable.ic_box_red);
-            else map.put("img", R.drawable.ic_box_green);
-            map.put("title", Dumper.symbols.get(i).getDemangledName());
-            map.put("info", Dumper.symbols.get(i).getName());
-            map.put("type", Dumper.symbols.get(i).getType());
-            list.add(map);
-        }
-        return list;
-    }
-
     public void showFloatingMenu(View view) {
         new FloatingButton(this, path).show();
     }
@@ -111,17 +103,22 @@ public class SymbolsActivity extends AppCompatActivity {
         startActivity(i);
     }
 
-    private void _saveSymbols() {
-        String[] strings = new String[Dumper.symbols.size()];
-        for (int i = 0; i < Dumper.symbols.size(); ++i)
-            strings[i] = Dumper.symbols.get(i).getName();
+    private void _saveSymbols(CancellationToken token) throws IOException {
+        SymbolTable table = Dumper.getSymbolTable(path);
+        if (table == null)
+            throw new IOException(path + " is closed");
+        List<DisassemblerSymbol> symbols = table.getSymbols();
+        String[] strings = new String[symbols.size()];
+        for (int i = 0; i < symbols.size(); ++i)
+            strings[i] = symbols.get(i).getName();
+        token.throwIfCancelled();
 
         FileSaver saver = new FileSaver(Environment.getExternalStorageDirectory().toString() + "/Disassembler/symbols/", "Symbols.txt", strings);
         saver.save();
 
-        String[] strings_ = new String[Dumper.symbols.size()];
-        for (int i = 0; i < Dumper.symbols.size(); ++i)
-            strings_[i] = Dumper.symbols.get(i).getDemangledName();
+        String[] strings_ = new String[symbols.size()];
+        for (int i = 0; i < symbols.size(); ++i)
+            strings_[i] = symbols.get(i).getDemangledName();
         FileSaver saver_ = new FileSaver(Environment.getExternalStorageDirectory().toString() + "/Disassembler/symbols/", "Symbols_demangled.txt", strings_);
         saver_.save();
     }
@@ -129,15 +126,39 @@ public class SymbolsActivity extends AppCompatActivity {
     public void saveSymbols(View view) {
         mDialog = new ProgressDialog(this);
         mDialog.setTitle(getString(R.string.saving));
+        mDialog.setOnCancelListener(dialog -> mSaveToken.cancel());
         mDialog.show();
-        mBar = new SnackBar(this, getString(R.string.done));
-        new Thread() {
-            public void run() {
-                _saveSymbols();
-                Message msg = new Message();
-                mHandler.sendMessage(msg);
+        mSaveToken = TaskScheduler.getInstance().submit(Priority.BACKGROUND, (token, progress) -> {
+            _saveSymbols(token);
+            return null;
+        }, new TaskCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                dismissProgressDialog();
+                new SnackBar(SymbolsActivity.this, getString(R.string.done)).show();
             }
-        }.start();
+
+            @Override
+            public void onError(Throwable error) {
+                super.onError(error);
+                dismissProgressDialog();
+            }
+        });
+    }
+
+    private void dismissProgressDialog() {
+        if (mDialog != null)
+            mDialog.dismiss();
+        mDialog = null;
+    }
+
+    @Override
+    protected void onDestroy() {
+        Dumper.removeOnSymbolTableChangedListener(this);
+        if (mSaveToken != null)
+            mSaveToken.cancel();
+        dismissProgressDialog();
+        super.onDestroy();
     }
 
     @Override
@@ -157,70 +178,4 @@ public class SymbolsActivity extends AppCompatActivity {
         }
         return super.onOptionsItemSelected(item);
     }
-
-    static class ViewHolder {
-        public AppCompatTextView info;
-        public int type;
-        AppCompatImageView img;
-        AppCompatTextView title;
-    }
-
-    private final class ItemClickListener implements OnItemClickListener {
-        @Override
-        public void onItemClick(AdapterView<?> arg0, @NotNull View view, int arg2, long arg3) {
-            Bundle bundle = new Bundle();
-            bundle.putString("demangledName", (String) (((ViewHolder) view.getTag()).title.getText()));
-            bundle.putString("name", (String) (((ViewHolder) view.getTag()).info.getText()));
-            bundle.putInt("type", ((ViewHolder) view.getTag()).type);
-            bundle.putString("filePath", path);
-            Intent intent = new Intent(SymbolsActivity.this, SymbolActivity.class);
-            intent.putExtras(bundle);
-            startActivity(intent);
-        }
-    }
-
-    public class SymbolsAdapter extends BaseAdapter {
-        private LayoutInflater mInflater = null;
-
-        private SymbolsAdapter(Context context) {
-            this.mInflater = LayoutInflater.from(context);
-        }
-
-        @Override
-        public int getCount() {
-            return data.size();
-        }
-
-        @Override
-        public Object getItem(int position) {
-            return position;
-        }
-
-        @Override
-        public long getItemId(int position) {
-            return position;
-        }
-
-        @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            ViewHolder holder;
-
-            if (convertView == null) {
-                holder = new ViewHolder();
-                convertView = mInflater.inflate(R.layout.symbol_list_item, null);
-                holder.img = convertView.findViewById(R.id.symbolslistitemimg);
-                holder.title = convertView.findViewById(R.id.symbolslistitemTextViewtop);
-                holder.info = convertView.findViewById(R.id.symbolslistitemTextViewbottom);
-                convertView.setTag(holder);
-            } else {
-                holder = (ViewHolder) convertView.getTag();
-            }
-            holder.img.setBackgroundResource((Integer) data.get(position).get("img"));
-            holder.title.setText((String) data.get(position).get("title"));
-            holder.info.setText((String) data.get(position).get("info"));
-            holder.type = ((int) data.get(position).get("type"));
-
-            return convertView;
-        }
-    }
-}
\ No newline at end of file
+}
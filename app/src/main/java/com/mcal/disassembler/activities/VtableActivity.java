@@ -21,8 +21,12 @@ import androidx.appcompat.widget.AppCompatTextView;
 import com.mcal.disassembler.R;
 import com.mcal.disassembler.nativeapi.DisassemblerDumper;
 import com.mcal.disassembler.nativeapi.DisassemblerVtable;
-import com.mcal.disassembler.nativeapi.Dumper;
+import com.mcal.disassembler.task.CancellationToken;
+import com.mcal.disassembler.task.Priority;
+import com.mcal.disassembler.task.TaskCallback;
+import com.mcal.disassembler.task.TaskScheduler;
 import com.mcal.disassembler.util.FileSaver;
+import com.mcal.disassembler.vtable.VtableDumper;
 import com.mcal.materialdesign.view.CenteredToolBar;
 import com.mcal.materialdesign.widgets.SnackBar;
 
@@ -35,11 +39,13 @@ import java.util.Map;
 import java.util.Objects;
 
 public class VtableActivity extends AppCompatActivity {
-    private List<Map<String, Object>> data;
+    private List<Map<String, Object>> data = new ArrayList<>();
 
     private String path;
     private String name;
     private DisassemblerVtable vtable = null;
+    private VtablesAdapter adapter;
+    private CancellationToken dumpToken;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -48,16 +54,29 @@ public class VtableActivity extends AppCompatActivity {
         setupToolbar(getString(R.string.app_vtable));
         path = Objects.requireNonNull(getIntent().getExtras()).getString("path");
         name = getIntent().getExtras().getString("name");
-        for (DisassemblerVtable mvtable : Dumper.exploed)
-            if (mvtable.getName().equals(name))
-                vtable = mvtable;
         setTitle(DisassemblerDumper.demangle(name));
 
         ListView list = findViewById(R.id.vtable_activity_list_view);
-        data = getData();
-        VtablesAdapter adapter = new VtablesAdapter(this);
+        adapter = new VtablesAdapter(this);
         list.setAdapter(adapter);
         list.setOnItemClickListener(new ItemClickListener());
+
+        // Only the vtables resolved from a complete table are cached, so it is resolved again while the library loads.
+        dumpToken = TaskScheduler.getInstance().submit(Priority.INTERACTIVE, (token, progress) -> VtableDumper.dump(path, name), new TaskCallback<DisassemblerVtable>() {
+            @Override
+            public void onSuccess(DisassemblerVtable result) {
+                vtable = result;
+                data = getData();
+                adapter.notifyDataSetChanged();
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (dumpToken != null)
+            dumpToken.cancel();
+        super.onDestroy();
     }
 
     @SuppressWarnings("ConstantConditions")
@@ -70,6 +89,8 @@ public class VtableActivity extends AppCompatActivity {
     }
 
     public void save(View view) {
+        if (vtable == null)
+            return;
         String[] strings = new String[vtable.getVtables().size()];
         for (int i = 0; i < vtable.getVtables().size(); ++i)
             strings[i] = vtable.getVtables().get(i).getName();
@@ -14,6 +14,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.mcal.disassembler.R;
 import com.mcal.disassembler.data.RecentsManager;
 import com.mcal.disassembler.interfaces.MainView;
+import com.mcal.disassembler.nativeapi.Dumper;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -50,6 +51,7 @@ public class ListAdapter extends RecyclerView.Adapter<ListAdapter.ViewHolder> im
 
         holder.remove.setOnClickListener(p1 -> {
             RecentsManager.remove(paths.get(holder.getAdapterPosition()));
+            Dumper.unload(paths.get(holder.getAdapterPosition()));
             paths.remove(holder.getAdapterPosition());
             notifyItemRemoved(holder.getAdapterPosition());
         });
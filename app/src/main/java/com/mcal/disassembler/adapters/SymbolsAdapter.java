@@ -0,0 +1,106 @@
+package com.mcal.disassembler.adapters;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.appcompat.widget.AppCompatImageView;
+import androidx.appcompat.widget.AppCompatTextView;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mcal.disassembler.R;
+import com.mcal.disassembler.activities.SymbolActivity;
+import com.mcal.disassembler.nativeapi.DisassemblerSymbol;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows symbols straight from a symbol list; rows are formatted and bound only when they become visible.
+ */
+public class SymbolsAdapter extends RecyclerView.Adapter<SymbolsAdapter.ViewHolder> {
+    private final String path;
+    private List<DisassemblerSymbol> symbols = Collections.emptyList();
+
+    public SymbolsAdapter(String path) {
+        this.path = path;
+        setHasStableIds(true);
+    }
+
+    public void setSymbols(@NotNull List<DisassemblerSymbol> symbols) {
+        this.symbols = symbols;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Shows a list that starts with the currently shown symbols, like the next table of a loading
+     * library, announcing only the new rows so the scroll position and bound rows are kept.
+     */
+    public void setGrownSymbols(@NotNull List<DisassemblerSymbol> symbols) {
+        int oldSize = this.symbols.size();
+        this.symbols = symbols;
+        notifyItemRangeInserted(oldSize, symbols.size() - oldSize);
+    }
+
+    @Override
+    public int getItemCount() {
+        return symbols.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return symbols.get(position).getIndex();
+    }
+
+    @Override
+    public void onBindViewHolder(@NotNull final ViewHolder holder, final int position) {
+        DisassemblerSymbol symbol = symbols.get(position);
+        if (symbol.getType() == 1)
+            holder.img.setBackgroundResource(R.drawable.ic_box_blue);
+        else if (symbol.getType() == 2)
+            holder.img.setBackgroundResource(R.drawable.ic_box_red);
+        else
+            holder.img.setBackgroundResource(R.drawable.ic_box_green);
+        holder.title.setText(symbol.getDemangledName());
+        holder.info.setText(symbol.getName());
+        holder.itemView.setOnClickListener(view -> {
+            int current = holder.getAdapterPosition();
+            if (current != RecyclerView.NO_POSITION)
+                openSymbol(view.getContext(), symbols.get(current));
+        });
+    }
+
+    private void openSymbol(@NotNull Context context, @NotNull DisassemblerSymbol symbol) {
+        Bundle bundle = new Bundle();
+        bundle.putString("demangledName", symbol.getDemangledName());
+        bundle.putString("name", symbol.getName());
+        bundle.putInt("type", symbol.getType());
+        bundle.putString("filePath", path);
+        Intent intent = new Intent(context, SymbolActivity.class);
+        intent.putExtras(bundle);
+        context.startActivity(intent);
+    }
+
+    @Override
+    public SymbolsAdapter.@NotNull ViewHolder onCreateViewHolder(@NotNull ViewGroup parent, int viewType) {
+        View item = LayoutInflater.from(parent.getContext()).inflate(R.layout.symbol_list_item, parent, false);
+        return new ViewHolder(item);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        AppCompatImageView img;
+        AppCompatTextView title, info;
+
+        ViewHolder(View view) {
+            super(view);
+            img = view.findViewById(R.id.symbolslistitemimg);
+            title = view.findViewById(R.id.symbolslistitemTextViewtop);
+            info = view.findViewById(R.id.symbolslistitemTextViewbottom);
+        }
+    }
+}
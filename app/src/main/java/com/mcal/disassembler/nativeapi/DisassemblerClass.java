@@ -1,38 +1,23 @@
 package com.mcal.disassembler.nativeapi;
 
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-public class DisassemblerClass {
-    private String name;
-    private Vector<DisassemblerSymbol> symbols;
+public final class DisassemblerClass {
+    private final String name;
+    private final List<DisassemblerSymbol> symbols;
 
-    public DisassemblerClass(String name, Vector<DisassemblerSymbol> symbols) {
+    public DisassemblerClass(String name, List<DisassemblerSymbol> symbols) {
         this.name = name;
-        this.symbols = symbols;
-    }
-
-    public DisassemblerClass(String name) {
-        this.name = name;
-        this.symbols = new Vector<>();
-    }
-
-    public void addNewSymbol(DisassemblerSymbol sym) {
-        symbols.addElement(sym);
+        this.symbols = Collections.unmodifiableList(new ArrayList<>(symbols));
     }
 
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
-
-    public Vector<DisassemblerSymbol> getSymbols() {
+    public List<DisassemblerSymbol> getSymbols() {
         return symbols;
     }
-
-    public void setSymbols(Vector<DisassemblerSymbol> symbols) {
-        this.symbols = symbols;
-    }
-}
\ No newline at end of file
+}
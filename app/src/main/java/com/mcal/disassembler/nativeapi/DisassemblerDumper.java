@@ -1,21 +1,27 @@
 package com.mcal.disassembler.nativeapi;
 
 public class DisassemblerDumper {
-    public static native void load(String path);
+    public static native long open(String path);
+
+    public static native void close(long handle);
 
     public static native boolean hasFile(String path);
 
-    public static native String getNameAt(long pos);
+    public static native String getNameAt(long handle, long pos);
+
+    public static native String getDemangledNameAt(long handle, long pos);
+
+    public static native int getTypeAt(long handle, long pos);
 
-    public static native String getDemangledNameAt(long pos);
+    public static native int getBindAt(long handle, long pos);
 
-    public static native int getTypeAt(long pos);
+    public static native int loadChunk(long handle, int maxCount);
 
-    public static native int getBindAt(long pos);
+    public static native long getSize(long handle);
 
-    public static native long getSize();
+    public static native long getTotalSize(long handle);
 
     public static native String demangle(String name);
 
     public static native String demangleOnly(String name);
-}
\ No newline at end of file
+}
@@ -0,0 +1,122 @@
+package com.mcal.disassembler.nativeapi;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public class DisassemblerLibrary implements Closeable {
+    private static final int CHUNK_SIZE = 4096;
+
+    private final String path;
+    private final DisassemblerSymbol[] symbols;
+    private final SymbolTable.Caches caches = new SymbolTable.Caches();
+    private final Object loadLock = new Object();
+    private volatile SymbolTable symbolTable;
+    private int loaded;
+    private long handle;
+    private boolean loading;
+    private boolean closeRequested;
+
+    private DisassemblerLibrary(String path, long handle) {
+        this.path = path;
+        this.handle = handle;
+        this.symbols = new DisassemblerSymbol[(int) DisassemblerDumper.getTotalSize(handle)];
+        this.symbolTable = new SymbolTable(path, symbols, 0, symbols.length == 0, caches);
+    }
+
+    /**
+     * Opens the library without reading its symbols; call {@link #loadNextChunk()} until it returns false.
+     */
+    @NotNull
+    public static DisassemblerLibrary open(String path) throws IOException {
+        long handle = DisassemblerDumper.open(path);
+        if (handle == 0)
+            throw new IOException("Unable to load " + path);
+        return new DisassemblerLibrary(path, handle);
+    }
+
+    /**
+     * Reads the next chunk of symbols and publishes a larger table.
+     * The chunks are read under their own lock, so {@link #close()} never waits for one; a close requested
+     * meanwhile is performed once the chunk is read.
+     *
+     * @return whether symbols remain to be loaded
+     */
+    public boolean loadNextChunk() {
+        synchronized (loadLock) {
+            long handle;
+            synchronized (this) {
+                if (this.handle == 0 || closeRequested || symbolTable.isComplete())
+                    return false;
+                loading = true;
+                handle = this.handle;
+            }
+            boolean complete = true;
+            try {
+                int count = Math.min(DisassemblerDumper.loadChunk(handle, CHUNK_SIZE), symbols.length - loaded);
+                for (int i = loaded; i < loaded + count; ++i) {
+                    // Demangled here, on the loading thread, so the class and search screens never demangle on the UI thread.
+                    String name = DisassemblerDumper.getNameAt(handle, i);
+                    String demangledName = DisassemblerDumper.getDemangledNameAt(handle, i);
+                    if (demangledName == null || demangledName.isEmpty() || demangledName.equals(" "))
+                        demangledName = name;
+                    symbols[i] = new DisassemblerSymbol(i, name, demangledName, DisassemblerDumper.getTypeAt(handle, i), DisassemblerDumper.getBindAt(handle, i));
+                }
+                loaded += count;
+                complete = count == 0 || loaded == symbols.length;
+                symbolTable = new SymbolTable(path, symbols, loaded, complete, caches);
+            } finally {
+                synchronized (this) {
+                    loading = false;
+                    if (closeRequested)
+                        closeHandle();
+                }
+            }
+            return !complete && isOpen();
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public synchronized boolean isOpen() {
+        return handle != 0 && !closeRequested;
+    }
+
+    public boolean isLoaded() {
+        return symbolTable.isComplete();
+    }
+
+    public int getLoadedCount() {
+        return symbolTable.getSymbols().size();
+    }
+
+    public int getTotalCount() {
+        return symbols.length;
+    }
+
+    @NotNull
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Closes the native context, or defers it to the end of the chunk being read.
+     */
+    @Override
+    public synchronized void close() {
+        if (loading)
+            closeRequested = true;
+        else
+            closeHandle();
+    }
+
+    private void closeHandle() {
+        if (handle != 0) {
+            DisassemblerDumper.close(handle);
+            handle = 0;
+        }
+    }
+}
@@ -1,45 +1,40 @@
 package com.mcal.disassembler.nativeapi;
 
-public class DisassemblerSymbol {
-    private String name;
-    private String demangledName;
-    private int type;
-
-    public DisassemblerSymbol(String name, String demangledName, int type, int bind) {
-        this.type = type;
-        this.demangledName = demangledName;
+public final class DisassemblerSymbol {
+    private final int index;
+    private final String name;
+    private final int type;
+    private final int bind;
+    private final String demangledName;
+
+    public DisassemblerSymbol(int index, String name, String demangledName, int type, int bind) {
+        this.index = index;
         this.name = name;
+        this.demangledName = demangledName;
+        this.type = type;
+        this.bind = bind;
     }
 
-    public String getDemangledName() {
-        return demangledName;
+    /**
+     * Position of the symbol in its library, unique within that library.
+     */
+    public int getIndex() {
+        return index;
     }
 
-    public void setDemangledName(String demangledName) {
-        this.demangledName = demangledName;
+    public String getDemangledName() {
+        return demangledName;
     }
 
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
-
     public int getType() {
         return type;
     }
 
-    public void setType(int type) {
-        this.type = type;
-    }
-
     public int getBind() {
-        return type;
-    }
-
-    public void setBind(int type) {
-        this.type = type;
+        return bind;
     }
-}
\ No newline at end of file
+}
@@ -1,29 +1,23 @@
 package com.mcal.disassembler.nativeapi;
 
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-public class DisassemblerVtable {
-    private String name;
-    private Vector<DisassemblerSymbol> vtables;
+public final class DisassemblerVtable {
+    private final String name;
+    private final List<DisassemblerSymbol> vtables;
 
-    public DisassemblerVtable(String name, Vector<DisassemblerSymbol> vtables) {
+    public DisassemblerVtable(String name, List<DisassemblerSymbol> vtables) {
         this.name = name;
-        this.vtables = vtables;
+        this.vtables = Collections.unmodifiableList(new ArrayList<>(vtables));
     }
 
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
-
-    public Vector<DisassemblerSymbol> getVtables() {
+    public List<DisassemblerSymbol> getVtables() {
         return vtables;
     }
-
-    public void setVtables(Vector<DisassemblerSymbol> vtables) {
-        this.vtables = vtables;
-    }
-}
\ No newline at end of file
+}
@@ -1,22 +1,128 @@
 package com.mcal.disassembler.nativeapi;
 
-import java.util.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Dumper {
-    public static Vector<DisassemblerSymbol> symbols = new Vector<>();
-    public static Vector<DisassemblerVtable> exploed = new Vector<>();
-    public static Vector<DisassemblerClass> classes = new Vector<>();
-
-    public static void readData() {
-        symbols.clear();
-        exploed.clear();
-        classes.clear();
-        for (int i = 0; i < DisassemblerDumper.getSize(); ++i) {
-            String demangledName = DisassemblerDumper.getDemangledNameAt(i);
-            if (demangledName == null || demangledName.isEmpty() || demangledName.equals(" "))
-                demangledName = DisassemblerDumper.getNameAt(i);
-            DisassemblerSymbol newSymbol = new DisassemblerSymbol(DisassemblerDumper.getNameAt(i), demangledName, DisassemblerDumper.getTypeAt(i), DisassemblerDumper.getBindAt(i));
-            symbols.addElement(newSymbol);
+    private static final Map<String, DisassemblerLibrary> libraries = new LinkedHashMap<>();
+    private static final List<OnSymbolTableChangedListener> listeners = new CopyOnWriteArrayList<>();
+    private static final AtomicReference<DisassemblerLibrary> current = new AtomicReference<>();
+
+    /**
+     * Returns the library opened from the path, opening it only if it is not resident yet.
+     * Its symbols may still be loading, see {@link #loadNextChunk(DisassemblerLibrary)}.
+     * The library is parsed outside of the lock, so lookups are not blocked meanwhile; if another thread
+     * opened the same path first, its library is returned and this one is closed.
+     */
+    @NotNull
+    public static DisassemblerLibrary open(String path) throws IOException {
+        DisassemblerLibrary library = getLibrary(path);
+        if (library != null)
+            return library;
+        DisassemblerLibrary opened = DisassemblerLibrary.open(path);
+        synchronized (libraries) {
+            library = libraries.get(path);
+            if (library == null) {
+                libraries.put(path, opened);
+                return opened;
+            }
         }
+        opened.close();
+        return library;
+    }
+
+    /**
+     * Publishes the symbols of the library; readers either see the previous table or this one.
+     */
+    public static void select(@NotNull DisassemblerLibrary library) {
+        current.set(library);
+        notifyChanged(library.getSymbolTable());
+    }
+
+    /**
+     * Loads the next chunk of symbols of the library and notifies the listeners if it is selected.
+     *
+     * @return whether symbols remain to be loaded
+     */
+    public static boolean loadNextChunk(@NotNull DisassemblerLibrary library) {
+        boolean more = library.loadNextChunk();
+        if (current.get() == library)
+            notifyChanged(library.getSymbolTable());
+        return more;
+    }
+
+    @NotNull
+    public static SymbolTable getSymbolTable() {
+        DisassemblerLibrary library = current.get();
+        return library == null ? SymbolTable.EMPTY : library.getSymbolTable();
+    }
+
+    /**
+     * Listeners are called on the thread that published the table.
+     */
+    public static void addOnSymbolTableChangedListener(@NotNull OnSymbolTableChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeOnSymbolTableChangedListener(@NotNull OnSymbolTableChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    private static void notifyChanged(SymbolTable table) {
+        for (OnSymbolTableChangedListener listener : listeners)
+            listener.onSymbolTableChanged(table);
+    }
+
+    /**
+     * Returns the symbols of the library opened from the path, whether it is selected or not;
+     * null once the library is closed.
+     */
+    @Nullable
+    public static SymbolTable getSymbolTable(String path) {
+        DisassemblerLibrary library = getLibrary(path);
+        return library == null ? null : library.getSymbolTable();
+    }
+
+    @Nullable
+    public static DisassemblerLibrary getLibrary(String path) {
+        synchronized (libraries) {
+            return libraries.get(path);
+        }
+    }
+
+    @NotNull
+    public static List<DisassemblerLibrary> getLibraries() {
+        synchronized (libraries) {
+            return new ArrayList<>(libraries.values());
+        }
+    }
+
+    public static void unload(String path) {
+        DisassemblerLibrary library;
+        synchronized (libraries) {
+            library = libraries.remove(path);
+        }
+        if (library == null)
+            return;
+        if (current.compareAndSet(library, null))
+            notifyChanged(SymbolTable.EMPTY);
+        library.close();
+    }
+
+    public static void unloadAll() {
+        for (DisassemblerLibrary library : getLibraries())
+            unload(library.getPath());
+    }
+
+    public interface OnSymbolTableChangedListener {
+        void onSymbolTableChanged(SymbolTable table);
     }
-}
\ No newline at end of file
+}
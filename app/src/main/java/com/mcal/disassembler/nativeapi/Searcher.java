@@ -1,5 +1,7 @@
 package com.mcal.disassembler.nativeapi;
 
+import com.mcal.disassembler.task.CancellationToken;
+
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Vector;
@@ -8,12 +10,19 @@ import java.util.regex.Pattern;
 
 public class Searcher {
     @NotNull
-    public static Vector<DisassemblerSymbol> search(String key) {
+    public static Vector<DisassemblerSymbol> search(String path, String key) {
+        return search(path, key, new CancellationToken());
+    }
+
+    @NotNull
+    public static Vector<DisassemblerSymbol> search(String path, String key, CancellationToken token) {
         Vector<DisassemblerSymbol> returnValue = new Vector<DisassemblerSymbol>();
-        if (key == null || key.isEmpty() || key.equals(" "))
+        SymbolTable table = Dumper.getSymbolTable(path);
+        if (table == null || key == null || key.isEmpty() || key.equals(" "))
             return returnValue;
 
-        for (DisassemblerSymbol symbol : Dumper.symbols) {
+        for (DisassemblerSymbol symbol : table.getSymbols()) {
+            token.throwIfCancelled();
             if (symbol.getDemangledName() != null && symbol.getDemangledName().contains(key)) {
                 returnValue.addElement(symbol);
             }
@@ -21,23 +30,29 @@ public class Searcher {
         return returnValue;
     }
 
-    public static Vector<DisassemblerSymbol> searchWithPattern(String role) {
+    public static Vector<DisassemblerSymbol> searchWithPattern(String path, String role) {
+        return searchWithPattern(path, role, new CancellationToken());
+    }
+
+    public static Vector<DisassemblerSymbol> searchWithPattern(String path, String role, CancellationToken token) {
         Vector<DisassemblerSymbol> returnValue = new Vector<DisassemblerSymbol>();
+        SymbolTable table = Dumper.getSymbolTable(path);
+        Pattern p;
         try {
-            if (role == null || role.isEmpty() || role.equals(" "))
+            if (table == null || role == null || role.isEmpty() || role.equals(" "))
                 return returnValue;
-            Pattern p = Pattern.compile(role);
-
-            for (DisassemblerSymbol symbol : Dumper.symbols) {
-                if (symbol.getDemangledName() != null) {
-                    Matcher m = p.matcher(symbol.getDemangledName());
-                    if (m.find())
-                        returnValue.addElement(symbol);
-                }
-            }
+            p = Pattern.compile(role);
         } catch (Exception e) {
             return returnValue;
         }
+        for (DisassemblerSymbol symbol : table.getSymbols()) {
+            token.throwIfCancelled();
+            if (symbol.getDemangledName() != null) {
+                Matcher m = p.matcher(symbol.getDemangledName());
+                if (m.find())
+                    returnValue.addElement(symbol);
+            }
+        }
         return returnValue;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package com.mcal.disassembler.nativeapi;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable view of the symbols of one library.
+ * <p>
+ * The symbol list never changes once the table is built, so it can be shared between
+ * threads without locking. While a library is still loading, each chunk publishes a new
+ * table over the same backing array with a larger count. Vtables and classes are resolved
+ * lazily; their caches are copy-on-write maps swapped atomically, so readers always see a
+ * complete map. The caches are owned by the library and shared by all its tables; only the
+ * results resolved from a complete table are cached, since a partial one may miss symbols.
+ */
+public final class SymbolTable {
+    public static final SymbolTable EMPTY = new SymbolTable(null, new DisassemblerSymbol[0], 0, true);
+
+    private final String path;
+    private final List<DisassemblerSymbol> symbols;
+    private final boolean complete;
+    private final Caches caches;
+    private volatile Map<String, DisassemblerSymbol> symbolsByName;
+
+    public SymbolTable(String path, @NotNull DisassemblerSymbol[] symbols, int count, boolean complete) {
+        this(path, symbols, count, complete, new Caches());
+    }
+
+    /**
+     * The first {@code count} entries of the array must never be written again.
+     */
+    public SymbolTable(String path, @NotNull DisassemblerSymbol[] symbols, int count, boolean complete, @NotNull Caches caches) {
+        this.path = path;
+        this.symbols = Collections.unmodifiableList(Arrays.asList(symbols).subList(0, count));
+        this.complete = complete;
+        this.caches = caches;
+    }
+
+    private <V> V putIfAbsent(@NotNull AtomicReference<Map<String, V>> cache, String key, V value) {
+        if (!complete)
+            return value;
+        while (true) {
+            Map<String, V> current = cache.get();
+            V existing = current.get(key);
+            if (existing != null)
+                return existing;
+            Map<String, V> updated = new HashMap<>(current);
+            updated.put(key, value);
+            if (cache.compareAndSet(current, Collections.unmodifiableMap(updated)))
+                return value;
+        }
+    }
+
+    @Nullable
+    public String getPath() {
+        return path;
+    }
+
+    @NotNull
+    public List<DisassemblerSymbol> getSymbols() {
+        return symbols;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Nullable
+    public DisassemblerSymbol getSymbol(String name) {
+        Map<String, DisassemblerSymbol> byName = symbolsByName;
+        if (byName == null) {
+            byName = new HashMap<>(symbols.size() * 2);
+            for (DisassemblerSymbol symbol : symbols)
+                if (!byName.containsKey(symbol.getName()))
+                    byName.put(symbol.getName(), symbol);
+            symbolsByName = byName;
+        }
+        return byName.get(name);
+    }
+
+    @Nullable
+    public DisassemblerVtable findVtable(String name) {
+        return caches.vtables.get().get(name);
+    }
+
+    /**
+     * Caches the vtable unless another thread already resolved it first or the table is partial;
+     * returns the cached instance.
+     */
+    @NotNull
+    public DisassemblerVtable cacheVtable(@NotNull DisassemblerVtable vtable) {
+        return putIfAbsent(caches.vtables, vtable.getName(), vtable);
+    }
+
+    @Nullable
+    public DisassemblerClass findClass(String name) {
+        return caches.classes.get().get(name);
+    }
+
+    /**
+     * Caches the class unless another thread already resolved it first or the table is partial;
+     * returns the cached instance.
+     */
+    @NotNull
+    public DisassemblerClass cacheClass(@NotNull DisassemblerClass clasz) {
+        return putIfAbsent(caches.classes, clasz.getName(), clasz);
+    }
+
+    /**
+     * Resolved vtables and classes of a library, kept across the tables published while it loads.
+     */
+    public static final class Caches {
+        private final AtomicReference<Map<String, DisassemblerVtable>> vtables = new AtomicReference<>(Collections.emptyMap());
+        private final AtomicReference<Map<String, DisassemblerClass>> classes = new AtomicReference<>(Collections.emptyMap());
+    }
+}
@@ -0,0 +1,20 @@
+package com.mcal.disassembler.task;
+
+import java.util.concurrent.CancellationException;
+
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled)
+            throw new CancellationException();
+    }
+}
@@ -0,0 +1,19 @@
+package com.mcal.disassembler.task;
+
+/**
+ * Order in which queued tasks are picked up by {@link TaskScheduler}.
+ */
+public enum Priority {
+    /**
+     * Work the user is waiting on, such as a search or opening a vtable.
+     */
+    INTERACTIVE,
+    /**
+     * Loading a library.
+     */
+    NORMAL,
+    /**
+     * Indexing and exports that can wait.
+     */
+    BACKGROUND
+}
@@ -0,0 +1,5 @@
+package com.mcal.disassembler.task;
+
+public interface ProgressListener {
+    void onProgress(long current, long total);
+}
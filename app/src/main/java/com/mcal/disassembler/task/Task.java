@@ -0,0 +1,8 @@
+package com.mcal.disassembler.task;
+
+public interface Task<T> {
+    /**
+     * Runs on a pool thread. Long loops should poll the token so the task stops early once cancelled.
+     */
+    T run(CancellationToken token, ProgressListener progress) throws Exception;
+}
@@ -0,0 +1,15 @@
+package com.mcal.disassembler.task;
+
+/**
+ * Receives the outcome of a task on the main thread. Nothing is delivered once the task is cancelled.
+ */
+public abstract class TaskCallback<T> {
+    public void onProgress(long current, long total) {
+    }
+
+    public abstract void onSuccess(T result);
+
+    public void onError(Throwable error) {
+        error.printStackTrace();
+    }
+}
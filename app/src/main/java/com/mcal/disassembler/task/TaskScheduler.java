@@ -0,0 +1,116 @@
+package com.mcal.disassembler.task;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool shared by every background job of the app.
+ * <p>
+ * Queued tasks are ordered by {@link Priority} and then by submission order, so an
+ * interactive search overtakes pending indexing work. Results and progress are posted
+ * to the main thread.
+ */
+public class TaskScheduler {
+    private static final long PROGRESS_INTERVAL_MS = 100;
+    private static TaskScheduler instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+
+    private TaskScheduler() {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), new WorkerFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @NotNull
+    public static synchronized TaskScheduler getInstance() {
+        if (instance == null)
+            instance = new TaskScheduler();
+        return instance;
+    }
+
+    @NotNull
+    public <T> CancellationToken submit(@NotNull Priority priority, @NotNull Task<T> task, @NotNull TaskCallback<T> callback) {
+        CancellationToken token = new CancellationToken();
+        executor.execute(new Job<>(priority, sequence.getAndIncrement(), task, callback, token));
+        return token;
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "disassembler-task-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+
+    private class Job<T> implements Runnable, Comparable<Job<?>>, ProgressListener {
+        private final Priority priority;
+        private final long order;
+        private final Task<T> task;
+        private final TaskCallback<T> callback;
+        private final CancellationToken token;
+        private long lastProgress;
+
+        Job(Priority priority, long order, Task<T> task, TaskCallback<T> callback, CancellationToken token) {
+            this.priority = priority;
+            this.order = order;
+            this.task = task;
+            this.callback = callback;
+            this.token = token;
+        }
+
+        @Override
+        public int compareTo(@NotNull Job<?> other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(order, other.order);
+        }
+
+        @Override
+        public void onProgress(long current, long total) {
+            long now = System.currentTimeMillis();
+            if (current < total && now - lastProgress < PROGRESS_INTERVAL_MS)
+                return;
+            lastProgress = now;
+            mainHandler.post(() -> {
+                if (!token.isCancelled())
+                    callback.onProgress(current, total);
+            });
+        }
+
+        @Override
+        public void run() {
+            if (token.isCancelled())
+                return;
+            try {
+                T result = task.run(token, this);
+                mainHandler.post(() -> {
+                    if (!token.isCancelled())
+                        callback.onSuccess(result);
+                });
+            } catch (CancellationException ignored) {
+            } catch (Throwable error) {
+                mainHandler.post(() -> {
+                    if (!token.isCancelled())
+                        callback.onError(error);
+                });
+            }
+        }
+    }
+}
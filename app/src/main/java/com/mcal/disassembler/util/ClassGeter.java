@@ -3,25 +3,31 @@ package com.mcal.disassembler.util;
 import com.mcal.disassembler.nativeapi.DisassemblerClass;
 import com.mcal.disassembler.nativeapi.DisassemblerSymbol;
 import com.mcal.disassembler.nativeapi.Dumper;
+import com.mcal.disassembler.nativeapi.SymbolTable;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ClassGeter {
     @Nullable
-    public static DisassemblerClass getClass(String name) {
-        for (DisassemblerClass clasz : Dumper.classes)
-            if (clasz.getName().equals(name))
-                return clasz;
-        DisassemblerClass clasz = new DisassemblerClass(name);
-        for (DisassemblerSymbol symbol : Dumper.symbols)
+    public static DisassemblerClass getClass(String path, String name) {
+        SymbolTable table = Dumper.getSymbolTable(path);
+        if (table == null)
+            return null;
+        DisassemblerClass cached = table.findClass(name);
+        if (cached != null)
+            return cached;
+        List<DisassemblerSymbol> symbols = new ArrayList<>();
+        for (DisassemblerSymbol symbol : table.getSymbols())
             if (hasClass(symbol.getDemangledName()))
                 if (getClassName(symbol.getDemangledName()).equals(name))
-                    clasz.addNewSymbol(symbol);
-        if (clasz.getSymbols().isEmpty())
+                    symbols.add(symbol);
+        if (symbols.isEmpty())
             return null;
-        Dumper.classes.addElement(clasz);
-        return clasz;
+        return table.cacheClass(new DisassemblerClass(name, symbols));
     }
 
     private static boolean hasClass(@NotNull String name) {
@@ -7,6 +7,7 @@ import com.mcal.disassembler.nativeapi.DisassemblerVtable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.Vector;
 
 public class HeaderGenerator {
@@ -32,7 +33,7 @@ public class HeaderGenerator {
         }
     }
 
-    private static boolean hasItemInList(@NotNull Vector<DisassemblerSymbol> syms, DisassemblerSymbol sym) {
+    private static boolean hasItemInList(@NotNull List<DisassemblerSymbol> syms, DisassemblerSymbol sym) {
         for (DisassemblerSymbol iSym : syms)
             if (sym.getDemangledName().equals(iSym.getDemangledName()))
                 return false;
@@ -217,7 +218,7 @@ public class HeaderGenerator {
             return null;
         if (vtable.getVtables().isEmpty())
             return null;
-        Vector<DisassemblerSymbol> symbols = vtable.getVtables();
+        Vector<DisassemblerSymbol> symbols = new Vector<>(vtable.getVtables());
         for (DisassemblerSymbol symbol : symbols)
             if (hasItemInList(symbols, symbol))
                 symbols.addElement(symbol);
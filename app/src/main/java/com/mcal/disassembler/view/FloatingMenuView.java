@@ -99,7 +99,7 @@ public class FloatingMenuView extends RelativeLayout {
         try {
             String localText = new String();
             Vector<DisassemblerSymbol> symbols = new Vector<DisassemblerSymbol>();
-            symbols = Searcher.search(name);
+            symbols = Searcher.search(path, name);
             for (DisassemblerSymbol symbol : symbols)
                 localText = localText + symbol.getDemangledName() + "\n";
             text.setText(localText);
@@ -5,8 +5,7 @@ import android.annotation.SuppressLint;
 import com.mcal.disassembler.nativeapi.DisassemblerSymbol;
 import com.mcal.disassembler.nativeapi.DisassemblerVtable;
 import com.mcal.disassembler.nativeapi.Dumper;
-
-import org.jetbrains.annotations.Nullable;
+import com.mcal.disassembler.nativeapi.SymbolTable;
 
 import java.util.HashMap;
 import java.util.Objects;
@@ -15,9 +14,12 @@ import java.util.Vector;
 public class VtableDumper {
     @org.jetbrains.annotations.Nullable
     public static DisassemblerVtable dump(String path, String classn) {
-        for (DisassemblerVtable ztv : Dumper.exploed)
-            if (ztv.getName().contains(classn))
-                return ztv;
+        SymbolTable table = Dumper.getSymbolTable(path);
+        if (table == null)
+            return null;
+        DisassemblerVtable cached = table.findVtable(classn);
+        if (cached != null)
+            return cached;
 
         Dump d = new Dump(path);
 
@@ -66,19 +68,9 @@ public class VtableDumper {
 
         for (int j = 0; j < sym.size / 4 - 2; ++j) {
             if (map.get(sym.value + 8 + j * 4) != null)
-                if (getSymbol(Objects.requireNonNull(map.get(sym.value + 8 + j * 4)).name) != null)
-                    virtual_table_symbols.addElement(getSymbol(Objects.requireNonNull(map.get(sym.value + 8 + j * 4)).name));
+                if (table.getSymbol(Objects.requireNonNull(map.get(sym.value + 8 + j * 4)).name) != null)
+                    virtual_table_symbols.addElement(table.getSymbol(Objects.requireNonNull(map.get(sym.value + 8 + j * 4)).name));
         }
-        DisassemblerVtable vtable__ = new DisassemblerVtable(classn, virtual_table_symbols);
-        Dumper.exploed.addElement(vtable__);
-        return vtable__;
-    }
-
-    @Nullable
-    private static DisassemblerSymbol getSymbol(String name) {
-        for (DisassemblerSymbol symbol : Dumper.symbols)
-            if (symbol.getName().equals(name))
-                return symbol;
-        return null;
+        return table.cacheVtable(new DisassemblerVtable(classn, virtual_table_symbols));
     }
 }
\ No newline at end of file
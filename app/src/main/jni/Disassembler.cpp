@@ -1,5 +1,7 @@
 #include <jni.h>
 #include <fstream>
+#include <map>
+#include <mutex>
 #include <string>
 #include <vector>
 #include <cxxabi.h>
@@ -22,25 +24,123 @@ struct DisassemblerSymbol {
     unsigned char other;
 };
 
-std::vector<DisassemblerSymbol>disassemblerSymbolsList;
+struct DisassemblerContext {
+	std::string path;
+	int references;
+	std::mutex loadLock;
+	elfio* reader;
+	std::vector<section*> symbolSections;
+	size_t sectionIndex;
+	Elf_Xword symbolIndex;
+	size_t total;
+	std::vector<DisassemblerSymbol> symbols;
+};
+
+std::mutex disassemblerContextsLock;
+std::map<std::string, DisassemblerContext*> disassemblerContexts;
 
-void loadSymbols(const elfio& reader) {
-	disassemblerSymbolsList.clear();
-	Elf_Half n = reader.sections.size();
-    for (Elf_Half i = 0; i < n; ++i) {
-		section* sec = reader.sections[i];
+void prepareSymbols(DisassemblerContext* context) {
+	Elf_Half n = context->reader->sections.size();
+	context->total = 0;
+	for (Elf_Half i = 0; i < n; ++i) {
+		section* sec = context->reader->sections[i];
 		if (SHT_SYMTAB == sec->get_type() || SHT_DYNSYM == sec->get_type()) {
-			symbol_section_accessor symbols(reader, sec);
-			long long sym_no = symbols.get_symbols_num();
-			if (sym_no > 0) {
-				for (long long i = 0; i < sym_no; ++i) {
-					DisassemblerSymbol symbol_disassembler;
-                    symbols.get_symbol(static_cast<Elf_Xword>(i), symbol_disassembler.name, symbol_disassembler.value, symbol_disassembler.size, symbol_disassembler. bind, symbol_disassembler. type, symbol_disassembler.section, symbol_disassembler.other);
-					disassemblerSymbolsList.push_back(symbol_disassembler);
-                }
-            }
-        }
-    }
+			symbol_section_accessor symbols(*context->reader, sec);
+			context->total += symbols.get_symbols_num();
+			context->symbolSections.push_back(sec);
+		}
+	}
+	context->sectionIndex = 0;
+	context->symbolIndex = 0;
+	// Reserving up front keeps the storage stable while other threads read loaded symbols.
+	context->symbols.reserve(context->total);
+}
+
+size_t loadSymbols(DisassemblerContext* context, size_t maxCount) {
+	std::lock_guard<std::mutex> guard(context->loadLock);
+	size_t loaded = 0;
+	while (context->reader && loaded < maxCount) {
+		if (context->sectionIndex >= context->symbolSections.size()) {
+			delete context->reader;
+			context->reader = nullptr;
+			context->symbolSections.clear();
+			break;
+		}
+		symbol_section_accessor symbols(*context->reader, context->symbolSections[context->sectionIndex]);
+		Elf_Xword sym_no = symbols.get_symbols_num();
+		for (; context->symbolIndex < sym_no && loaded < maxCount; ++context->symbolIndex, ++loaded) {
+			DisassemblerSymbol symbol_disassembler;
+			symbols.get_symbol(context->symbolIndex, symbol_disassembler.name, symbol_disassembler.value, symbol_disassembler.size, symbol_disassembler.bind, symbol_disassembler.type, symbol_disassembler.section, symbol_disassembler.other);
+			context->symbols.push_back(symbol_disassembler);
+		}
+		if (context->symbolIndex >= sym_no) {
+			context->sectionIndex++;
+			context->symbolIndex = 0;
+		}
+	}
+	return loaded;
+}
+
+std::string demangleName(const std::string& name) {
+	char* demangled = abi::__cxa_demangle(name.c_str(), nullptr, nullptr, nullptr);
+	if (!demangled)
+		return std::string();
+	std::string result(demangled);
+	free(demangled);
+	return result;
+}
+
+DisassemblerContext* openContext(const std::string& path) {
+	{
+		std::lock_guard<std::mutex> guard(disassemblerContextsLock);
+		auto found = disassemblerContexts.find(path);
+		if (found != disassemblerContexts.end()) {
+			found->second->references++;
+			return found->second;
+		}
+	}
+	auto* reader = new elfio();
+	if (!reader->load(path)) {
+		delete reader;
+		return nullptr;
+	}
+	auto* context = new DisassemblerContext();
+	context->path = path;
+	context->references = 1;
+	context->reader = reader;
+	prepareSymbols(context);
+
+	std::lock_guard<std::mutex> guard(disassemblerContextsLock);
+	auto found = disassemblerContexts.find(path);
+	if (found != disassemblerContexts.end()) {
+		// Another thread opened the same library meanwhile; share its context.
+		delete context->reader;
+		delete context;
+		found->second->references++;
+		return found->second;
+	}
+	disassemblerContexts[path] = context;
+	return context;
+}
+
+void closeContext(DisassemblerContext* context) {
+	{
+		std::lock_guard<std::mutex> guard(disassemblerContextsLock);
+		if (--context->references > 0)
+			return;
+		disassemblerContexts.erase(context->path);
+	}
+	{
+		// Wait for a chunk that is still being parsed on another thread.
+		std::lock_guard<std::mutex> guard(context->loadLock);
+		delete context->reader;
+		context->reader = nullptr;
+	}
+	delete context;
+}
+
+inline DisassemblerContext* toContext(jlong handle) {
+	return reinterpret_cast<DisassemblerContext*>(handle);
 }
 
 std::string jstringTostring(JNIEnv* env, jstring jstr) {
@@ -67,30 +167,38 @@ extern "C" {
 	    std::ifstream istream(jstringTostring(env,path).c_str());
 	    return static_cast<jboolean>(istream.is_open());
     }
-    JNIEXPORT jstring JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getNameAt(JNIEnv *env, jclass type, jlong pos) {
-	    return env->NewStringUTF(disassemblerSymbolsList[pos].name.c_str());
+    JNIEXPORT jlong JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_open(JNIEnv* env, jclass type, jstring path) {
+	    return reinterpret_cast<jlong>(openContext(jstringTostring(env,path)));
+    }
+    JNIEXPORT void JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_close(JNIEnv* env, jclass type, jlong handle) {
+	    if (handle != 0)
+		    closeContext(toContext(handle));
+    }
+    JNIEXPORT jstring JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getNameAt(JNIEnv *env, jclass type, jlong handle, jlong pos) {
+	    return env->NewStringUTF(toContext(handle)->symbols[pos].name.c_str());
+    }
+    JNIEXPORT jstring JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getDemangledNameAt(JNIEnv *env, jclass type, jlong handle, jlong pos) {
+	    // Not cached: the Java loader demangles each symbol once and keeps the name.
+	    return env->NewStringUTF(demangleName(toContext(handle)->symbols[pos].name).c_str());
     }
-    JNIEXPORT jstring JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getDemangledNameAt(JNIEnv *env, jclass type, jlong pos) {
-	    char*name=abi::__cxa_demangle(disassemblerSymbolsList[pos].name.c_str(),0,0,0);
-	    return env->NewStringUTF(name?name:"");
+    JNIEXPORT jint JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_loadChunk(JNIEnv* env, jclass type, jlong handle, jint maxCount) {
+	    return static_cast<jint>(loadSymbols(toContext(handle), static_cast<size_t>(maxCount)));
     }
-    JNIEXPORT jlong JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getSize(JNIEnv* env, jclass type) {
-	    return disassemblerSymbolsList.size();
+    JNIEXPORT jlong JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getTotalSize(JNIEnv* env, jclass type, jlong handle) {
+	    return toContext(handle)->total;
     }
-    JNIEXPORT jint JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getTypeAt(JNIEnv *env, jclass type, jlong pos) {
-	    return (jint)((int)disassemblerSymbolsList[pos].type);
+    JNIEXPORT jlong JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getSize(JNIEnv* env, jclass type, jlong handle) {
+	    std::lock_guard<std::mutex> guard(toContext(handle)->loadLock);
+	    return toContext(handle)->symbols.size();
     }
-    JNIEXPORT jint JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getBindAt(JNIEnv *env, jclass type, jlong pos) {
-	    return (jint)((int)disassemblerSymbolsList[pos].bind);
+    JNIEXPORT jint JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getTypeAt(JNIEnv *env, jclass type, jlong handle, jlong pos) {
+	    return (jint)((int)toContext(handle)->symbols[pos].type);
     }
-    JNIEXPORT void JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_load(JNIEnv* env, jclass type, jstring path) {
-	    elfio reader;
-	    reader.load(jstringTostring(env,path));
-	    loadSymbols(reader);
+    JNIEXPORT jint JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_getBindAt(JNIEnv *env, jclass type, jlong handle, jlong pos) {
+	    return (jint)((int)toContext(handle)->symbols[pos].bind);
     }
     JNIEXPORT jstring JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_demangleOnly(JNIEnv* env, jclass type, jstring jname) {
-	    char*name=abi::__cxa_demangle(jstringTostring(env,jname).c_str(),0,0,0);
-	    return env->NewStringUTF(name?name:"");
+	    return env->NewStringUTF(demangleName(jstringTostring(env,jname)).c_str());
     }
     JNIEXPORT jstring JNICALL Java_com_mcal_disassembler_nativeapi_DisassemblerDumper_demangle(JNIEnv* env, jclass type, jstring name) {
 		std::string methodsName=jstringTostring(env,name);
@@ -109,8 +217,9 @@ extern "C" {
 			strings.push_back(bridgeString);
 
 		for(const std::string& string:strings) {
-			if(abi::__cxa_demangle(string.c_str(),nullptr,nullptr,nullptr)) {
-				result += abi::__cxa_demangle(string.c_str(),nullptr,nullptr,nullptr);
+			std::string demangled = demangleName(string);
+			if(!demangled.empty()) {
+				result += demangled;
 				result += "\n";
 			} else if(!string.empty()) {
 				result += string;
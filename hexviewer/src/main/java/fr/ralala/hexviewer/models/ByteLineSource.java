@@ -0,0 +1,43 @@
+package fr.ralala.hexviewer.models;
+
+import java.io.IOException;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Lines built from a sequence of bytes, used to search the bytes and to find the lines of the results.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public interface ByteLineSource {
+
+    /**
+     * Returns the number of bytes.
+     *
+     * @return long
+     */
+    long byteLength();
+
+    /**
+     * Reads bytes.
+     *
+     * @param position The position.
+     * @param dst      The output buffer.
+     * @param offset   The offset in the output buffer.
+     * @param length   The number of bytes to read.
+     * @return The number of bytes read (less than length at the end).
+     * @throws IOException If an I/O error occurs.
+     */
+    int readBytes(long position, byte[] dst, int offset, int length) throws IOException;
+
+    /**
+     * Returns the index of the line containing a byte.
+     *
+     * @param position The byte position.
+     * @return int
+     */
+    int lineOf(long position);
+}
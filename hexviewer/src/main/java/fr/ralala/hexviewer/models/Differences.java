@@ -0,0 +1,118 @@
+package fr.ralala.hexviewer.models;
+
+import java.util.Arrays;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Sorted ranges of differing bytes between two files.
+ * The ranges separated by less than a gap are merged, they are only used to navigate between the differences.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class Differences {
+    private final long mGap;
+    private long[] mStarts = new long[64];
+    private long[] mEnds = new long[64];
+    private int mCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param gap Ranges separated by less than this number of bytes are merged.
+     */
+    public Differences(final long gap) {
+        mGap = gap;
+    }
+
+    /**
+     * Adds a range, the ranges must be added in order.
+     *
+     * @param start The first byte (inclusive).
+     * @param end   The last byte (exclusive).
+     */
+    public void add(final long start, final long end) {
+        if (mCount != 0 && start - mEnds[mCount - 1] < mGap) {
+            mEnds[mCount - 1] = Math.max(mEnds[mCount - 1], end);
+            return;
+        }
+        if (mCount == mStarts.length) {
+            mStarts = Arrays.copyOf(mStarts, mCount * 2);
+            mEnds = Arrays.copyOf(mEnds, mCount * 2);
+        }
+        mStarts[mCount] = start;
+        mEnds[mCount++] = end;
+    }
+
+    /**
+     * Returns the number of ranges.
+     *
+     * @return int
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Returns the first byte of a range.
+     *
+     * @param index The range index.
+     * @return long
+     */
+    public long getStart(final int index) {
+        return mStarts[index];
+    }
+
+    /**
+     * Returns the end (exclusive) of a range.
+     *
+     * @param index The range index.
+     * @return long
+     */
+    public long getEnd(final int index) {
+        return mEnds[index];
+    }
+
+    /**
+     * Returns the first range starting at or after a position.
+     *
+     * @param position The position.
+     * @return The range index, -1 if none.
+     */
+    public int next(final long position) {
+        final int index = lowerBound(position);
+        return index < mCount ? index : -1;
+    }
+
+    /**
+     * Returns the last range starting before a position.
+     *
+     * @param position The position.
+     * @return The range index, -1 if none.
+     */
+    public int previous(final long position) {
+        return lowerBound(position) - 1;
+    }
+
+    /**
+     * Returns the index of the first range starting at or after a position (binary search).
+     *
+     * @param position The position.
+     * @return The index, size() if none.
+     */
+    private int lowerBound(final long position) {
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mStarts[mid] < position)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
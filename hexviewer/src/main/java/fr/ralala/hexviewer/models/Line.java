@@ -1,12 +1,13 @@
 package fr.ralala.hexviewer.models;
 
+import java.nio.ByteBuffer;
 
-import java.util.List;
+import fr.ralala.hexviewer.utils.SysHelper;
 
 /**
  * ******************************************************************************
  * <p><b>Project HexViewer</b><br/>
- * Line entry.
+ * Line entry: a view on a part of a buffer shared by several lines, the plain value is formatted on first use.
  * </p>
  *
  * @author Keidan
@@ -14,17 +15,20 @@ import java.util.List;
  * ******************************************************************************
  */
 public class Line {
-    private final String mPlain;
-    private final List<Byte> mRaw;
+    private final byte[] mBuffer;
+    private final int mOffset;
+    private final int mLength;
+    private String mPlain = null;
 
-    public Line(final String plain, List<Byte> raw) {
-        mPlain = plain;
-        mRaw = raw;
+    public Line(final byte[] buffer, final int offset, final int length) {
+        mBuffer = buffer;
+        mOffset = offset;
+        mLength = length;
     }
 
     @Override
     public String toString() {
-        return mPlain;
+        return getPlain();
     }
 
     /**
@@ -33,15 +37,38 @@ public class Line {
      * @return String
      */
     public String getPlain() {
+        if (mPlain == null)
+            mPlain = SysHelper.formatLine(mBuffer, mOffset, mLength);
         return mPlain;
     }
 
+    /**
+     * Returns the number of bytes.
+     *
+     * @return int
+     */
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * Copies the raw value.
+     *
+     * @param offset The offset in the line.
+     * @param dst    The output buffer.
+     * @param dstOff The offset in the output buffer.
+     * @param length The number of bytes to copy.
+     */
+    public void copyTo(final int offset, final byte[] dst, final int dstOff, final int length) {
+        System.arraycopy(mBuffer, mOffset + offset, dst, dstOff, length);
+    }
+
     /**
      * Returns the raw value.
      *
-     * @return List<Byte>
+     * @return A read-only view on the bytes.
      */
-    public List<Byte> getRaw() {
-        return mRaw;
+    public ByteBuffer getRaw() {
+        return ByteBuffer.wrap(mBuffer, mOffset, mLength).slice().asReadOnlyBuffer();
     }
 }
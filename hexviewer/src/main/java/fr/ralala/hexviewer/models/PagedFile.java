@@ -0,0 +1,221 @@
+package fr.ralala.hexviewer.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Read-only access to a file through fixed size pages; only the most recently used pages are kept in memory.
+ * The bulk reads go through small memory mapped windows of the file instead, so they can be done by several threads;
+ * if the file can't be mapped, they go through the pages.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class PagedFile implements Closeable {
+    public static final int PAGE_SIZE = 64 * 1024;
+    private static final int MAX_PAGES = 32;
+    private static final long MAP_WINDOW = 4 * 1024 * 1024;
+    private static final int MAX_WINDOWS = 8;
+    private final FileChannel mChannel;
+    private final Closeable mOwner;
+    private final long mLength;
+    /* the mapped reads hold the read lock, so no window is accessed once the file is closed */
+    private final ReadWriteLock mMapLock = new ReentrantReadWriteLock();
+    private final Map<Long, MappedByteBuffer> mWindows = new LinkedHashMap<Long, MappedByteBuffer>(MAX_WINDOWS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest) {
+            return size() > MAX_WINDOWS;
+        }
+    };
+    private volatile boolean mMapFailed = false;
+    private boolean mClosed = false;
+    private final Map<Long, byte[]> mPages = new LinkedHashMap<Long, byte[]>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel to read.
+     * @param owner   Object closed with the channel (eg: ParcelFileDescriptor), may be null.
+     * @throws IOException If the size of the channel cannot be read.
+     */
+    public PagedFile(final FileChannel channel, final Closeable owner) throws IOException {
+        mChannel = channel;
+        mOwner = owner;
+        mLength = channel.size();
+    }
+
+    /**
+     * Returns the file length.
+     *
+     * @return long
+     */
+    public long length() {
+        return mLength;
+    }
+
+    /**
+     * Reads bytes from the file.
+     *
+     * @param position The position in the file.
+     * @param dst      The output buffer.
+     * @param offset   The offset in the output buffer.
+     * @param length   The number of bytes to read.
+     * @return The number of bytes read (less than length at the end of the file).
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized int read(final long position, final byte[] dst, final int offset, final int length) throws IOException {
+        int total = 0;
+        long pos = position;
+        while (total < length && pos < mLength) {
+            final byte[] page = getPage(pos / PAGE_SIZE);
+            final int start = (int) (pos % PAGE_SIZE);
+            final int n = Math.min(length - total, page.length - start);
+            if (n <= 0)
+                break;
+            System.arraycopy(page, start, dst, offset + total, n);
+            total += n;
+            pos += n;
+        }
+        return total;
+    }
+
+    /**
+     * Reads bytes from the memory mapped windows of the file, the copy is done without lock.
+     * If the file can't be mapped, the bytes are read through the pages.
+     *
+     * @param position The position in the file.
+     * @param dst      The output buffer.
+     * @param offset   The offset in the output buffer.
+     * @param length   The number of bytes to read.
+     * @return The number of bytes read (less than length at the end of the file).
+     * @throws IOException If an I/O error occurs.
+     */
+    public int readMapped(final long position, final byte[] dst, final int offset, final int length) throws IOException {
+        if (mMapFailed)
+            return read(position, dst, offset, length);
+        int total = 0;
+        long pos = position;
+        mMapLock.readLock().lock();
+        try {
+            while (total < length && pos < mLength) {
+                final ByteBuffer window = getWindow(pos / MAP_WINDOW);
+                if (window == null)
+                    return total + read(pos, dst, offset + total, length - total);
+                window.position((int) (pos % MAP_WINDOW));
+                final int n = Math.min(length - total, window.remaining());
+                window.get(dst, offset + total, n);
+                total += n;
+                pos += n;
+            }
+        } finally {
+            mMapLock.readLock().unlock();
+        }
+        return total;
+    }
+
+    /**
+     * Returns a window of the memory mapping of the file, the window is mapped if it is not in the cache.
+     *
+     * @param index The window index.
+     * @return A duplicate of the window (the windows are shared, a duplicate has its own position), null if the file can't be mapped.
+     * @throws IOException If the file is closed.
+     */
+    private ByteBuffer getWindow(final long index) throws IOException {
+        synchronized (mWindows) {
+            if (mClosed)
+                throw new ClosedChannelException();
+            MappedByteBuffer window = mWindows.get(index);
+            if (window == null) {
+                final long start = index * MAP_WINDOW;
+                try {
+                    window = mChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_WINDOW, mLength - start));
+                } catch (final IOException e) {
+                    /* eg: a channel which is not backed by a regular file */
+                    mMapFailed = true;
+                    return null;
+                }
+                mWindows.put(index, window);
+            }
+            return window.duplicate();
+        }
+    }
+
+    /**
+     * Transfers bytes from the file to a channel without going through the pages.
+     *
+     * @param position The position in the file.
+     * @param count    The maximum number of bytes to transfer.
+     * @param target   The target channel.
+     * @return The number of bytes transferred.
+     * @throws IOException If an I/O error occurs.
+     */
+    public long transferTo(final long position, final long count, final WritableByteChannel target) throws IOException {
+        return mChannel.transferTo(position, count, target);
+    }
+
+    /**
+     * Returns a page, reads it if it is not in the cache.
+     *
+     * @param index The page index.
+     * @return byte[]
+     * @throws IOException If an I/O error occurs.
+     */
+    private byte[] getPage(final long index) throws IOException {
+        byte[] page = mPages.get(index);
+        if (page == null) {
+            final long start = index * PAGE_SIZE;
+            page = new byte[(int) Math.min(PAGE_SIZE, mLength - start)];
+            final ByteBuffer bb = ByteBuffer.wrap(page);
+            while (bb.hasRemaining()) {
+                if (mChannel.read(bb, start + bb.position()) == -1)
+                    throw new IOException("Unexpected end of file");
+            }
+            mPages.put(index, page);
+        }
+        return page;
+    }
+
+    /**
+     * Closes the file, waits for the mapped reads in progress.
+     * The windows are released, they are unmapped by the garbage collector and are never accessed again,
+     * so the file can then be truncated.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        mMapLock.writeLock().lock();
+        try {
+            synchronized (mWindows) {
+                mClosed = true;
+                mWindows.clear();
+            }
+            synchronized (this) {
+                mPages.clear();
+                mChannel.close();
+                if (mOwner != null)
+                    mOwner.close();
+            }
+        } finally {
+            mMapLock.writeLock().unlock();
+        }
+    }
+}
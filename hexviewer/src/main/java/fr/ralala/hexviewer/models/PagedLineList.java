@@ -0,0 +1,513 @@
+package fr.ralala.hexviewer.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import fr.ralala.hexviewer.utils.SysHelper;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * List of the hex lines of a paged file, the lines are formatted on demand by blocks.
+ * The list is a piece table: a balanced tree (treap) of pieces which are either a range of lines of the file
+ * or a modified line kept in memory, so that the updates, insertions and deletions are in O(log n)
+ * and the file is never copied.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class PagedLineList extends AbstractList<LineData<Line>> implements ByteLineSource, Closeable {
+    private static final int BLOCK_LINES = 256;
+    private static final int MAX_LINES = BLOCK_LINES * 16;
+    private static final int MAX_TRANSFER = 1024 * 1024;
+    private final Map<Long, LineData<Line>> mLines = new LinkedHashMap<Long, LineData<Line>>(MAX_LINES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, LineData<Line>> eldest) {
+            return size() > MAX_LINES;
+        }
+    };
+    private final Random mRandom = new Random();
+    private PagedFile mFile;
+    private Piece mRoot = null;
+
+    public PagedLineList(final PagedFile file) {
+        mFile = file;
+        final long length = file.length();
+        if (length > 0)
+            mRoot = new Piece(0, (int) ((length + SysHelper.MAX_BY_ROW - 1) / SysHelper.MAX_BY_ROW), length, mRandom.nextInt());
+    }
+
+    /**
+     * Returns the number of lines.
+     *
+     * @return int
+     */
+    @Override
+    public synchronized int size() {
+        return count(mRoot);
+    }
+
+    /**
+     * Returns the number of bytes represented by the lines.
+     *
+     * @return long
+     */
+    @Override
+    public synchronized long byteLength() {
+        return length(mRoot);
+    }
+
+    /**
+     * Returns a line, the line (and the lines around it) are formatted if they are not in the cache.
+     *
+     * @param index The line index.
+     * @return LineData<Line>
+     */
+    @Override
+    public synchronized LineData<Line> get(final int index) {
+        checkIndex(index, size() - 1);
+        Piece p = mRoot;
+        int i = index;
+        while (true) {
+            final int left = count(p.mLeft);
+            if (i < left)
+                p = p.mLeft;
+            else if (i < left + p.mCount)
+                break;
+            else {
+                i -= left + p.mCount;
+                p = p.mRight;
+            }
+        }
+        if (p.mLine != null)
+            return p.mLine;
+        try {
+            return getFileLine(p, i - count(p.mLeft));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Replaces a line.
+     *
+     * @param index The line index.
+     * @param line  The new line.
+     * @return The previous line.
+     */
+    @Override
+    public synchronized LineData<Line> set(final int index, final LineData<Line> line) {
+        final LineData<Line> old = get(index);
+        final Piece[] head = split(mRoot, index);
+        final Piece[] tail = split(head[1], 1);
+        mRoot = merge(merge(head[0], new Piece(line, mRandom.nextInt())), tail[1]);
+        return old;
+    }
+
+    /**
+     * Inserts a line.
+     *
+     * @param index The line index.
+     * @param line  The new line.
+     */
+    @Override
+    public synchronized void add(final int index, final LineData<Line> line) {
+        checkIndex(index, size());
+        final Piece[] parts = split(mRoot, index);
+        mRoot = merge(merge(parts[0], new Piece(line, mRandom.nextInt())), parts[1]);
+        modCount++;
+    }
+
+    /**
+     * Removes a line.
+     *
+     * @param index The line index.
+     * @return The removed line.
+     */
+    @Override
+    public synchronized LineData<Line> remove(final int index) {
+        final LineData<Line> old = get(index);
+        final Piece[] head = split(mRoot, index);
+        final Piece[] tail = split(head[1], 1);
+        mRoot = merge(head[0], tail[1]);
+        modCount++;
+        return old;
+    }
+
+    /**
+     * Inserts lines, the lines are merged in a tree which is inserted at once.
+     *
+     * @param index The index of the first line.
+     * @param lines The new lines.
+     * @return true if the list is changed.
+     */
+    @Override
+    public synchronized boolean addAll(final int index, final Collection<? extends LineData<Line>> lines) {
+        checkIndex(index, size());
+        Piece tree = null;
+        for (LineData<Line> line : lines)
+            tree = merge(tree, new Piece(line, mRandom.nextInt()));
+        if (tree == null)
+            return false;
+        final Piece[] parts = split(mRoot, index);
+        mRoot = merge(merge(parts[0], tree), parts[1]);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes a range of lines, only the pieces at the bounds of the range are split.
+     *
+     * @param fromIndex The index of the first line (inclusive).
+     * @param toIndex   The index of the last line (exclusive).
+     */
+    @Override
+    protected synchronized void removeRange(final int fromIndex, final int toIndex) {
+        if (fromIndex >= toIndex)
+            return;
+        checkIndex(fromIndex, size() - 1);
+        checkIndex(toIndex, size());
+        final Piece[] head = split(mRoot, fromIndex);
+        final Piece[] tail = split(head[1], toIndex - fromIndex);
+        mRoot = merge(head[0], tail[1]);
+        modCount++;
+    }
+
+    /**
+     * Reads the bytes represented by the lines.
+     * The list is only locked to find the pieces, the ranges of the file are then read from its memory mapping,
+     * so that several threads can read at the same time.
+     *
+     * @param position The position.
+     * @param dst      The output buffer.
+     * @param offset   The offset in the output buffer.
+     * @param length   The number of bytes to read.
+     * @return The number of bytes read (less than length at the end).
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public int readBytes(final long position, final byte[] dst, final int offset, final int length) throws IOException {
+        final PagedFile file;
+        final List<long[]> ranges = new ArrayList<>();
+        int total = 0;
+        synchronized (this) {
+            file = mFile;
+            long pos = position;
+            while (total < length && pos < byteLength()) {
+                /* search the piece containing the position */
+                Piece p = mRoot;
+                long inner = pos;
+                while (true) {
+                    final long left = length(p.mLeft);
+                    if (inner < left)
+                        p = p.mLeft;
+                    else if (inner < left + p.mLength) {
+                        inner -= left;
+                        break;
+                    } else {
+                        inner -= left + p.mLength;
+                        p = p.mRight;
+                    }
+                }
+                final int n = (int) Math.min(length - total, p.mLength - inner);
+                if (p.mLine != null)
+                    p.mLine.getValue().copyTo((int) inner, dst, offset + total, n);
+                else
+                    ranges.add(new long[]{p.mOffset + inner, offset + total, n});
+                total += n;
+                pos += n;
+            }
+        }
+        for (long[] range : ranges)
+            if (file.readMapped(range[0], dst, (int) range[1], (int) range[2]) != range[2])
+                throw new IOException("Unexpected end of file");
+        return total;
+    }
+
+    /**
+     * Returns the index of the line containing a byte.
+     *
+     * @param position The byte position.
+     * @return int
+     */
+    @Override
+    public synchronized int lineOf(final long position) {
+        if (position < 0 || position >= byteLength())
+            throw new IndexOutOfBoundsException("Position: " + position + ", Length: " + byteLength());
+        Piece p = mRoot;
+        long inner = position;
+        int line = 0;
+        while (true) {
+            final long left = length(p.mLeft);
+            if (inner < left)
+                p = p.mLeft;
+            else if (inner < left + p.mLength)
+                return line + count(p.mLeft) + (int) ((inner - left) / SysHelper.MAX_BY_ROW);
+            else {
+                inner -= left + p.mLength;
+                line += count(p.mLeft) + p.mCount;
+                p = p.mRight;
+            }
+        }
+    }
+
+    /**
+     * Writes the bytes represented by the lines to a channel: the unchanged ranges are transferred from the file
+     * and the modified lines are written directly.
+     * The pieces are collected first, so the list is not locked during the transfer.
+     *
+     * @param target   The target channel.
+     * @param listener Notified after each write, may be null.
+     * @return false if the transfer has been stopped by the listener.
+     * @throws IOException If an I/O error occurs.
+     */
+    public boolean transferTo(final WritableByteChannel target, final TransferListener listener) throws IOException {
+        final PagedFile file;
+        final List<Piece> pieces = new ArrayList<>();
+        synchronized (this) {
+            file = mFile;
+            /* in-order traversal */
+            final Deque<Piece> stack = new ArrayDeque<>();
+            Piece p = mRoot;
+            while (p != null || !stack.isEmpty()) {
+                while (p != null) {
+                    stack.push(p);
+                    p = p.mLeft;
+                }
+                p = stack.pop();
+                pieces.add(new Piece(p));
+                p = p.mRight;
+            }
+        }
+        for (Piece p : pieces) {
+            if (p.mLine != null) {
+                final ByteBuffer bb = p.mLine.getValue().getRaw();
+                while (bb.hasRemaining())
+                    target.write(bb);
+                if (listener != null && !listener.onTransferred(p.mLength))
+                    return false;
+                continue;
+            }
+            long done = 0;
+            while (done < p.mLength) {
+                final long n = file.transferTo(p.mOffset + done, Math.min(MAX_TRANSFER, p.mLength - done), target);
+                if (n <= 0)
+                    throw new IOException("Unexpected end of file");
+                done += n;
+                if (listener != null && !listener.onTransferred(n))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Changes the file used by this list, the content of the new file must be equal to the content of this list (eg: after a save).
+     *
+     * @param file The new file.
+     * @return The previous file, which must be closed by the caller.
+     * @throws IOException If the length does not match.
+     */
+    public synchronized PagedFile rebase(final PagedFile file) throws IOException {
+        if (file.length() != byteLength())
+            throw new IOException("File length mismatch");
+        /* in-order traversal */
+        final Deque<Piece> stack = new ArrayDeque<>();
+        Piece p = mRoot;
+        long offset = 0;
+        while (p != null || !stack.isEmpty()) {
+            while (p != null) {
+                stack.push(p);
+                p = p.mLeft;
+            }
+            p = stack.pop();
+            p.mOffset = offset;
+            p.mLine = null;
+            offset += p.mLength;
+            p = p.mRight;
+        }
+        mLines.clear();
+        final PagedFile old = mFile;
+        mFile = file;
+        return old;
+    }
+
+    /**
+     * Closes the underlying file.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        mLines.clear();
+        mFile.close();
+    }
+
+    /**
+     * Returns a line read from the file, the block containing the line is formatted if the line is not in the cache.
+     *
+     * @param piece The piece.
+     * @param local The line index in the piece.
+     * @return LineData<Line>
+     * @throws IOException If an I/O error occurs.
+     */
+    private LineData<Line> getFileLine(final Piece piece, final int local) throws IOException {
+        final long key = piece.mOffset + (long) local * SysHelper.MAX_BY_ROW;
+        LineData<Line> line = mLines.get(key);
+        if (line == null) {
+            final int first = local - (local % BLOCK_LINES);
+            final long start = (long) first * SysHelper.MAX_BY_ROW;
+            final int length = (int) Math.min((long) BLOCK_LINES * SysHelper.MAX_BY_ROW, piece.mLength - start);
+            final byte[] buffer = new byte[length];
+            final int reads = mFile.read(piece.mOffset + start, buffer, 0, length);
+            final List<LineData<Line>> lines = SysHelper.formatBuffer(buffer, reads, null);
+            for (int i = 0; i < lines.size(); i++)
+                mLines.put(piece.mOffset + start + (long) i * SysHelper.MAX_BY_ROW, lines.get(i));
+            line = mLines.get(key);
+            if (line == null)
+                throw new IOException("Unexpected end of file");
+        }
+        return line;
+    }
+
+    /**
+     * Tests an index.
+     *
+     * @param index The index.
+     * @param max   The max value.
+     */
+    private void checkIndex(final int index, final int max) {
+        if (index < 0 || index > max)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+
+    /**
+     * Splits a tree, a piece of the file is split in two if needed.
+     *
+     * @param p     The root of the tree.
+     * @param lines The number of lines of the first tree.
+     * @return The two trees.
+     */
+    private Piece[] split(final Piece p, final int lines) {
+        if (p == null)
+            return new Piece[]{null, null};
+        final int left = count(p.mLeft);
+        if (lines <= left) {
+            final Piece[] parts = split(p.mLeft, lines);
+            p.mLeft = parts[1];
+            p.update();
+            return new Piece[]{parts[0], p};
+        }
+        if (lines >= left + p.mCount) {
+            final Piece[] parts = split(p.mRight, lines - left - p.mCount);
+            p.mRight = parts[0];
+            p.update();
+            return new Piece[]{p, parts[1]};
+        }
+        /* only the pieces of the file can contain more than one line */
+        final int head = lines - left;
+        final long headLength = (long) head * SysHelper.MAX_BY_ROW;
+        final Piece tail = new Piece(p.mOffset + headLength, p.mCount - head, p.mLength - headLength, p.mPriority);
+        tail.mRight = p.mRight;
+        tail.update();
+        p.mRight = null;
+        p.mCount = head;
+        p.mLength = headLength;
+        p.update();
+        return new Piece[]{p, tail};
+    }
+
+    /**
+     * Merges two trees.
+     *
+     * @param a The first tree.
+     * @param b The second tree.
+     * @return The root of the new tree.
+     */
+    private static Piece merge(final Piece a, final Piece b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        if (a.mPriority > b.mPriority) {
+            a.mRight = merge(a.mRight, b);
+            a.update();
+            return a;
+        }
+        b.mLeft = merge(a, b.mLeft);
+        b.update();
+        return b;
+    }
+
+    private static int count(final Piece p) {
+        return p == null ? 0 : p.mTotalCount;
+    }
+
+    private static long length(final Piece p) {
+        return p == null ? 0 : p.mTotalLength;
+    }
+
+    public interface TransferListener {
+        /**
+         * Called after each write.
+         *
+         * @param bytes The number of bytes written.
+         * @return false to stop the transfer.
+         */
+        boolean onTransferred(long bytes);
+    }
+
+    /**
+     * A range of lines read from the file or a line kept in memory.
+     */
+    private static class Piece {
+        private final int mPriority;
+        private long mOffset;
+        private int mCount;
+        private long mLength;
+        private LineData<Line> mLine = null;
+        private Piece mLeft = null;
+        private Piece mRight = null;
+        private int mTotalCount;
+        private long mTotalLength;
+
+        private Piece(final long offset, final int count, final long length, final int priority) {
+            mOffset = offset;
+            mCount = count;
+            mLength = length;
+            mPriority = priority;
+            update();
+        }
+
+        private Piece(final Piece piece) {
+            this(piece.mOffset, piece.mCount, piece.mLength, piece.mPriority);
+            mLine = piece.mLine;
+        }
+
+        private Piece(final LineData<Line> line, final int priority) {
+            this(-1, 1, line.getValue().getLength(), priority);
+            mLine = line;
+        }
+
+        /**
+         * Updates the number of lines and bytes of the subtree.
+         */
+        private void update() {
+            mTotalCount = mCount + count(mLeft) + count(mRight);
+            mTotalLength = mLength + length(mLeft) + length(mRight);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package fr.ralala.hexviewer.models;
+
+import java.io.IOException;
+import java.util.AbstractList;
+
+import fr.ralala.hexviewer.utils.SysHelper;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Plain text view of the bytes of a PagedLineList, the lines are built on demand.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class PlainLineList extends AbstractList<LineData<String>> implements ByteLineSource {
+    private static final int LINE_LENGTH = SysHelper.MAX_BY_LINE + 1;
+    private final PagedLineList mSource;
+
+    public PlainLineList(final PagedLineList source) {
+        mSource = source;
+    }
+
+    /**
+     * Returns the number of lines.
+     *
+     * @return int
+     */
+    @Override
+    public int size() {
+        return (int) ((mSource.byteLength() + LINE_LENGTH - 1) / LINE_LENGTH);
+    }
+
+    /**
+     * Returns the number of bytes.
+     *
+     * @return long
+     */
+    @Override
+    public long byteLength() {
+        return mSource.byteLength();
+    }
+
+    /**
+     * Reads bytes.
+     *
+     * @param position The position.
+     * @param dst      The output buffer.
+     * @param offset   The offset in the output buffer.
+     * @param length   The number of bytes to read.
+     * @return The number of bytes read (less than length at the end).
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public int readBytes(final long position, final byte[] dst, final int offset, final int length) throws IOException {
+        return mSource.readBytes(position, dst, offset, length);
+    }
+
+    /**
+     * Returns the index of the line containing a byte.
+     *
+     * @param position The byte position.
+     * @return int
+     */
+    @Override
+    public int lineOf(final long position) {
+        return (int) (position / LINE_LENGTH);
+    }
+
+    /**
+     * Returns a line.
+     *
+     * @param index The line index.
+     * @return LineData<String>
+     */
+    @Override
+    public LineData<String> get(final int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        final byte[] buffer = new byte[LINE_LENGTH];
+        final int reads;
+        try {
+            reads = mSource.readBytes((long) index * LINE_LENGTH, buffer, 0, LINE_LENGTH);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        final StringBuilder sb = new StringBuilder(reads);
+        for (int i = 0; i < reads; i++)
+            sb.append((char) buffer[i]);
+        return new LineData<>(sb.toString());
+    }
+}
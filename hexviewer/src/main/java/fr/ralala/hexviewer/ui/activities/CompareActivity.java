@@ -0,0 +1,215 @@
+package fr.ralala.hexviewer.ui.activities;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.ListView;
+
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.mcal.materialdesign.view.CenteredToolBar;
+
+import fr.ralala.hexviewer.ApplicationCtx;
+import fr.ralala.hexviewer.R;
+import fr.ralala.hexviewer.models.Differences;
+import fr.ralala.hexviewer.ui.adapters.CompareArrayAdapter;
+import fr.ralala.hexviewer.ui.adapters.SearchableListArrayAdapter;
+import fr.ralala.hexviewer.ui.tasks.TaskCompare;
+import fr.ralala.hexviewer.ui.utils.UIHelper;
+import fr.ralala.hexviewer.utils.FileHelper;
+import fr.ralala.hexviewer.utils.SysHelper;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Compare activity: shows two files side by side and navigates between the differences.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class CompareActivity extends AppCompatActivity implements TaskCompare.CompareResultListener {
+    private static final String ACTIVITY_EXTRA_LEFT = "ACTIVITY_EXTRA_LEFT";
+    private static final String ACTIVITY_EXTRA_RIGHT = "ACTIVITY_EXTRA_RIGHT";
+    private ListView mCompareView = null;
+    private TaskCompare.Result mResult = null;
+
+    /**
+     * Starts an activity.
+     *
+     * @param c     Android context.
+     * @param left  The first file.
+     * @param right The second file.
+     */
+    public static void startActivity(final Context c, final Uri left, final Uri right) {
+        Intent intent = new Intent(c, CompareActivity.class);
+        intent.putExtra(ACTIVITY_EXTRA_LEFT, left);
+        intent.putExtra(ACTIVITY_EXTRA_RIGHT, right);
+        c.startActivity(intent);
+    }
+
+    /**
+     * Set the base context for this ContextWrapper.
+     * All calls will then be delegated to the base context.
+     * Throws IllegalStateException if a base context has already been set.
+     *
+     * @param base The new base context for this wrapper.
+     */
+    @Override
+    protected void attachBaseContext(Context base) {
+        super.attachBaseContext(ApplicationCtx.getInstance().onAttach(base));
+    }
+
+    /**
+     * Called when the activity is created.
+     *
+     * @param savedInstanceState Bundle
+     */
+    @Override
+    protected void onCreate(final Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        setContentView(R.layout.activity_compare);
+        setupToolbar(getString(R.string.app_name));
+
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayShowHomeEnabled(true);
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+
+        mCompareView = findViewById(R.id.compareView);
+
+        Uri left = null;
+        Uri right = null;
+        if (getIntent().getExtras() != null) {
+            Bundle extras = getIntent().getExtras();
+            left = extras.getParcelable(ACTIVITY_EXTRA_LEFT);
+            right = extras.getParcelable(ACTIVITY_EXTRA_RIGHT);
+        }
+        if (left == null || right == null) {
+            UIHelper.toast(this, getString(R.string.error_filename));
+            finish();
+            return;
+        }
+        UIHelper.setTitle(this, getResources().getConfiguration().orientation, false,
+                FileHelper.getFileName(left) + " / " + FileHelper.getFileName(right), false);
+        new TaskCompare(this, this).execute(left, right);
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    private void setupToolbar(String title) {
+        CenteredToolBar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        getSupportActionBar().setTitle(title);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(false);
+        getSupportActionBar().setDisplayShowHomeEnabled(false);
+    }
+
+    /**
+     * Called when the activity is destroyed, the files are closed.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mResult != null) {
+            mResult.close();
+            mResult = null;
+        }
+    }
+
+    /**
+     * Called when the files are compared.
+     *
+     * @param result The result, null on error.
+     */
+    @Override
+    public void onCompareResult(final TaskCompare.Result result) {
+        if (result == null || isFinishing()) {
+            if (result != null)
+                result.close();
+            finish();
+            return;
+        }
+        mResult = result;
+        final ApplicationCtx app = ApplicationCtx.getInstance();
+        mCompareView.setAdapter(new CompareArrayAdapter(this, result.getLeft(), result.getRight(),
+                new SearchableListArrayAdapter.UserConfig() {
+                    @Override
+                    public float getFontSize() {
+                        return app.getHexFontSize();
+                    }
+
+                    @Override
+                    public int getRowHeight() {
+                        return app.getHexRowHeight();
+                    }
+
+                    @Override
+                    public boolean isRowHeightAuto() {
+                        return app.isHexRowHeightAuto();
+                    }
+                }));
+        final int count = result.getDifferences().size();
+        if (count == 0)
+            UIHelper.toast(this, getString(R.string.compare_identical));
+        else {
+            UIHelper.toast(this, String.format(getString(R.string.compare_differences), count));
+            goToDifference(result.getDifferences().getStart(0));
+        }
+    }
+
+    /**
+     * Called to create the option menu.
+     *
+     * @param menu The main menu.
+     * @return boolean
+     */
+    @Override
+    public boolean onCreateOptionsMenu(final Menu menu) {
+        getMenuInflater().inflate(R.menu.compare, menu);
+        return true;
+    }
+
+    /**
+     * Called when the options item is clicked.
+     *
+     * @param item The selected menu.
+     * @return boolean
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        final int id = item.getItemId();
+        if (id == android.R.id.home) {
+            finish();
+            return true;
+        } else if (id == R.id.action_previous_difference || id == R.id.action_next_difference) {
+            if (mResult != null) {
+                final Differences differences = mResult.getDifferences();
+                final long row = (long) mCompareView.getFirstVisiblePosition() * SysHelper.MAX_BY_ROW;
+                final int index = id == R.id.action_next_difference ?
+                        differences.next(row + SysHelper.MAX_BY_ROW) : differences.previous(row);
+                if (index == -1)
+                    UIHelper.toast(this, getString(R.string.compare_no_more_difference));
+                else
+                    goToDifference(differences.getStart(index));
+            }
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Scrolls to the row of a difference.
+     *
+     * @param position The position of the difference.
+     */
+    private void goToDifference(final long position) {
+        mCompareView.setSelection((int) (position / SysHelper.MAX_BY_ROW));
+    }
+}
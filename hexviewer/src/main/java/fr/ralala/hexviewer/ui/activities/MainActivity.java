@@ -42,6 +42,7 @@ import fr.ralala.hexviewer.models.Line;
 import fr.ralala.hexviewer.models.LineData;
 import fr.ralala.hexviewer.ui.adapters.HexTextArrayAdapter;
 import fr.ralala.hexviewer.ui.adapters.SearchableListArrayAdapter;
+import fr.ralala.hexviewer.ui.launchers.LauncherCompare;
 import fr.ralala.hexviewer.ui.launchers.LauncherLineUpdate;
 import fr.ralala.hexviewer.ui.launchers.LauncherOpen;
 import fr.ralala.hexviewer.ui.launchers.LauncherRecentlyOpen;
@@ -81,6 +82,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
     private TextView mSaveMenu = null;
     private TextView mSaveAsMenu = null;
     private TextView mCloseMenu = null;
+    private TextView mCompareMenu = null;
     private SearchView mSearchView = null;
     private TextView mRecentlyOpen = null;
     private String mSearchQuery = "";
@@ -89,6 +91,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
     private LauncherLineUpdate mLauncherLineUpdate;
     private LauncherSave mLauncherSave;
     private LauncherOpen mLauncherOpen;
+    private LauncherCompare mLauncherCompare;
     private LauncherRecentlyOpen mLauncherRecentlyOpen;
     private PopupWindow mPopup;
     private UnDoRedo mUnDoRedo;
@@ -172,6 +175,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
         }, 1);
 
         mLauncherOpen = new LauncherOpen(this, mainLayout);
+        mLauncherCompare = new LauncherCompare(this, mainLayout);
         mLauncherSave = new LauncherSave(this);
         mLauncherLineUpdate = new LauncherLineUpdate(this);
         mLauncherRecentlyOpen = new LauncherRecentlyOpen(this);
@@ -196,6 +200,15 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
         getSupportActionBar().setDisplayShowHomeEnabled(true);
     }
 
+    /**
+     * Called when the activity is destroyed, the undo/redo journal is deleted.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mUnDoRedo.clear();
+    }
+
     /**
      * Called when the activity is resumed.
      */
@@ -267,6 +280,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
             mSearchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
                 @Override
                 public boolean onQueryTextSubmit(String s) {
+                    jumpToNextResult();
                     return true;
                 }
 
@@ -301,7 +315,29 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
     public void doSearch(String queryStr) {
         mSearchQuery = queryStr;
         final SearchableListArrayAdapter<?> laa = ((mPayloadPlainSwipe.isVisible()) ? mPayloadPlainSwipe.getAdapterPlain() : mAdapterHex);
-        laa.getFilter().filter(queryStr);
+        laa.search(queryStr);
+    }
+
+    /**
+     * Scrolls to the next result of the search, goes back to the first one after the last one.
+     */
+    private void jumpToNextResult() {
+        final ListView lv = mPayloadPlainSwipe.isVisible() ? mPayloadPlainSwipe.getListView() : mPayloadHex;
+        final int count = lv.getCount();
+        if (count == 0)
+            return;
+        final int next = lv.getFirstVisiblePosition() + 1;
+        lv.setSelection(next < count ? next : 0);
+    }
+
+    /**
+     * Method called before the file is saved.
+     */
+    @Override
+    public void onSaveStart() {
+        /* both views read the file which is closed by the save */
+        mAdapterHex.cancelSearch();
+        mPayloadPlainSwipe.getAdapterPlain().cancelSearch();
     }
 
     /**
@@ -314,6 +350,8 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
     public void onSaveResult(Uri uri, boolean success) {
         if (success) {
             mUnDoRedo.refreshChange();
+            /* the lines are now read from the saved file */
+            mAdapterHex.refresh();
             if (mFileData.isOpenFromAppIntent()) {
                 mFileData = new FileData(uri, false);
                 if (mFileData.isOpenFromAppIntent())
@@ -342,6 +380,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
             setMenuEnabled(mSaveMenu, success);
         setMenuEnabled(mSaveAsMenu, success);
         setMenuEnabled(mCloseMenu, success);
+        setMenuEnabled(mCompareMenu, success);
         setMenuEnabled(mRecentlyOpen, !mApp.getRecentlyOpened().isEmpty());
         if (success) {
             mPleaseOpenFile.setVisibility(View.GONE);
@@ -455,6 +494,12 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
             mPayloadHex.setVisibility(checked ? View.GONE : View.VISIBLE);
             if (mSearchQuery != null && !mSearchQuery.isEmpty())
                 doSearch(mSearchQuery);
+        } else if (id == R.id.action_compare) {
+            if (FileData.isEmpty(mFileData)) {
+                UIHelper.toast(this, getString(R.string.open_a_file_before));
+                return;
+            }
+            mLauncherCompare.startActivity();
         } else if (id == R.id.action_close) {
             final Runnable r = this::closeFile;
             if (mUnDoRedo.isChanged()) {// a save operation is pending?
@@ -500,6 +545,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
                 mSaveAsMenu = popupView.findViewById(R.id.action_save_as);
                 mSaveMenu = popupView.findViewById(R.id.action_save);
                 mCloseMenu = popupView.findViewById(R.id.action_close);
+                mCompareMenu = popupView.findViewById(R.id.action_compare);
                 mRecentlyOpen = popupView.findViewById(R.id.action_recently_open);
                 ImageView actionRedo = popupView.findViewById(R.id.action_redo);
                 ImageView actionUndo = popupView.findViewById(R.id.action_undo);
@@ -517,6 +563,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
                 mSaveAsMenu.setOnClickListener(click);
                 mSaveMenu.setOnClickListener(click);
                 mCloseMenu.setOnClickListener(click);
+                mCompareMenu.setOnClickListener(click);
                 mRecentlyOpen.setOnClickListener(click);
                 actionRedo.setOnClickListener(click);
                 actionUndo.setOnClickListener(click);
@@ -529,6 +576,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
                     setMenuEnabled(mSaveMenu, false);
                     setMenuEnabled(mSaveAsMenu, true);
                     setMenuEnabled(mCloseMenu, true);
+                    setMenuEnabled(mCompareMenu, true);
                     setMenuEnabled(mRecentlyOpen, !mApp.getRecentlyOpened().isEmpty());
                     mPleaseOpenFile.setVisibility(View.GONE);
                     mPayloadHex.setVisibility(View.VISIBLE);
@@ -0,0 +1,172 @@
+package fr.ralala.hexviewer.ui.adapters;
+
+import android.content.Context;
+import android.text.SpannableString;
+import android.text.style.ForegroundColorSpan;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import fr.ralala.hexviewer.R;
+import fr.ralala.hexviewer.models.PagedFile;
+import fr.ralala.hexviewer.utils.SysHelper;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Adapter used with the compare list view: each row shows the same 16 bytes of the two files side by side,
+ * the rows are read and formatted when they are displayed and the differing bytes are highlighted.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class CompareArrayAdapter extends BaseAdapter {
+    private static final int ID = R.layout.listview_compare_row;
+    private final Context mContext;
+    private final PagedFile mLeft;
+    private final PagedFile mRight;
+    private final SearchableListArrayAdapter.UserConfig mUserConfig;
+    private final byte[] mLeftRow = new byte[SysHelper.MAX_BY_ROW];
+    private final byte[] mRightRow = new byte[SysHelper.MAX_BY_ROW];
+
+    public CompareArrayAdapter(final Context context, final PagedFile left, final PagedFile right,
+                               final SearchableListArrayAdapter.UserConfig userConfig) {
+        mContext = context;
+        mLeft = left;
+        mRight = right;
+        mUserConfig = userConfig;
+    }
+
+    /**
+     * How many items are in the data set represented by this Adapter.
+     *
+     * @return Count of items.
+     */
+    @Override
+    public int getCount() {
+        final long length = Math.max(mLeft.length(), mRight.length());
+        return (int) ((length + SysHelper.MAX_BY_ROW - 1) / SysHelper.MAX_BY_ROW);
+    }
+
+    /**
+     * Get the data item associated with the specified position in the data set.
+     *
+     * @param position Position of the item whose data we want within the adapter's data set.
+     * @return The position of the first byte of the row.
+     */
+    @Override
+    public Object getItem(final int position) {
+        return (long) position * SysHelper.MAX_BY_ROW;
+    }
+
+    /**
+     * Get the row id associated with the specified position in the list.
+     *
+     * @param position The position of the item within the adapter's data set whose row id we want.
+     * @return The id of the item at the specified position.
+     */
+    @Override
+    public long getItemId(final int position) {
+        return position;
+    }
+
+    /**
+     * Get a View that displays the data at the specified position in the data set.
+     *
+     * @param position    The position of the item within the adapter's data set of the item whose view we want.
+     * @param convertView This value may be null.
+     * @param parent      This value cannot be null.
+     * @return This value cannot be null.
+     */
+    @Override
+    public @NonNull
+    View getView(final int position, final View convertView, @NonNull final ViewGroup parent) {
+        View v = convertView;
+        if (v == null) {
+            final LayoutInflater inflater = (LayoutInflater) mContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+            if (inflater == null)
+                return new View(mContext);
+            v = inflater.inflate(ID, null);
+        }
+        final TextView offset = v.findViewById(R.id.labelOffset);
+        final TextView left = v.findViewById(R.id.labelLeft);
+        final TextView right = v.findViewById(R.id.labelRight);
+        final long start = (long) position * SysHelper.MAX_BY_ROW;
+        final int leftCount = read(mLeft, start, mLeftRow);
+        final int rightCount = read(mRight, start, mRightRow);
+        offset.setText(String.format(Locale.US, "%08X", start));
+        left.setText(format(mLeftRow, leftCount, mRightRow, rightCount));
+        right.setText(format(mRightRow, rightCount, mLeftRow, leftCount));
+        applyUserConfig(offset);
+        applyUserConfig(left);
+        applyUserConfig(right);
+        return v;
+    }
+
+    /**
+     * Reads a row.
+     *
+     * @param file  The file.
+     * @param start The position of the row.
+     * @param row   The output buffer.
+     * @return The number of bytes read.
+     */
+    private int read(final PagedFile file, final long start, final byte[] row) {
+        if (start >= file.length())
+            return 0;
+        try {
+            return file.read(start, row, 0, row.length);
+        } catch (IOException e) {
+            Log.e(getClass().getSimpleName(), "Exception: " + e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Formats a row, the bytes which differ from the other row are highlighted.
+     *
+     * @param row        The row.
+     * @param count      The number of bytes in the row.
+     * @param other      The other row.
+     * @param otherCount The number of bytes in the other row.
+     * @return CharSequence
+     */
+    private CharSequence format(final byte[] row, final int count, final byte[] other, final int otherCount) {
+        if (count == 0)
+            return "";
+        final SpannableString text = new SpannableString(SysHelper.formatLine(row, 0, count));
+        final int color = ContextCompat.getColor(mContext, R.color.colorTextUpdatedHex);
+        for (int i = 0; i < count; i++) {
+            if (i < otherCount && row[i] == other[i])
+                continue;
+            final int col = SysHelper.getHexColumn(i);
+            text.setSpan(new ForegroundColorSpan(color), col, col + 2, 0);
+        }
+        return text;
+    }
+
+    /**
+     * Applies the user config.
+     *
+     * @param tv TextView
+     */
+    private void applyUserConfig(final TextView tv) {
+        if (mUserConfig != null) {
+            tv.setTextSize(mUserConfig.getFontSize());
+            ViewGroup.LayoutParams lp = tv.getLayoutParams();
+            lp.height = mUserConfig.isRowHeightAuto() ? ViewGroup.LayoutParams.WRAP_CONTENT : mUserConfig.getRowHeight();
+            tv.setLayoutParams(lp);
+        }
+    }
+}
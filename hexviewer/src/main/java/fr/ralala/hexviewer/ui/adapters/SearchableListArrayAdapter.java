@@ -1,6 +1,9 @@
 package fr.ralala.hexviewer.ui.adapters;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,14 +14,24 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import fr.ralala.hexviewer.R;
+import fr.ralala.hexviewer.models.ByteLineSource;
 import fr.ralala.hexviewer.models.LineData;
 import fr.ralala.hexviewer.models.LineFilter;
+import fr.ralala.hexviewer.utils.BytePattern;
+import fr.ralala.hexviewer.utils.PatternSearch;
 
 /**
  * ******************************************************************************
@@ -32,16 +45,21 @@ import fr.ralala.hexviewer.models.LineFilter;
  */
 public abstract class SearchableListArrayAdapter<T> extends ArrayAdapter<LineData<T>> {
     private static final int ID = R.layout.listview_simple_row;
+    private static final ExecutorService SEARCH_EXECUTOR = Executors.newSingleThreadExecutor();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
     private final EntryFilter mEntryFilter;
-    private final List<LineData<T>> mEntryList;
     private final UserConfig mUserConfig;
+    private final IdentityList mIdentityList;
+    private List<LineData<T>> mEntryList;
     private List<LineFilter<T>> mFilteredList;
+    private AtomicBoolean mSearchCancel = null;
 
     public SearchableListArrayAdapter(final Context context, final List<LineData<T>> objects, UserConfig userConfig) {
         super(context, ID, objects);
         mEntryFilter = new EntryFilter();
         mEntryList = objects;
-        mFilteredList = new ArrayList<>();
+        mIdentityList = new IdentityList();
+        mFilteredList = mIdentityList;
         mUserConfig = userConfig;
     }
 
@@ -54,6 +72,21 @@ public abstract class SearchableListArrayAdapter<T> extends ArrayAdapter<LineDat
         return mEntryList;
     }
 
+    /**
+     * Replaces the list of items, the filter is reset.
+     * If the previous list is Closeable, it is closed.
+     *
+     * @param items The new items.
+     */
+    public void setItems(final List<LineData<T>> items) {
+        cancelSearch();
+        if (items != mEntryList)
+            closeItems();
+        mEntryList = items;
+        mFilteredList = mIdentityList;
+        notifyDataSetChanged();
+    }
+
     /**
      * Returns the list of filtered items.
      *
@@ -77,16 +110,79 @@ public abstract class SearchableListArrayAdapter<T> extends ArrayAdapter<LineDat
     }
 
     /**
-     * Remove an item.
+     * Removes ranges of items, the items of a range must be consecutive in the filtered list and in the list of items.
+     * The positions of the following items of the filtered list are shifted in a single pass.
+     *
+     * @param ranges For each range in ascending order: the position of its first item in the filtered list,
+     *               the position of its first item in the list of items and its number of items.
+     */
+    public void removeItems(final int[] ranges) {
+        if (ranges.length == 0)
+            return;
+        cancelSearch();
+        /* from the last range, so the positions of the previous ranges are not changed */
+        for (int r = ranges.length - 3; r >= 0; r -= 3)
+            mEntryList.subList(ranges[r + 1], ranges[r + 1] + ranges[r + 2]).clear();
+        if (mFilteredList instanceof LineIndexList)
+            ((LineIndexList) mFilteredList).remove(ranges);
+        else if (mFilteredList != mIdentityList) {
+            final List<LineFilter<T>> filtered = mFilteredList;
+            int w = ranges[0];
+            int removed = 0;
+            for (int r = 0; r < ranges.length; r += 3) {
+                removed += ranges[r + 2];
+                final int end = r + 3 < ranges.length ? ranges[r + 3] : filtered.size();
+                for (int i = ranges[r] + ranges[r + 2]; i < end; i++) {
+                    final LineFilter<T> fd = filtered.get(i);
+                    fd.setOrigin(fd.getOrigin() - removed);
+                    filtered.set(w++, fd);
+                }
+            }
+            filtered.subList(w, filtered.size()).clear();
+        }
+        super.notifyDataSetChanged();
+    }
+
+    /**
+     * Inserts ranges of items.
+     * The positions of the following items of the filtered list are shifted in a single pass.
      *
-     * @param position Position of the item.
+     * @param ranges For each range in ascending order: the position of its first item in the filtered list
+     *               and in the list of items after the insertion, and its number of items.
+     * @param items  The items of all the ranges.
      */
-    public void removeItem(final int position) {
-        if (position >= mFilteredList.size())
+    public void insertItems(final int[] ranges, final List<LineData<T>> items) {
+        if (ranges.length == 0)
             return;
-        LineFilter<T> fd = mFilteredList.get(position);
-        mEntryList.remove(fd.getOrigin());
-        mFilteredList.remove(position);
+        cancelSearch();
+        int k = 0;
+        for (int r = 0; r < ranges.length; r += 3) {
+            mEntryList.addAll(ranges[r + 1], items.subList(k, k + ranges[r + 2]));
+            k += ranges[r + 2];
+        }
+        if (mFilteredList instanceof LineIndexList)
+            ((LineIndexList) mFilteredList).insert(ranges);
+        else if (mFilteredList != mIdentityList) {
+            final List<LineFilter<T>> previous = mFilteredList;
+            final List<LineFilter<T>> filtered = new ArrayList<>(previous.size() + items.size());
+            int i = 0;
+            int added = 0;
+            k = 0;
+            for (int r = 0; r <= ranges.length; r += 3) {
+                final int end = r < ranges.length ? ranges[r] - added : previous.size();
+                for (; i < end; i++) {
+                    final LineFilter<T> fd = previous.get(i);
+                    fd.setOrigin(fd.getOrigin() + added);
+                    filtered.add(fd);
+                }
+                if (r == ranges.length)
+                    break;
+                for (int j = 0; j < ranges[r + 2]; j++)
+                    filtered.add(new LineFilter<>(items.get(k++), ranges[r + 1] + j));
+                added += ranges[r + 2];
+            }
+            mFilteredList = filtered;
+        }
         super.notifyDataSetChanged();
     }
 
@@ -131,11 +227,26 @@ public abstract class SearchableListArrayAdapter<T> extends ArrayAdapter<LineDat
      */
     @Override
     public void clear() {
-        mFilteredList.clear();
-        mEntryList.clear();
+        cancelSearch();
+        closeItems();
+        mEntryList = new ArrayList<>();
+        mFilteredList = mIdentityList;
         notifyDataSetChanged();
     }
 
+    /**
+     * Closes the list of items if it is Closeable.
+     */
+    private void closeItems() {
+        if (mEntryList instanceof Closeable) {
+            try {
+                ((Closeable) mEntryList).close();
+            } catch (IOException e) {
+                Log.e(getClass().getSimpleName(), "Exception: " + e.getMessage(), e);
+            }
+        }
+    }
+
     /**
      * Refreshes this adapter.
      */
@@ -150,11 +261,9 @@ public abstract class SearchableListArrayAdapter<T> extends ArrayAdapter<LineDat
      */
     public void addAll(@NonNull Collection<? extends LineData<T>> collection) {
         /* Here the list is already empty */
-        int i = 0;
-        for (LineData<T> t : collection) {
-            mEntryList.add(t);
-            mFilteredList.add(new LineFilter<>(t, i++));
-        }
+        cancelSearch();
+        mEntryList.addAll(collection);
+        mFilteredList = mIdentityList;
         notifyDataSetChanged();
     }
 
@@ -264,9 +373,54 @@ public abstract class SearchableListArrayAdapter<T> extends ArrayAdapter<LineDat
      * @param constraint The constraint.
      */
     public void manualFilterUpdate(CharSequence constraint) {
-        final ArrayList<LineFilter<T>> tempList = new ArrayList<>();
-        mEntryFilter.apply(constraint, tempList);
-        mFilteredList = tempList;
+        if (mEntryList instanceof ByteLineSource)
+            search(constraint);
+        else
+            mFilteredList = mEntryFilter.apply(constraint);
+    }
+
+    /**
+     * Searches the lines matching a query.
+     * When the lines are backed by bytes, the bytes are searched in background (see BytePattern for the
+     * syntax of the query) and the lines containing an occurrence are added to the filtered list as they are found;
+     * otherwise the filter is used.
+     *
+     * @param constraint The query.
+     */
+    public void search(CharSequence constraint) {
+        cancelSearch();
+        if (!(mEntryList instanceof ByteLineSource)) {
+            mEntryFilter.filter(constraint);
+            return;
+        }
+        final List<BytePattern> patterns = BytePattern.parse(constraint == null ? null : constraint.toString());
+        if (patterns.isEmpty()) {
+            mFilteredList = mIdentityList;
+            notifyDataSetChanged();
+            return;
+        }
+        final SearchListener listener = new SearchListener();
+        mSearchCancel = listener.mCancel;
+        mFilteredList = listener.mResults;
+        notifyDataSetChanged();
+        SEARCH_EXECUTOR.execute(() -> {
+            try {
+                PatternSearch.search(listener.mSource, patterns, listener.mCancel, listener);
+            } catch (IOException e) {
+                if (!listener.mCancel.get())
+                    Log.e(getClass().getSimpleName(), "Exception: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Stops the current search, the lines already found are kept.
+     */
+    public void cancelSearch() {
+        if (mSearchCancel != null) {
+            mSearchCancel.set(true);
+            mSearchCancel = null;
+        }
     }
 
     public interface UserConfig {
@@ -277,33 +431,168 @@ public abstract class SearchableListArrayAdapter<T> extends ArrayAdapter<LineDat
         boolean isRowHeightAuto();
     }
 
+    /**
+     * Unfiltered view of the items, the LineFilter objects are created on demand.
+     */
+    private class IdentityList extends AbstractList<LineFilter<T>> {
+
+        @Override
+        public LineFilter<T> get(int index) {
+            return new LineFilter<>(mEntryList.get(index), index);
+        }
+
+        @Override
+        public int size() {
+            return mEntryList.size();
+        }
+    }
+
+    /**
+     * Filtered view of the items which only stores the positions of the lines in the list of items,
+     * the LineFilter objects are created on demand.
+     */
+    private class LineIndexList extends AbstractList<LineFilter<T>> {
+        private int[] mOrigins = new int[64];
+        private int mSize = 0;
+
+        @Override
+        public LineFilter<T> get(int index) {
+            if (index >= mSize)
+                throw new IndexOutOfBoundsException("index: " + index + ", size: " + mSize);
+            return new LineFilter<>(mEntryList.get(mOrigins[index]), mOrigins[index]);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        /**
+         * Appends the positions of lines.
+         *
+         * @param origins The positions in the list of items.
+         */
+        void append(final int[] origins) {
+            ensureCapacity(mSize + origins.length);
+            System.arraycopy(origins, 0, mOrigins, mSize, origins.length);
+            mSize += origins.length;
+            modCount++;
+        }
+
+        /**
+         * Removes ranges of positions, the following positions are shifted (see removeItems).
+         *
+         * @param ranges The ranges: position in this list, position in the list of items, number of positions.
+         */
+        void remove(final int[] ranges) {
+            int w = ranges[0];
+            int removed = 0;
+            for (int r = 0; r < ranges.length; r += 3) {
+                removed += ranges[r + 2];
+                final int end = r + 3 < ranges.length ? ranges[r + 3] : mSize;
+                for (int i = ranges[r] + ranges[r + 2]; i < end; i++)
+                    mOrigins[w++] = mOrigins[i] - removed;
+            }
+            mSize = w;
+            modCount++;
+        }
+
+        /**
+         * Inserts ranges of consecutive positions, the following positions are shifted (see insertItems).
+         *
+         * @param ranges The ranges: position in this list, position in the list of items, number of positions.
+         */
+        void insert(final int[] ranges) {
+            int total = 0;
+            for (int r = 0; r < ranges.length; r += 3)
+                total += ranges[r + 2];
+            final int[] origins = new int[Math.max(mSize + total, mOrigins.length)];
+            int i = 0;
+            int w = 0;
+            for (int r = 0; r <= ranges.length; r += 3) {
+                final int end = r < ranges.length ? ranges[r] - w + i : mSize;
+                final int added = w - i;
+                for (; i < end; i++)
+                    origins[w++] = mOrigins[i] + added;
+                if (r == ranges.length)
+                    break;
+                for (int j = 0; j < ranges[r + 2]; j++)
+                    origins[w++] = ranges[r + 1] + j;
+            }
+            mOrigins = origins;
+            mSize = w;
+            modCount++;
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (capacity > mOrigins.length)
+                mOrigins = Arrays.copyOf(mOrigins, Math.max(capacity, mOrigins.length * 2));
+        }
+    }
+
+    /**
+     * Collects the lines of the occurrences and publishes them to the UI thread after each chunk.
+     */
+    private class SearchListener implements PatternSearch.Listener {
+        private final AtomicBoolean mCancel = new AtomicBoolean(false);
+        private final LineIndexList mResults = new LineIndexList();
+        private final ByteLineSource mSource = (ByteLineSource) mEntryList;
+        private int[] mLines = new int[64];
+        private int mCount = 0;
+        private int mLastLine = -1;
+
+        @Override
+        public void onMatch(final long position, final int length) {
+            final int first = Math.max(mLastLine + 1, mSource.lineOf(position));
+            final int last = mSource.lineOf(position + length - 1);
+            for (int line = first; line <= last; line++) {
+                if (mCount == mLines.length)
+                    mLines = Arrays.copyOf(mLines, mCount * 2);
+                mLines[mCount++] = line;
+            }
+            mLastLine = Math.max(mLastLine, last);
+        }
+
+        @Override
+        public void onChunk(final long end) {
+            if (mCount == 0)
+                return;
+            final int[] lines = Arrays.copyOf(mLines, mCount);
+            mCount = 0;
+            mHandler.post(() -> {
+                if (mCancel.get())
+                    return;
+                mResults.append(lines);
+                notifyDataSetChanged();
+            });
+        }
+    }
+
     /**
      * Custom filter
      */
     private class EntryFilter extends Filter {
 
-        protected void apply(CharSequence constraint, final ArrayList<LineFilter<T>> tempList) {
-            boolean clear = (constraint == null || constraint.length() == 0);
-            String query = "";
+        protected List<LineFilter<T>> apply(CharSequence constraint) {
+            if (constraint == null || constraint.length() == 0)
+                return mIdentityList;
+            final ArrayList<LineFilter<T>> tempList = new ArrayList<>();
             final Locale loc = Locale.getDefault();
-            if (!clear)
-                query = constraint.toString().toLowerCase(loc);
+            final String query = constraint.toString().toLowerCase(loc);
             for (int i = 0; i < mEntryList.size(); i++) {
                 LineData<T> s = mEntryList.get(i);
-                if (clear)
-                    tempList.add(new LineFilter<>(s, i));
-                else if (s.toString().toLowerCase(loc).contains(query))
+                if (s.toString().toLowerCase(loc).contains(query))
                     tempList.add(new LineFilter<>(s, i));
                 else
                     extraFilter(s, i, query, tempList, loc);
             }
+            return tempList;
         }
 
         @Override
         protected FilterResults performFiltering(CharSequence constraint) {
             final FilterResults filterResults = new FilterResults();
-            final ArrayList<LineFilter<T>> tempList = new ArrayList<>();
-            apply(constraint, tempList);
+            final List<LineFilter<T>> tempList = apply(constraint);
             filterResults.count = tempList.size();
             filterResults.values = tempList;
             return filterResults;
@@ -318,7 +607,7 @@ public abstract class SearchableListArrayAdapter<T> extends ArrayAdapter<LineDat
         @SuppressWarnings("unchecked")
         @Override
         protected void publishResults(CharSequence constraint, FilterResults results) {
-            mFilteredList = (ArrayList<LineFilter<T>>) results.values;
+            mFilteredList = (List<LineFilter<T>>) results.values;
             notifyDataSetChanged();
         }
     }
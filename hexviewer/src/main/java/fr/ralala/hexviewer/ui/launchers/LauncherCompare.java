@@ -0,0 +1,68 @@
+package fr.ralala.hexviewer.ui.launchers;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.util.Log;
+import android.widget.RelativeLayout;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+
+import fr.ralala.hexviewer.R;
+import fr.ralala.hexviewer.models.FileData;
+import fr.ralala.hexviewer.ui.activities.CompareActivity;
+import fr.ralala.hexviewer.ui.activities.MainActivity;
+import fr.ralala.hexviewer.ui.utils.UIHelper;
+import fr.ralala.hexviewer.utils.FileHelper;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Launcher used with the compare part: selects the file compared to the opened file.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class LauncherCompare {
+    private final MainActivity mActivity;
+    private final RelativeLayout mMainLayout;
+    private ActivityResultLauncher<Intent> activityResultLauncherCompare;
+
+    public LauncherCompare(MainActivity activity, RelativeLayout mainLayout) {
+        mActivity = activity;
+        mMainLayout = mainLayout;
+        register();
+    }
+
+    /**
+     * Starts the activity.
+     */
+    public void startActivity() {
+        UIHelper.openFilePickerInFileSelectionMode(mActivity, activityResultLauncherCompare, mMainLayout);
+    }
+
+    /**
+     * Registers result launcher for the activity for selecting the compared file.
+     */
+    private void register() {
+        activityResultLauncherCompare = mActivity.registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == Activity.RESULT_OK) {
+                        Intent data = result.getData();
+                        if (data != null) {
+                            final FileData fd = mActivity.getFileData();
+                            if (FileData.isEmpty(fd))
+                                UIHelper.toast(mActivity, mActivity.getString(R.string.open_a_file_before));
+                            else if (FileHelper.takeUriPermissions(mActivity, data.getData(), false))
+                                CompareActivity.startActivity(mActivity, fd.getUri(), data.getData());
+                            else
+                                UIHelper.toast(mActivity, String.format(mActivity.getString(R.string.error_file_permission), FileHelper.getFileName(data.getData())));
+                        } else
+                            Log.e(getClass().getSimpleName(), "Null data!!!");
+                    }
+                });
+    }
+}
@@ -9,16 +9,13 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import fr.ralala.hexviewer.models.Line;
 import fr.ralala.hexviewer.models.LineData;
-import fr.ralala.hexviewer.models.LineFilter;
 import fr.ralala.hexviewer.ui.activities.LineUpdateActivity;
 import fr.ralala.hexviewer.ui.activities.MainActivity;
-import fr.ralala.hexviewer.ui.adapters.HexTextArrayAdapter;
 import fr.ralala.hexviewer.utils.SysHelper;
 
 /**
@@ -74,10 +71,8 @@ public class LauncherLineUpdate {
                             }
                             List<LineData<Line>> li = SysHelper.formatBuffer(buf, null);
                             if (li.isEmpty()) {
-                                HexTextArrayAdapter adapter = mActivity.getAdapterHex();
-                                Map<Integer, LineFilter<Line>> map = new HashMap<>();
-                                map.put(position, adapter.getFilteredList().get(position));
-                                mActivity.getUnDoRedo().insertInUnDoRedoForDelete(adapter, map).execute();
+                                mActivity.getUnDoRedo().insertInUnDoRedoForDelete(mActivity.getAdapterHex(),
+                                        Collections.singletonList(position)).execute();
                             } else {
                                 mActivity.getUnDoRedo().insertInUnDoRedoForUpdate(mActivity, position, li).execute();
                             }
@@ -42,7 +42,8 @@ public abstract class ProgressTask<P, T> extends AsyncTask<P, Long, T> {
         mTextRef.get().setText(loading ? R.string.loading : R.string.saving);
         v.findViewById(R.id.cancel).setOnClickListener((view) -> {
             mCancel.set(true);
-            cancel(true);
+            /* no interruption: an interrupted thread closes the file channels it reads */
+            cancel(false);
             mDialog.dismiss();
         });
         mDialog.setView(v);
@@ -0,0 +1,186 @@
+package fr.ralala.hexviewer.ui.tasks;
+
+import android.app.Activity;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import fr.ralala.hexviewer.R;
+import fr.ralala.hexviewer.models.Differences;
+import fr.ralala.hexviewer.models.PagedFile;
+import fr.ralala.hexviewer.ui.utils.UIHelper;
+import fr.ralala.hexviewer.utils.FileCompare;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Task used to open and compare two files.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class TaskCompare extends ProgressTask<Uri, TaskCompare.Result> {
+    private static final String TAG = TaskCompare.class.getSimpleName();
+    private final CompareResultListener mListener;
+    private Result mResult = null;
+
+    public TaskCompare(final Activity activity, final CompareResultListener listener) {
+        super(activity, true);
+        mListener = listener;
+    }
+
+    /**
+     * Called after the execution of the task.
+     *
+     * @param result The result.
+     */
+    @Override
+    protected void onPostExecute(final Result result) {
+        Activity a = mActivityRef.get();
+        if (mCancel.get())
+            UIHelper.toast(a, a.getString(R.string.operation_canceled));
+        else if (result.exception != null)
+            UIHelper.toast(a, a.getString(R.string.exception) + ": " + result.exception);
+        final boolean success = result.exception == null && !mCancel.get();
+        if (!success)
+            result.close();
+        if (mListener != null)
+            mListener.onCompareResult(success ? result : null);
+        super.onPostExecute(result);
+    }
+
+    /**
+     * Called when the task is cancelled.
+     */
+    @Override
+    protected void onCancelled() {
+        super.onCancelled();
+        if (mResult != null)
+            mResult.close();
+        if (mListener != null)
+            mListener.onCompareResult(null);
+    }
+
+    /**
+     * Called when the task is cancelled, with the result of the process.
+     *
+     * @param result The result.
+     */
+    @Override
+    protected void onCancelled(final Result result) {
+        /* the opened files are closed by onCancelled() */
+        mResult = result;
+        super.onCancelled(result);
+    }
+
+    /**
+     * Called after the execution of the process.
+     *
+     * @param values The two files.
+     */
+    @Override
+    protected Result doInBackground(Uri... values) {
+        final Activity activity = mActivityRef.get();
+        final Result result = new Result();
+        try {
+            publishProgress(0L);
+            result.left = open(activity, values[0]);
+            result.right = open(activity, values[1]);
+            mTotalSize = Math.min(result.left.length(), result.right.length());
+            result.differences = FileCompare.compare(result.left, result.right, (bytes) -> {
+                publishProgress(bytes);
+                return !mCancel.get();
+            });
+        } catch (final Exception e) {
+            result.exception = e.getMessage();
+        }
+        return result;
+    }
+
+    /**
+     * Opens a file.
+     *
+     * @param activity The activity.
+     * @param uri      The file.
+     * @return PagedFile
+     * @throws IOException If an I/O error occurs.
+     */
+    private PagedFile open(final Activity activity, final Uri uri) throws IOException {
+        final ParcelFileDescriptor pfd = activity.getContentResolver().openFileDescriptor(uri, "r");
+        if (pfd == null)
+            throw new IOException("Unable to open the file");
+        final FileInputStream fis = new FileInputStream(pfd.getFileDescriptor());
+        try {
+            return new PagedFile(fis.getChannel(), pfd);
+        } catch (final IOException e) {
+            fis.close();
+            pfd.close();
+            throw e;
+        }
+    }
+
+    public interface CompareResultListener {
+        /**
+         * Called when the files are compared.
+         *
+         * @param result The result, null on error (the files are closed).
+         */
+        void onCompareResult(Result result);
+    }
+
+    public static class Result {
+        private PagedFile left = null;
+        private PagedFile right = null;
+        private Differences differences = null;
+        private String exception = null;
+
+        /**
+         * Returns the first file.
+         *
+         * @return PagedFile
+         */
+        public PagedFile getLeft() {
+            return left;
+        }
+
+        /**
+         * Returns the second file.
+         *
+         * @return PagedFile
+         */
+        public PagedFile getRight() {
+            return right;
+        }
+
+        /**
+         * Returns the differences.
+         *
+         * @return Differences
+         */
+        public Differences getDifferences() {
+            return differences;
+        }
+
+        /**
+         * Closes the files.
+         */
+        public void close() {
+            for (PagedFile file : new PagedFile[]{left, right}) {
+                if (file != null) {
+                    try {
+                        file.close();
+                    } catch (final IOException e) {
+                        Log.e(TAG, "Exception: " + e.getMessage(), e);
+                    }
+                }
+            }
+            left = null;
+            right = null;
+        }
+    }
+}
@@ -1,30 +1,26 @@
 package fr.ralala.hexviewer.ui.tasks;
 
 import android.app.Activity;
-import android.content.ContentResolver;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import fr.ralala.hexviewer.ApplicationCtx;
 import fr.ralala.hexviewer.R;
-import fr.ralala.hexviewer.models.Line;
-import fr.ralala.hexviewer.models.LineData;
+import fr.ralala.hexviewer.models.PagedFile;
+import fr.ralala.hexviewer.models.PagedLineList;
+import fr.ralala.hexviewer.models.PlainLineList;
 import fr.ralala.hexviewer.ui.adapters.HexTextArrayAdapter;
 import fr.ralala.hexviewer.ui.adapters.PlainTextListArrayAdapter;
 import fr.ralala.hexviewer.ui.utils.UIHelper;
-import fr.ralala.hexviewer.utils.FileHelper;
-import fr.ralala.hexviewer.utils.SysHelper;
 
 /**
  * ******************************************************************************
  * <p><b>Project HexViewer</b><br/>
- * Task used to open a file.
+ * Task used to open a file; the file is only opened here, the lines are read and formatted when they are displayed.
  * </p>
  *
  * @author Keidan
@@ -33,12 +29,11 @@ import fr.ralala.hexviewer.utils.SysHelper;
  */
 public class TaskOpen extends ProgressTask<Uri, TaskOpen.Result> {
     private static final String TAG = TaskOpen.class.getSimpleName();
-    private static final int MAX_LENGTH = SysHelper.MAX_BY_ROW * 10000;
     private final HexTextArrayAdapter mAdapter;
     private final PlainTextListArrayAdapter mAdapterPlain;
     private final OpenResultListener mListener;
     private final boolean mAddRecent;
-    private InputStream mInputStream = null;
+    private PagedLineList mList = null;
 
     public TaskOpen(final Activity activity,
                     final HexTextArrayAdapter adapter,
@@ -75,9 +70,9 @@ public class TaskOpen extends ProgressTask<Uri, TaskOpen.Result> {
             UIHelper.toast(a, a.getString(R.string.exception) + ": " + result.exception);
         else {
             if (result.listHex != null)
-                mAdapter.addAll(result.listHex);
+                mAdapter.setItems(result.listHex);
             if (result.listPlain != null)
-                mAdapterPlain.addAll(result.listPlain);
+                mAdapterPlain.setItems(result.listPlain);
         }
         if (mListener != null)
             mListener.onOpenResult(result.exception == null && !mCancel.get());
@@ -85,16 +80,16 @@ public class TaskOpen extends ProgressTask<Uri, TaskOpen.Result> {
     }
 
     /**
-     * Closes the stream.
+     * Closes the file.
      */
     private void close() {
-        if (mInputStream != null) {
+        if (mList != null) {
             try {
-                mInputStream.close();
+                mList.close();
             } catch (final IOException e) {
                 Log.e(TAG, "Exception: " + e.getMessage(), e);
             }
-            mInputStream = null;
+            mList = null;
         }
     }
 
@@ -109,6 +104,19 @@ public class TaskOpen extends ProgressTask<Uri, TaskOpen.Result> {
             mListener.onOpenResult(false);
     }
 
+    /**
+     * Called when the task is cancelled, with the result of the process.
+     *
+     * @param result The result.
+     */
+    @Override
+    protected void onCancelled(final Result result) {
+        /* the opened file is closed by onCancelled() */
+        if (result != null && result.listHex != null)
+            mList = result.listHex;
+        super.onCancelled(result);
+    }
+
     /**
      * Called after the execution of the process.
      *
@@ -118,35 +126,26 @@ public class TaskOpen extends ProgressTask<Uri, TaskOpen.Result> {
     protected Result doInBackground(Uri... values) {
         final Activity activity = mActivityRef.get();
         final Result result = new Result();
-        final List<LineData<Line>> list = new ArrayList<>();
-        final List<LineData<String>> plain = new ArrayList<>();
         try {
             final ApplicationCtx app = ApplicationCtx.getInstance();
             final Uri uri = values[0];
-            /* Size + stream */
-            final ContentResolver cr = activity.getContentResolver();
-            mTotalSize = FileHelper.getFileSize(cr, uri);
             publishProgress(0L);
-            mInputStream = cr.openInputStream(uri);
-            if (mInputStream != null) {
-                /* prepare buffer */
-                final byte[] data = new byte[MAX_LENGTH];
-                int reads;
-                /* read data */
-                while (!mCancel.get() && (reads = mInputStream.read(data)) != -1) {
-                    addPlain(plain, data, reads, mCancel);
-                    try {
-                        list.addAll(SysHelper.formatBuffer(data, reads, mCancel));
-                    } catch (IllegalArgumentException iae) {
-                        result.exception = iae.getMessage();
-                        break;
-                    }
-                    publishProgress((long) reads);
+            final ParcelFileDescriptor pfd = activity.getContentResolver().openFileDescriptor(uri, "r");
+            if (pfd != null) {
+                final FileInputStream fis = new FileInputStream(pfd.getFileDescriptor());
+                try {
+                    mList = new PagedLineList(new PagedFile(fis.getChannel(), pfd));
+                } catch (final IOException e) {
+                    fis.close();
+                    pfd.close();
+                    throw e;
                 }
+                mTotalSize = mList.byteLength();
                 /* prepare result */
-                if (result.exception == null) {
-                    result.listPlain = plain;
-                    result.listHex = list;
+                if (!mCancel.get()) {
+                    result.listHex = mList;
+                    result.listPlain = new PlainLineList(mList);
+                    mList = null;
                     if (mAddRecent)
                         app.addRecentlyOpened(uri.toString());
                 }
@@ -159,40 +158,13 @@ public class TaskOpen extends ProgressTask<Uri, TaskOpen.Result> {
         return result;
     }
 
-    /**
-     * Sets the plain content.
-     *
-     * @param plain   The list.
-     * @param payload The new payload.
-     * @param length  The array length.
-     * @param cancel  Used to cancel this method.
-     */
-    public void addPlain(final List<LineData<String>> plain, final byte[] payload, final int length, final AtomicBoolean cancel) {
-        final StringBuilder sb = new StringBuilder();
-        int nbPerLine = 0;
-        for (int i = 0; i < length && (cancel == null || !cancel.get()); i++) {
-            if (nbPerLine != 0 && (nbPerLine % SysHelper.MAX_BY_LINE) == 0) {
-                sb.append((char) payload[i]);
-                plain.add(new LineData<>(sb.toString()));
-                nbPerLine = 0;
-                sb.setLength(0);
-            } else {
-                sb.append((char) payload[i]);
-                nbPerLine++;
-            }
-        }
-        if ((cancel == null || !cancel.get()) && nbPerLine != 0) {
-            plain.add(new LineData<>(sb.toString()));
-        }
-    }
-
     public interface OpenResultListener {
         void onOpenResult(boolean success);
     }
 
     public static class Result {
-        private List<LineData<Line>> listHex = null;
-        private List<LineData<String>> listPlain = null;
+        private PagedLineList listHex = null;
+        private PlainLineList listPlain = null;
         private String exception = null;
     }
 }
@@ -4,26 +4,36 @@ package fr.ralala.hexviewer.ui.tasks;
 import android.app.Activity;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
 import android.util.Log;
 
 import androidx.documentfile.provider.DocumentFile;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 import fr.ralala.hexviewer.R;
 import fr.ralala.hexviewer.models.Line;
 import fr.ralala.hexviewer.models.LineData;
+import fr.ralala.hexviewer.models.PagedFile;
+import fr.ralala.hexviewer.models.PagedLineList;
 import fr.ralala.hexviewer.ui.utils.UIHelper;
+import fr.ralala.hexviewer.utils.FileHelper;
 import fr.ralala.hexviewer.utils.SysHelper;
 
 /**
  * ******************************************************************************
  * <p><b>Project HexViewer</b><br/>
  * Task used to save a file.
+ * The lines can be read from the destination file, so they are written to a temporary file which then
+ * replaces the destination (renamed when possible, copied otherwise).
  * </p>
  *
  * @author Keidan
@@ -41,6 +51,16 @@ public class TaskSave extends ProgressTask<TaskSave.Request, TaskSave.Result> {
         mListener = listener;
     }
 
+    /**
+     * Called before the execution of the task.
+     */
+    @Override
+    protected void onPreExecute() {
+        super.onPreExecute();
+        if (mListener != null)
+            mListener.onSaveStart();
+    }
+
     /**
      * Called after the execution of the task.
      *
@@ -51,7 +71,8 @@ public class TaskSave extends ProgressTask<TaskSave.Request, TaskSave.Result> {
         super.onPostExecute(result);
         final Activity a = mActivityRef.get();
         if (mCancel.get()) {
-            if (result.uri != null) {
+            /* the destination is not modified when the task is canceled, only a new empty file is removed */
+            if (result.uri != null && FileHelper.getFileSize(a.getContentResolver(), result.uri) == 0) {
                 final DocumentFile dfile = DocumentFile.fromSingleUri(a, result.uri);
                 if (dfile != null && dfile.exists() && !dfile.delete()) {
                     Log.e(this.getClass().getSimpleName(), "File delete error");
@@ -113,39 +134,220 @@ public class TaskSave extends ProgressTask<TaskSave.Request, TaskSave.Result> {
         final Request request = requests[0];
         result.uri = request.mUri;
         publishProgress(0L);
+        File temp = null;
         try {
-            mParcelFileDescriptor = activity.getContentResolver().openFileDescriptor(result.uri, "wt");
-            List<Byte> bytes = new ArrayList<>();
-            for (LineData<Line> entry : request.mEntries)
-                bytes.addAll(entry.getValue().getRaw());
-            final byte[] data = SysHelper.toByteArray(bytes, mCancel);
-            if (!mCancel.get()) {
-                mOutputStream = new FileOutputStream(mParcelFileDescriptor.getFileDescriptor());
-                mTotalSize = data.length;
-                final long count = mTotalSize / MAX_LENGTH;
-                final long remain = mTotalSize - (count * MAX_LENGTH);
-
-                long offset = 0;
-                for (long i = 0; i < count && !mCancel.get(); i++) {
-                    mOutputStream.write(data, (int) offset, MAX_LENGTH);
-                    publishProgress((long) MAX_LENGTH);
-                    offset += MAX_LENGTH;
-                }
-                if (!mCancel.get() && remain > 0) {
-                    mOutputStream.write(data, (int) offset, (int) remain);
-                    publishProgress(remain);
+            final File destination = getLocalFile(result.uri);
+            /* a temporary file next to the destination can be renamed */
+            temp = File.createTempFile("save", ".tmp", destination != null && destination.getParentFile() != null
+                    && destination.getParentFile().canWrite() ? destination.getParentFile() : activity.getCacheDir());
+            mTotalSize = getLength(request.mEntries);
+            mOutputStream = new FileOutputStream(temp);
+            final FileChannel out = ((FileOutputStream) mOutputStream).getChannel();
+            final boolean completed;
+            if (request.mEntries instanceof PagedLineList)
+                completed = ((PagedLineList) request.mEntries).transferTo(out, (bytes) -> {
+                    publishProgress(bytes);
+                    return !mCancel.get();
+                });
+            else
+                completed = write(request.mEntries, out);
+            mOutputStream.close();
+            mOutputStream = null;
+            if (completed && !mCancel.get()) {
+                /* the temporary file is created with the mode 0600, the rename is only used if the mode of the destination can be kept */
+                if (destination == null || !copyMode(destination, temp) || !temp.renameTo(destination)) {
+                    /* the destination may be the (mapped) file read by the lines, so they are read from the temporary file during the copy */
+                    if (request.mEntries instanceof PagedLineList)
+                        reload((PagedLineList) request.mEntries, temp);
+                    copy(activity, temp, result.uri);
                 }
-                mOutputStream.flush();
+                if (request.mEntries instanceof PagedLineList)
+                    reload(activity, (PagedLineList) request.mEntries, result.uri);
             }
         } catch (final Exception e) {
             result.exception = e.getMessage();
         } finally {
             close();
+            if (temp != null && temp.exists() && !temp.delete())
+                Log.e(this.getClass().getSimpleName(), "File delete error");
         }
         return result;
     }
 
+    /**
+     * Writes the lines to a channel.
+     *
+     * @param entries The lines.
+     * @param out     The channel.
+     * @return false if the task has been canceled.
+     * @throws IOException If an I/O error occurs.
+     */
+    private boolean write(final List<LineData<Line>> entries, final FileChannel out) throws IOException {
+        final ByteBuffer data = ByteBuffer.allocate(MAX_LENGTH);
+        for (LineData<Line> entry : entries) {
+            if (mCancel.get())
+                return false;
+            final ByteBuffer raw = entry.getValue().getRaw();
+            if (raw.remaining() > data.remaining())
+                publishProgress((long) flush(data, out));
+            data.put(raw);
+        }
+        publishProgress((long) flush(data, out));
+        return true;
+    }
+
+    /**
+     * Writes a buffer to a channel.
+     *
+     * @param data The buffer (cleared after the write).
+     * @param out  The channel.
+     * @return The number of bytes written.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int flush(final ByteBuffer data, final FileChannel out) throws IOException {
+        data.flip();
+        final int length = data.remaining();
+        while (data.hasRemaining())
+            out.write(data);
+        data.clear();
+        return length;
+    }
+
+    /**
+     * Returns the local file designated by an Uri.
+     *
+     * @param uri The Uri.
+     * @return Null if the Uri does not designate a local file.
+     */
+    private File getLocalFile(final Uri uri) {
+        if (!"file".equals(uri.getScheme()) || uri.getPath() == null)
+            return null;
+        return new File(uri.getPath());
+    }
+
+    /**
+     * Copies the permissions of a file to another file.
+     *
+     * @param from The source file.
+     * @param to   The destination file.
+     * @return false if the permissions can't be copied.
+     */
+    private boolean copyMode(final File from, final File to) {
+        try {
+            Os.chmod(to.getPath(), Os.stat(from.getPath()).st_mode & 07777);
+            return true;
+        } catch (final ErrnoException e) {
+            Log.e(this.getClass().getSimpleName(), "Exception: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of bytes represented by the lines.
+     *
+     * @param entries The lines.
+     * @return long
+     */
+    private long getLength(final List<LineData<Line>> entries) {
+        if (entries instanceof PagedLineList)
+            return ((PagedLineList) entries).byteLength();
+        long length = 0;
+        for (LineData<Line> entry : entries)
+            length += entry.getValue().getLength();
+        return length;
+    }
+
+    /**
+     * Copies the temporary file to the destination.
+     *
+     * @param activity The activity.
+     * @param temp     The temporary file.
+     * @param uri      The destination.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void copy(final Activity activity, final File temp, final Uri uri) throws IOException {
+        mParcelFileDescriptor = activity.getContentResolver().openFileDescriptor(uri, "wt");
+        if (mParcelFileDescriptor == null)
+            throw new IOException("Unable to open the file");
+        mOutputStream = new FileOutputStream(mParcelFileDescriptor.getFileDescriptor());
+        try (FileInputStream fis = new FileInputStream(temp)) {
+            final FileChannel in = fis.getChannel();
+            final FileChannel out = ((FileOutputStream) mOutputStream).getChannel();
+            final long size = in.size();
+            long position = 0;
+            while (position < size)
+                position += in.transferTo(position, size - position, out);
+        }
+        close();
+    }
+
+    /**
+     * The lines are now read from the saved file, the previous file can be closed (or has been overwritten).
+     *
+     * @param activity The activity.
+     * @param list     The lines.
+     * @param uri      The saved file.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void reload(final Activity activity, final PagedLineList list, final Uri uri) throws IOException {
+        final ParcelFileDescriptor pfd = activity.getContentResolver().openFileDescriptor(uri, "r");
+        if (pfd == null)
+            throw new IOException("Unable to open the file");
+        final PagedFile file;
+        try {
+            file = new PagedFile(new FileInputStream(pfd.getFileDescriptor()).getChannel(), pfd);
+        } catch (final IOException e) {
+            pfd.close();
+            throw e;
+        }
+        rebase(list, file);
+    }
+
+    /**
+     * The lines are now read from the temporary file.
+     *
+     * @param list The lines.
+     * @param temp The temporary file.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void reload(final PagedLineList list, final File temp) throws IOException {
+        final FileInputStream fis = new FileInputStream(temp);
+        final PagedFile file;
+        try {
+            file = new PagedFile(fis.getChannel(), fis);
+        } catch (final IOException e) {
+            fis.close();
+            throw e;
+        }
+        rebase(list, file);
+    }
+
+    /**
+     * Replaces the file read by the lines and closes the previous one.
+     *
+     * @param list The lines.
+     * @param file The new file.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void rebase(final PagedLineList list, final PagedFile file) throws IOException {
+        final PagedFile old;
+        try {
+            old = list.rebase(file);
+        } catch (final IOException e) {
+            file.close();
+            throw e;
+        }
+        try {
+            old.close();
+        } catch (final IOException e) {
+            Log.e(this.getClass().getSimpleName(), "Exception: " + e.getMessage(), e);
+        }
+    }
+
     public interface SaveResultListener {
+        /* the destination may be truncated by the save, the readers of the file (eg: a search) must be stopped */
+        void onSaveStart();
+
         void onSaveResult(Uri uri, boolean success);
     }
 
@@ -0,0 +1,183 @@
+package fr.ralala.hexviewer.ui.undoredo;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Journal of the undo/redo records: an append-only log addressed by absolute offsets.
+ * The most recent bytes are kept in a ring buffer bounded by the memory budget, the oldest bytes are spilled
+ * to a temporary file when the ring buffer is full.
+ * The journal keeps at most limit bytes: when a record does not fit, the oldest bytes are discarded and the
+ * temporary file is reused as a ring of limit bytes.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class EditJournal {
+    private static final int SPILL_SIZE = 64 * 1024;
+    private final File mDirectory;
+    private final byte[] mRing;
+    private final long mLimit;
+    private long mStart = 0L;
+    private long mLength = 0L;
+    private long mSpilled = 0L;
+    private File mFile = null;
+    private RandomAccessFile mSpillFile = null;
+
+    /**
+     * Constructs the journal.
+     *
+     * @param directory The directory of the temporary file.
+     * @param budget    The memory budget in bytes.
+     * @param limit     The maximum number of bytes kept by the journal (memory and temporary file).
+     */
+    public EditJournal(final File directory, final int budget, final long limit) {
+        mDirectory = directory;
+        mRing = new byte[budget];
+        mLimit = Math.max(limit, budget);
+    }
+
+    /**
+     * Returns the length of the journal.
+     *
+     * @return long
+     */
+    public long length() {
+        return mLength;
+    }
+
+    /**
+     * Returns the offset of the oldest byte kept by the journal, the records before it have been discarded.
+     *
+     * @return long
+     */
+    public long start() {
+        return mStart;
+    }
+
+    /**
+     * Appends a record at the end of the journal, the oldest bytes are discarded if the journal is full.
+     *
+     * @param record The record.
+     * @return The offset of the record.
+     * @throws IOException If the record is larger than the journal or if the spill to the temporary file fails.
+     */
+    public long append(final byte[] record) throws IOException {
+        if (record.length > mLimit)
+            throw new IOException("Record too large: " + record.length);
+        final long offset = mLength;
+        mStart = Math.max(mStart, offset + record.length - mLimit);
+        /* the discarded bytes which are still in the ring buffer don't need to be spilled */
+        mSpilled = Math.max(mSpilled, Math.min(mStart, mLength));
+        int off = 0;
+        while (off < record.length) {
+            if (mLength - mSpilled == mRing.length)
+                spill(Math.min(SPILL_SIZE, mRing.length));
+            final int index = (int) (mLength % mRing.length);
+            final int free = mRing.length - (int) (mLength - mSpilled);
+            final int n = Math.min(record.length - off, Math.min(free, mRing.length - index));
+            System.arraycopy(record, off, mRing, index, n);
+            off += n;
+            mLength += n;
+        }
+        return offset;
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param offset The offset of the record.
+     * @param length The length of the record.
+     * @return The record.
+     * @throws IOException If the read from the temporary file fails.
+     */
+    public byte[] read(final long offset, final int length) throws IOException {
+        if (offset < mStart || offset + length > mLength)
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+        final byte[] record = new byte[length];
+        long position = offset;
+        int off = 0;
+        while (position < mSpilled && off < length) {
+            final long filePosition = position % mLimit;
+            final int n = (int) Math.min(Math.min(length - off, mSpilled - position), mLimit - filePosition);
+            mSpillFile.seek(filePosition);
+            mSpillFile.readFully(record, off, n);
+            off += n;
+            position += n;
+        }
+        while (off < length) {
+            final int index = (int) (position % mRing.length);
+            final int n = Math.min(length - off, mRing.length - index);
+            System.arraycopy(mRing, index, record, off, n);
+            off += n;
+            position += n;
+        }
+        return record;
+    }
+
+    /**
+     * Discards the end of the journal.
+     *
+     * @param length The new length of the journal.
+     */
+    public void truncate(final long length) {
+        final long end = Math.max(length, mStart);
+        if (end >= mLength)
+            return;
+        if (end < mSpilled)
+            mSpilled = end;
+        mLength = end;
+    }
+
+    /**
+     * Clears the journal, the temporary file is deleted.
+     */
+    public void clear() {
+        mStart = 0L;
+        mLength = 0L;
+        mSpilled = 0L;
+        if (mSpillFile != null) {
+            try {
+                mSpillFile.close();
+            } catch (IOException e) {
+                Log.e(getClass().getSimpleName(), "Exception: " + e.getMessage(), e);
+            }
+            mSpillFile = null;
+        }
+        if (mFile != null) {
+            if (!mFile.delete())
+                Log.e(getClass().getSimpleName(), "Unable to delete the file: " + mFile);
+            mFile = null;
+        }
+    }
+
+    /**
+     * Moves the oldest bytes of the ring buffer to the temporary file.
+     *
+     * @param length The number of bytes.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void spill(final int length) throws IOException {
+        if (mSpillFile == null) {
+            mFile = File.createTempFile("undo", ".journal", mDirectory);
+            mSpillFile = new RandomAccessFile(mFile, "rw");
+        }
+        int off = 0;
+        while (off < length) {
+            final int index = (int) ((mSpilled + off) % mRing.length);
+            final long filePosition = (mSpilled + off) % mLimit;
+            final int n = (int) Math.min(Math.min(length - off, mRing.length - index), mLimit - filePosition);
+            mSpillFile.seek(filePosition);
+            mSpillFile.write(mRing, index, n);
+            off += n;
+        }
+        mSpilled += length;
+    }
+}
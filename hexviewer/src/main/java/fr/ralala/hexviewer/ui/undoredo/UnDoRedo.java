@@ -1,27 +1,29 @@
 package fr.ralala.hexviewer.ui.undoredo;
 
+import android.util.Log;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
 
 import androidx.core.content.ContextCompat;
 
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 import java.util.Stack;
 
 import fr.ralala.hexviewer.R;
 import fr.ralala.hexviewer.models.Line;
 import fr.ralala.hexviewer.models.LineData;
-import fr.ralala.hexviewer.models.LineFilter;
 import fr.ralala.hexviewer.ui.activities.MainActivity;
 import fr.ralala.hexviewer.ui.adapters.HexTextArrayAdapter;
 import fr.ralala.hexviewer.ui.undoredo.commands.DeleteCommand;
+import fr.ralala.hexviewer.ui.undoredo.commands.JournalCommand;
 import fr.ralala.hexviewer.ui.undoredo.commands.UpdateCommand;
+import fr.ralala.hexviewer.ui.utils.UIHelper;
 
 /**
  * ******************************************************************************
  * <p><b>Project HexViewer</b><br/>
- * Undo Redo Manager
+ * Undo Redo Manager: the commands only keep the position of their record in the edit journal.
  * </p>
  *
  * @author Keidan
@@ -31,17 +33,22 @@ import fr.ralala.hexviewer.ui.undoredo.commands.UpdateCommand;
 public class UnDoRedo {
     private static final int CONTROL_UNDO = 0;
     private static final int CONTROL_REDO = 1;
+    private static final int JOURNAL_BUDGET = 1024 * 1024;
+    private static final long JOURNAL_LIMIT = 64L * 1024 * 1024;
     private final MainActivity mActivity;
     private final Control[] mControls;
-    private final Stack<ICommand> mUndo;
-    private final Stack<ICommand> mRedo;
+    private final Stack<JournalCommand> mUndo;
+    private final Stack<JournalCommand> mRedo;
+    private final EditJournal mJournal;
     private int mReferenceIndex;
+    private boolean mDisabled = false;
 
     public UnDoRedo(MainActivity activity) {
         mActivity = activity;
         mControls = new Control[2];
         mUndo = new Stack<>();
         mRedo = new Stack<>();
+        mJournal = new EditJournal(activity.getCacheDir(), JOURNAL_BUDGET, JOURNAL_LIMIT);
     }
 
     /**
@@ -90,40 +97,69 @@ public class UnDoRedo {
      * @return The command.
      */
     public ICommand insertInUnDoRedoForUpdate(final MainActivity activity, final int firstPosition, List<LineData<Line>> entries) {
-        ICommand cmd = new UpdateCommand(activity, firstPosition, entries);
-        mUndo.push(cmd);
-        manageControl(mControls[CONTROL_UNDO], true);
-        manageControl(mControls[CONTROL_REDO], false);
-        mRedo.clear();
-
-        mActivity.setTitle(mActivity.getResources().getConfiguration());
-        return cmd;
+        clearRedo();
+        return push(new UpdateCommand(mDisabled ? null : mJournal, activity, firstPosition, entries));
     }
 
     /**
      * Inserts delete command.
      *
-     * @param adapter HexTextArrayAdapter.
-     * @param entries The entries.
+     * @param adapter   HexTextArrayAdapter.
+     * @param positions The positions in the filtered list, in ascending order.
+     * @return The command.
+     */
+    public ICommand insertInUnDoRedoForDelete(final HexTextArrayAdapter adapter, final List<Integer> positions) {
+        clearRedo();
+        return push(new DeleteCommand(mDisabled ? null : mJournal, adapter, positions));
+    }
+
+    /**
+     * Pushes a new command on the undo stack.
+     * The oldest commands whose records have been discarded by the journal are removed from the stack;
+     * if the record of the command can't be appended to the journal, undo/redo is disabled.
+     *
+     * @param cmd The command.
      * @return The command.
      */
-    public ICommand insertInUnDoRedoForDelete(final HexTextArrayAdapter adapter, final Map<Integer, LineFilter<Line>> entries) {
-        ICommand cmd = new DeleteCommand(adapter, entries);
+    private ICommand push(final JournalCommand cmd) {
+        if (!cmd.isRecorded()) {
+            /* the edit is not recorded, the saved state can't be reached anymore */
+            mReferenceIndex = -1;
+            if (!mDisabled)
+                disable();
+            return cmd;
+        }
+        while (!mUndo.isEmpty() && mUndo.firstElement().getOffset() < mJournal.start()) {
+            mUndo.remove(0);
+            mReferenceIndex = mReferenceIndex > 0 ? mReferenceIndex - 1 : -1;
+        }
         mUndo.push(cmd);
         manageControl(mControls[CONTROL_UNDO], true);
         manageControl(mControls[CONTROL_REDO], false);
-        mRedo.clear();
 
         mActivity.setTitle(mActivity.getResources().getConfiguration());
         return cmd;
     }
 
+    /**
+     * Clears the redo stack, the records of the redo commands are discarded from the journal.
+     */
+    private void clearRedo() {
+        if (mRedo.isEmpty())
+            return;
+        mRedo.clear();
+        mJournal.truncate(mUndo.isEmpty() ? mJournal.start() : mUndo.peek().getEnd());
+    }
+
     /**
      * Undo action
      */
     public void undo() {
         if (!mUndo.isEmpty()) {
-            ICommand command = mUndo.pop();
+            JournalCommand command = mUndo.peek();
+            if (!load(command))
+                return;
+            mUndo.pop();
             command.unExecute();
             mRedo.push(command);
             manageControl(mControls[CONTROL_REDO], true);
@@ -137,7 +173,10 @@ public class UnDoRedo {
      */
     public void redo() {
         if (!mRedo.isEmpty()) {
-            ICommand command = mRedo.pop();
+            JournalCommand command = mRedo.peek();
+            if (!load(command))
+                return;
+            mRedo.pop();
             command.execute();
             mUndo.push(command);
             manageControl(mControls[CONTROL_UNDO], true);
@@ -147,13 +186,48 @@ public class UnDoRedo {
     }
 
     /**
-     * Clears the undo/redo stacks.
+     * Loads the record of a command from the journal, undo/redo is disabled if the journal can't be read.
+     *
+     * @param command The command.
+     * @return false if the record can't be loaded.
+     */
+    private boolean load(final JournalCommand command) {
+        try {
+            command.load();
+            return true;
+        } catch (IOException e) {
+            Log.e(getClass().getSimpleName(), "Exception: " + e.getMessage(), e);
+            disable();
+            return false;
+        }
+    }
+
+    /**
+     * Disables undo/redo until the next clear, the user is notified.
+     * The commands are dropped, the edits are kept.
+     */
+    private void disable() {
+        mDisabled = true;
+        mReferenceIndex = isChanged() ? -1 : 0;
+        mUndo.clear();
+        mRedo.clear();
+        mJournal.clear();
+        for (Control ctrl : mControls)
+            manageControl(ctrl, false);
+        mActivity.setTitle(mActivity.getResources().getConfiguration());
+        UIHelper.toast(mActivity, mActivity.getString(R.string.undo_disabled));
+    }
+
+    /**
+     * Clears the undo/redo stacks and the journal.
      */
     public void clear() {
         for (Control ctrl : mControls)
             manageControl(ctrl, false);
         mUndo.clear();
         mRedo.clear();
+        mJournal.clear();
+        mDisabled = false;
         mActivity.setTitle(mActivity.getResources().getConfiguration());
     }
 
@@ -1,41 +1,79 @@
 package fr.ralala.hexviewer.ui.undoredo.commands;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import fr.ralala.hexviewer.models.Line;
+import fr.ralala.hexviewer.models.LineData;
 import fr.ralala.hexviewer.models.LineFilter;
 import fr.ralala.hexviewer.ui.adapters.HexTextArrayAdapter;
-import fr.ralala.hexviewer.ui.undoredo.ICommand;
-import fr.ralala.hexviewer.utils.SysHelper;
+import fr.ralala.hexviewer.ui.undoredo.EditJournal;
 
 /**
  * ******************************************************************************
  * <p><b>Project HexViewer</b><br/>
- * Command used when deleting an entry.
+ * Command used when deleting entries, the entries are deleted and restored by ranges.
  * </p>
  *
  * @author Keidan
  * <p>
  * ******************************************************************************
  */
-public class DeleteCommand implements ICommand {
-    private final Map<Integer, LineFilter<Line>> mList;
+public class DeleteCommand extends JournalCommand {
     private final HexTextArrayAdapter mAdapter;
 
-    public DeleteCommand(final HexTextArrayAdapter adapter, final Map<Integer, LineFilter<Line>> entries) {
-        mList = entries;
+    public DeleteCommand(final EditJournal journal, final HexTextArrayAdapter adapter, final List<Integer> positions) {
+        super(journal, toRecord(adapter, positions));
         mAdapter = adapter;
     }
 
+    /**
+     * Builds the record: the number of ranges, then for each range in ascending order, its position in the filtered list,
+     * its position in the list of items and its number of lines, and finally the lines of all the ranges.
+     * A range groups the entries which are consecutive in the filtered list and in the list of items.
+     *
+     * @param adapter   HexTextArrayAdapter.
+     * @param positions The positions in the filtered list, in ascending order.
+     * @return byte[]
+     */
+    private static byte[] toRecord(final HexTextArrayAdapter adapter, final List<Integer> positions) {
+        final List<LineFilter<Line>> filtered = adapter.getFilteredList();
+        final List<LineData<Line>> items = adapter.getItems();
+        final int[] ranges = new int[positions.size() * 3];
+        int count = 0;
+        int size = 4;
+        for (Integer position : positions) {
+            final int origin = filtered.get(position).getOrigin();
+            if (count != 0 && ranges[count - 3] + ranges[count - 1] == position && ranges[count - 2] + ranges[count - 1] == origin)
+                ranges[count - 1]++;
+            else {
+                ranges[count++] = position;
+                ranges[count++] = origin;
+                ranges[count++] = 1;
+                size += 12;
+            }
+            size += sizeOf(items.get(origin));
+        }
+        final ByteBuffer record = ByteBuffer.allocate(size);
+        record.putInt(count / 3);
+        for (int i = 0; i < count; i++)
+            record.putInt(ranges[i]);
+        for (int i = 0; i < count; i += 3)
+            for (int j = 0; j < ranges[i + 2]; j++)
+                putLine(record, items.get(ranges[i + 1] + j));
+        return record.array();
+    }
+
     /**
      * Execute the command.
      */
     public void execute() {
-        List<Integer> list = SysHelper.getMapKeys(mList);
-        for (int i = list.size() - 1; i >= 0; i--) {
-            mAdapter.removeItem(list.get(i));
-        }
+        final ByteBuffer record = readRecord();
+        final int[] ranges = new int[record.getInt() * 3];
+        for (int i = 0; i < ranges.length; i++)
+            ranges[i] = record.getInt();
+        mAdapter.removeItems(ranges);
         mAdapter.notifyDataSetChanged();
     }
 
@@ -43,11 +81,17 @@ public class DeleteCommand implements ICommand {
      * Un-Execute the command.
      */
     public void unExecute() {
-        for (Integer i : SysHelper.getMapKeys(mList)) {
-            LineFilter<Line> fd = mList.get(i);
-            mAdapter.getFilteredList().add(i, fd);
-            mAdapter.getItems().add(fd.getOrigin(), fd.getData());
-        }
+        final ByteBuffer record = readRecord();
+        final int[] ranges = new int[record.getInt() * 3];
+        for (int i = 0; i < ranges.length; i++)
+            ranges[i] = record.getInt();
+        int total = 0;
+        for (int i = 2; i < ranges.length; i += 3)
+            total += ranges[i];
+        final List<LineData<Line>> lines = new ArrayList<>(total);
+        for (int i = 0; i < total; i++)
+            lines.add(getLine(record));
+        mAdapter.insertItems(ranges, lines);
         mAdapter.notifyDataSetChanged();
     }
 }
@@ -0,0 +1,141 @@
+package fr.ralala.hexviewer.ui.undoredo.commands;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import fr.ralala.hexviewer.models.Line;
+import fr.ralala.hexviewer.models.LineData;
+import fr.ralala.hexviewer.ui.undoredo.EditJournal;
+import fr.ralala.hexviewer.ui.undoredo.ICommand;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Command whose lines are stored as a record of the edit journal: the command only keeps the position of its record.
+ * Without journal (or if the record can't be appended), the record is only kept for the first execution.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public abstract class JournalCommand implements ICommand {
+    private final EditJournal mJournal;
+    private final long mOffset;
+    private final int mLength;
+    private byte[] mRecord;
+
+    /**
+     * Constructor, the record is appended to the journal.
+     * The record is also kept until the first execution of the command, so it is not read back from the journal.
+     *
+     * @param journal The journal, null if the command is not recorded.
+     * @param record  The record.
+     */
+    protected JournalCommand(final EditJournal journal, final byte[] record) {
+        long offset = -1L;
+        if (journal != null) {
+            try {
+                offset = journal.append(record);
+            } catch (IOException e) {
+                Log.e(getClass().getSimpleName(), "Exception: " + e.getMessage(), e);
+            }
+        }
+        mJournal = offset == -1L ? null : journal;
+        mOffset = offset;
+        mLength = record.length;
+        mRecord = record;
+    }
+
+    /**
+     * Tests if the record of the command is in the journal.
+     *
+     * @return boolean
+     */
+    public boolean isRecorded() {
+        return mJournal != null;
+    }
+
+    /**
+     * Returns the offset of the record in the journal.
+     *
+     * @return long
+     */
+    public long getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * Returns the end of the record in the journal.
+     *
+     * @return long
+     */
+    public long getEnd() {
+        return mOffset + mLength;
+    }
+
+    /**
+     * Reads the record from the journal before an execution of the command.
+     *
+     * @throws IOException If the record can't be read.
+     */
+    public void load() throws IOException {
+        if (mRecord == null) {
+            if (mJournal == null)
+                throw new IOException("The command is not recorded");
+            mRecord = mJournal.read(mOffset, mLength);
+        }
+    }
+
+    /**
+     * Returns the record loaded for the current execution of the command (see load).
+     *
+     * @return ByteBuffer
+     */
+    protected ByteBuffer readRecord() {
+        if (mRecord == null)
+            throw new IllegalStateException("The record is not loaded");
+        final ByteBuffer record = ByteBuffer.wrap(mRecord);
+        mRecord = null;
+        return record;
+    }
+
+    /**
+     * Returns the size of a line in a record.
+     *
+     * @param line The line.
+     * @return int
+     */
+    protected static int sizeOf(final LineData<Line> line) {
+        return 2 + line.getValue().getLength();
+    }
+
+    /**
+     * Writes a line in a record: the updated state, the number of bytes and the bytes.
+     *
+     * @param record The record.
+     * @param line   The line.
+     */
+    protected static void putLine(final ByteBuffer record, final LineData<Line> line) {
+        final Line value = line.getValue();
+        record.put((byte) (line.isUpdated() ? 1 : 0));
+        record.put((byte) value.getLength());
+        record.put(value.getRaw());
+    }
+
+    /**
+     * Reads a line from a record, the line is a view on the record.
+     *
+     * @param record The record.
+     * @return LineData<Line>
+     */
+    protected static LineData<Line> getLine(final ByteBuffer record) {
+        final boolean updated = record.get() != 0;
+        final int length = record.get() & 0xFF;
+        final int offset = record.position();
+        record.position(offset + length);
+        return new LineData<>(new Line(record.array(), offset, length), updated);
+    }
+}
@@ -1,13 +1,13 @@
 package fr.ralala.hexviewer.ui.undoredo.commands;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import fr.ralala.hexviewer.models.Line;
 import fr.ralala.hexviewer.models.LineData;
-import fr.ralala.hexviewer.models.LineFilter;
 import fr.ralala.hexviewer.ui.activities.MainActivity;
 import fr.ralala.hexviewer.ui.adapters.HexTextArrayAdapter;
-import fr.ralala.hexviewer.ui.undoredo.ICommand;
+import fr.ralala.hexviewer.ui.undoredo.EditJournal;
 
 /**
  * ******************************************************************************
@@ -19,17 +19,46 @@ import fr.ralala.hexviewer.ui.undoredo.ICommand;
  * <p>
  * ******************************************************************************
  */
-public class UpdateCommand implements ICommand {
-    private final List<LineData<Line>> mList;
+public class UpdateCommand extends JournalCommand {
     private final MainActivity mActivity;
     private final int mRealIndex;
-    private LineFilter<Line> mPrevLine;
 
-
-    public UpdateCommand(final MainActivity activity, final int firstPosition, List<LineData<Line>> entries) {
-        mList = entries;
+    public UpdateCommand(final EditJournal journal, final MainActivity activity, final int firstPosition, List<LineData<Line>> entries) {
+        super(journal, toRecord(activity, getRealIndex(activity, firstPosition), entries));
         mActivity = activity;
-        mRealIndex = activity.getAdapterHex().getFilteredList().get(firstPosition).getOrigin();
+        mRealIndex = getRealIndex(activity, firstPosition);
+    }
+
+    /**
+     * Returns the position in the list of items of an entry of the filtered list.
+     *
+     * @param activity      MainActivity.
+     * @param firstPosition The position in the filtered list.
+     * @return int
+     */
+    private static int getRealIndex(final MainActivity activity, final int firstPosition) {
+        return activity.getAdapterHex().getFilteredList().get(firstPosition).getOrigin();
+    }
+
+    /**
+     * Builds the record: the previous line, the number of new lines and the new lines.
+     *
+     * @param activity  MainActivity.
+     * @param realIndex The position of the previous line.
+     * @param entries   The new lines.
+     * @return byte[]
+     */
+    private static byte[] toRecord(final MainActivity activity, final int realIndex, final List<LineData<Line>> entries) {
+        final LineData<Line> prevLine = activity.getAdapterHex().getItems().get(realIndex);
+        int size = sizeOf(prevLine) + 4;
+        for (LineData<Line> ld : entries)
+            size += sizeOf(ld);
+        final ByteBuffer record = ByteBuffer.allocate(size);
+        putLine(record, prevLine);
+        record.putInt(entries.size());
+        for (LineData<Line> ld : entries)
+            putLine(record, ld);
+        return record.array();
     }
 
     /**
@@ -41,43 +70,20 @@ public class UpdateCommand implements ICommand {
         if (!query.isEmpty())
             adapter.manualFilterUpdate(""); /* reset filter */
 
-        int size = mList.size();
-        /* only one element */
-        if (size == 1) {
-            LineFilter<Line> fd = adapter.getFilteredList().get(mRealIndex);
-            mPrevLine = new LineFilter<>(fd);
-            fd.setData(mList.get(0));
-            fd.getData().setUpdated(true);
-            adapter.getItems().set(fd.getOrigin(), mList.get(0));
-        } else {
-            /* first we move the existing indexes - filtered */
-            for (int i = mRealIndex + 1; i < adapter.getFilteredList().size(); i++)
-                adapter.getFilteredList().get(i).setOrigin(adapter.getFilteredList().get(i).getOrigin() + size);
+        final ByteBuffer record = readRecord();
+        getLine(record); /* previous line */
+        final int count = record.getInt();
+        final List<LineData<Line>> items = adapter.getItems();
+        /* First we modify the existing element */
+        final LineData<Line> newVal = getLine(record);
+        newVal.setUpdated(true);
+        items.set(mRealIndex, newVal);
 
-            /* Then we modify the existing element */
-            LineFilter<Line> fd = adapter.getFilteredList().get(mRealIndex);
-            mPrevLine = new LineFilter<>(fd);
-            final LineData<Line> newVal = mList.get(0);
-            if (!fd.getData().equals(newVal)) {
-                fd.setData(newVal);
-                fd.getData().setUpdated(true);
-                adapter.getItems().set(fd.getOrigin(), mList.get(0));
-            }
-
-            /* finally we add the elements */
-            for (int i = 1; i < size; i++) {
-                LineData<Line> value = mList.get(i);
-                fd = new LineFilter<>(value, mPrevLine.getOrigin() + i);
-                fd.getData().setUpdated(true);
-                if (mPrevLine.getOrigin() + i < adapter.getItems().size())
-                    adapter.getItems().add(mPrevLine.getOrigin() + i, mList.get(i));
-                else
-                    adapter.getItems().add(mList.get(i));
-                if (mRealIndex + i < adapter.getFilteredList().size())
-                    adapter.getFilteredList().add(mRealIndex + i, fd);
-                else
-                    adapter.getFilteredList().add(fd);
-            }
+        /* Then we add the elements */
+        for (int i = 1; i < count; i++) {
+            LineData<Line> value = getLine(record);
+            value.setUpdated(true);
+            items.add(mRealIndex + i, value);
         }
         if (!query.isEmpty())
             adapter.manualFilterUpdate(query); /* restore filter */
@@ -93,30 +99,17 @@ public class UpdateCommand implements ICommand {
         if (!query.isEmpty())
             adapter.manualFilterUpdate(""); /* reset filter */
 
-        int size = mList.size();
-        /* only one element */
-        if (size == 1) {
-            LineFilter<Line> fd = adapter.getFilteredList().get(mRealIndex);
-            fd.setData(mPrevLine.getData());
-            fd.getData().setUpdated(false);
-            adapter.getItems().set(fd.getOrigin(), mPrevLine.getData());
-        } else {
-            /* First, we delete the elements*/
-            for (int i = size - 1; i > 0; i--) {
-                adapter.getItems().remove(mPrevLine.getOrigin() + i);
-                if (mRealIndex + i < adapter.getFilteredList().size())
-                    adapter.getFilteredList().remove(mRealIndex + i);
-            }
-            /* Then we restores the existing element */
-            LineFilter<Line> fd = adapter.getFilteredList().get(mRealIndex);
-            fd.setData(mPrevLine.getData());
-            fd.getData().setUpdated(false);
-            adapter.getItems().set(fd.getOrigin(), mPrevLine.getData());
+        final ByteBuffer record = readRecord();
+        final LineData<Line> prevLine = getLine(record);
+        final int count = record.getInt();
+        final List<LineData<Line>> items = adapter.getItems();
+        /* First, we delete the elements*/
+        for (int i = count - 1; i > 0; i--)
+            items.remove(mRealIndex + i);
+        /* Then we restores the existing element */
+        prevLine.setUpdated(false);
+        items.set(mRealIndex, prevLine);
 
-            /* finally we move the existing indexes - filtered */
-            for (int i = mRealIndex + 1; i < adapter.getFilteredList().size(); i++)
-                adapter.getFilteredList().get(i).setOrigin(adapter.getFilteredList().get(i).getOrigin() - size);
-        }
         if (!query.isEmpty())
             adapter.manualFilterUpdate(query); /* restore filter */
         adapter.notifyDataSetChanged();
@@ -6,13 +6,7 @@ import android.view.MenuItem;
 import android.widget.AbsListView;
 import android.widget.ListView;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import fr.ralala.hexviewer.R;
-import fr.ralala.hexviewer.models.Line;
-import fr.ralala.hexviewer.models.LineFilter;
 import fr.ralala.hexviewer.ui.activities.MainActivity;
 import fr.ralala.hexviewer.ui.adapters.HexTextArrayAdapter;
 
@@ -72,15 +66,7 @@ public class MultiChoiceCallback implements AbsListView.MultiChoiceModeListener
     @Override
     public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
         if (item.getItemId() == R.id.action_clear) {
-            final List<Integer> selected = mAdapter.getSelectedIds();
-            Map<Integer, LineFilter<Line>> map = new HashMap<>();
-            HexTextArrayAdapter adapter = mActivity.getAdapterHex();
-            // Captures all selected ids with a loop
-            for (int i = selected.size() - 1; i >= 0; i--) {
-                int position = selected.get(i);
-                map.put(position, adapter.getFilteredList().get(position));
-            }
-            mActivity.getUnDoRedo().insertInUnDoRedoForDelete(adapter, map).execute();
+            mActivity.getUnDoRedo().insertInUnDoRedoForDelete(mActivity.getAdapterHex(), mAdapter.getSelectedIds()).execute();
             mActivity.setTitle(mActivity.getResources().getConfiguration());
             // Close CAB
             mode.finish();
@@ -14,6 +14,8 @@ import fr.ralala.hexviewer.ApplicationCtx;
 import fr.ralala.hexviewer.R;
 import fr.ralala.hexviewer.models.Line;
 import fr.ralala.hexviewer.models.LineData;
+import fr.ralala.hexviewer.models.PagedLineList;
+import fr.ralala.hexviewer.models.PlainLineList;
 import fr.ralala.hexviewer.ui.activities.MainActivity;
 import fr.ralala.hexviewer.ui.adapters.PlainTextListArrayAdapter;
 import fr.ralala.hexviewer.ui.adapters.SearchableListArrayAdapter;
@@ -92,6 +94,15 @@ public class PayloadPlainSwipe {
         return mAdapterPlain;
     }
 
+    /**
+     * Gets the list view.
+     *
+     * @return ListView
+     */
+    public ListView getListView() {
+        return mPayloadPlain;
+    }
+
     /**
      * Tests if the list view is visible.
      *
@@ -126,10 +137,7 @@ public class PayloadPlainSwipe {
             mCancelPayloadPlainSwipeRefresh.set(false);
             final List<LineData<String>> list = refreshPlain(mCancelPayloadPlainSwipeRefresh);
             if (!mCancelPayloadPlainSwipeRefresh.get()) {
-                mActivity.runOnUiThread(() -> {
-                    mAdapterPlain.clear();
-                    mAdapterPlain.addAll(list);
-                });
+                mActivity.runOnUiThread(() -> mAdapterPlain.setItems(list));
             }
             mPayloadPlainSwipeRefreshLayout.setRefreshing(false);
             mCancelPayloadPlainSwipeRefresh.set(false);
@@ -144,20 +152,30 @@ public class PayloadPlainSwipe {
      * @return List<ListData < String>>
      */
     private List<LineData<String>> refreshPlain(final AtomicBoolean cancel) {
-        final List<Byte> payload = new ArrayList<>();
-        for (LineData<Line> le : mActivity.getAdapterHex().getItems())
-            payload.addAll(le.getValue().getRaw());
+        final List<LineData<Line>> items = mActivity.getAdapterHex().getItems();
+        /* the lines of a paged file are built on demand */
+        if (items instanceof PagedLineList)
+            return new PlainLineList((PagedLineList) items);
+        int size = 0;
+        for (LineData<Line> le : items)
+            size += le.getValue().getLength();
+        final byte[] payload = new byte[size];
+        int offset = 0;
+        for (LineData<Line> le : items) {
+            le.getValue().copyTo(0, payload, offset, le.getValue().getLength());
+            offset += le.getValue().getLength();
+        }
         final StringBuilder sb = new StringBuilder();
         int nbPerLine = 0;
         final List<LineData<String>> list = new ArrayList<>();
-        for (int i = 0; i < payload.size() && (cancel == null || !cancel.get()); i++) {
+        for (int i = 0; i < payload.length && (cancel == null || !cancel.get()); i++) {
             if (nbPerLine != 0 && (nbPerLine % SysHelper.MAX_BY_LINE) == 0) {
-                sb.append((char) payload.get(i).byteValue());
+                sb.append((char) payload[i]);
                 list.add(new LineData<>(sb.toString()));
                 nbPerLine = 0;
                 sb.setLength(0);
             } else {
-                sb.append((char) (char) payload.get(i).byteValue());
+                sb.append((char) payload[i]);
                 nbPerLine++;
             }
         }
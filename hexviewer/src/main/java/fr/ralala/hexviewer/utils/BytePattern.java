@@ -0,0 +1,151 @@
+package fr.ralala.hexviewer.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Byte pattern searched with the Boyer-Moore-Horspool algorithm.
+ * Each byte of the pattern has a mask, so a byte (??) or a half byte (4? or ?f) can be a wildcard,
+ * and the text patterns can ignore the case of the ASCII letters.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class BytePattern {
+    private static final byte[] IDENTITY = new byte[256];
+    private static final byte[] LOWER_CASE = new byte[256];
+    private final byte[] mValues;
+    private final byte[] mMasks;
+    private final byte[] mFold;
+    private final int[] mShifts = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            IDENTITY[i] = (byte) i;
+            LOWER_CASE[i] = (byte) ((i >= 'A' && i <= 'Z') ? i + ('a' - 'A') : i);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param values     The bytes of the pattern.
+     * @param masks      The mask of each byte (0xff to compare the whole byte, 0x00 for a wildcard).
+     * @param ignoreCase True to ignore the case of the ASCII letters.
+     */
+    public BytePattern(final byte[] values, final byte[] masks, final boolean ignoreCase) {
+        if (values.length == 0 || values.length != masks.length)
+            throw new IllegalArgumentException("Invalid pattern");
+        mFold = ignoreCase ? LOWER_CASE : IDENTITY;
+        mValues = new byte[values.length];
+        mMasks = masks.clone();
+        for (int i = 0; i < values.length; i++)
+            mValues[i] = (byte) (mFold[values[i] & 0xff] & masks[i]);
+        /* the last byte is not used by the shift table, a wildcard limits the shift of all the bytes */
+        final int last = mValues.length - 1;
+        int shift = mValues.length;
+        for (int i = 0; i < last; i++)
+            if (mMasks[i] != (byte) 0xff)
+                shift = last - i;
+        Arrays.fill(mShifts, shift);
+        for (int i = 0; i < last; i++)
+            if (mMasks[i] == (byte) 0xff && last - i < shift)
+                mShifts[mValues[i] & 0xff] = last - i;
+    }
+
+    /**
+     * Builds the patterns searched for a query:
+     * - the bytes of the query if it is an hex string (eg: "de ad ?? e?"),
+     * - the query encoded in UTF-8 and in UTF-16LE, ignoring the case of the ASCII letters.
+     *
+     * @param query The query.
+     * @return The patterns, empty if the query is empty.
+     */
+    public static List<BytePattern> parse(final String query) {
+        final List<BytePattern> patterns = new ArrayList<>();
+        if (query == null || query.isEmpty())
+            return patterns;
+        final BytePattern hex = parseHex(query);
+        if (hex != null)
+            patterns.add(hex);
+        patterns.add(fromText(query.getBytes(StandardCharsets.UTF_8)));
+        patterns.add(fromText(query.getBytes(StandardCharsets.UTF_16LE)));
+        return patterns;
+    }
+
+    /**
+     * Builds a pattern from an hex string, the spaces are ignored and '?' is a wildcard for half a byte.
+     *
+     * @param query The hex string.
+     * @return The pattern, null if the string is not a valid hex string.
+     */
+    public static BytePattern parseHex(final String query) {
+        final String hex = query.replace(" ", "").toLowerCase(Locale.US);
+        if (hex.isEmpty() || (hex.length() & 1) != 0)
+            return null;
+        final byte[] values = new byte[hex.length() / 2];
+        final byte[] masks = new byte[values.length];
+        for (int i = 0; i < hex.length(); i++) {
+            final char c = hex.charAt(i);
+            final int shift = (i & 1) == 0 ? 4 : 0;
+            if (c == '?')
+                continue;
+            final int digit = Character.digit(c, 16);
+            if (digit == -1)
+                return null;
+            values[i / 2] |= (byte) (digit << shift);
+            masks[i / 2] |= (byte) (0x0f << shift);
+        }
+        return new BytePattern(values, masks, false);
+    }
+
+    /**
+     * Builds a pattern from the bytes of a text, ignoring the case of the ASCII letters.
+     *
+     * @param text The bytes of the text.
+     * @return The pattern.
+     */
+    private static BytePattern fromText(final byte[] text) {
+        final byte[] masks = new byte[text.length];
+        Arrays.fill(masks, (byte) 0xff);
+        return new BytePattern(text, masks, true);
+    }
+
+    /**
+     * Returns the length of the pattern.
+     *
+     * @return int
+     */
+    public int length() {
+        return mValues.length;
+    }
+
+    /**
+     * Searches the first occurrence of the pattern in a buffer.
+     *
+     * @param data The buffer.
+     * @param from The first position (inclusive).
+     * @param to   The end of the search (exclusive), the occurrence must end before this position.
+     * @return The position of the occurrence, -1 if not found.
+     */
+    public int indexOf(final byte[] data, final int from, final int to) {
+        final int last = mValues.length - 1;
+        int i = from;
+        while (i + last < to) {
+            int j = last;
+            while (j >= 0 && (mFold[data[i + j] & 0xff] & mMasks[j]) == mValues[j])
+                j--;
+            if (j < 0)
+                return i;
+            i += mShifts[mFold[data[i + last] & 0xff] & 0xff];
+        }
+        return -1;
+    }
+}
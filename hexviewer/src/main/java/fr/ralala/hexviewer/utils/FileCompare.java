@@ -0,0 +1,87 @@
+package fr.ralala.hexviewer.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import fr.ralala.hexviewer.models.Differences;
+import fr.ralala.hexviewer.models.PagedFile;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Comparison of two files, byte by byte at the same positions.
+ * The files are read by blocks through PagedFile.readMapped (memory mapped windows, or the pages when a file can't be mapped)
+ * and the blocks are compared by words of 8 bytes, the bytes are only compared one by one in the words which differ.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class FileCompare {
+    private static final int BLOCK_SIZE = 256 * 1024;
+
+    public interface Listener {
+        /**
+         * Called after each block.
+         *
+         * @param bytes The number of bytes compared.
+         * @return false to stop the comparison.
+         */
+        boolean onProgress(long bytes);
+    }
+
+    private FileCompare() {
+    }
+
+    /**
+     * Compares two files; when the lengths are not equal, the end of the longest file is a difference.
+     *
+     * @param left     The first file.
+     * @param right    The second file.
+     * @param listener Notified after each block, may be null.
+     * @return The differences, null if the comparison has been stopped by the listener.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static Differences compare(final PagedFile left, final PagedFile right, final Listener listener) throws IOException {
+        final Differences differences = new Differences(SysHelper.MAX_BY_ROW);
+        final long common = Math.min(left.length(), right.length());
+        final byte[] a = new byte[BLOCK_SIZE];
+        final byte[] b = new byte[BLOCK_SIZE];
+        final ByteBuffer wa = ByteBuffer.wrap(a);
+        final ByteBuffer wb = ByteBuffer.wrap(b);
+        for (long position = 0; position < common; position += BLOCK_SIZE) {
+            final int n = (int) Math.min(BLOCK_SIZE, common - position);
+            if (left.readMapped(position, a, 0, n) != n || right.readMapped(position, b, 0, n) != n)
+                throw new IOException("Unexpected end of file");
+            int i = 0;
+            for (; i + 8 <= n; i += 8)
+                if (wa.getLong(i) != wb.getLong(i))
+                    compareBytes(a, b, i, i + 8, position, differences);
+            compareBytes(a, b, i, n, position, differences);
+            if (listener != null && !listener.onProgress(n))
+                return null;
+        }
+        final long length = Math.max(left.length(), right.length());
+        if (common != length)
+            differences.add(common, length);
+        return differences;
+    }
+
+    /**
+     * Compares the bytes one by one.
+     *
+     * @param a           The bytes of the first file.
+     * @param b           The bytes of the second file.
+     * @param from        The first index (inclusive).
+     * @param to          The last index (exclusive).
+     * @param position    The position of the buffers in the files.
+     * @param differences The output differences.
+     */
+    private static void compareBytes(final byte[] a, final byte[] b, final int from, final int to,
+                                     final long position, final Differences differences) {
+        for (int i = from; i < to; i++)
+            if (a[i] != b[i])
+                differences.add(position + i, position + i + 1);
+    }
+}
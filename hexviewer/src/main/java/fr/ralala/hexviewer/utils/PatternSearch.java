@@ -0,0 +1,186 @@
+package fr.ralala.hexviewer.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import fr.ralala.hexviewer.models.ByteLineSource;
+
+/**
+ * ******************************************************************************
+ * <p><b>Project HexViewer</b><br/>
+ * Search of byte patterns in a ByteLineSource.
+ * The bytes are split into chunks; consecutive chunks overlap by the length of the longest pattern minus one,
+ * so the occurrences across two chunks (or two lines) are found.
+ * The chunks are searched in parallel on a fork-join pool by groups, the results of a group are reported
+ * in the order of the chunks before the next group is started.
+ * </p>
+ *
+ * @author Keidan
+ * <p>
+ * ******************************************************************************
+ */
+public class PatternSearch {
+    public static final int CHUNK_SIZE = 256 * 1024;
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+    private static final int CHUNKS_BY_GROUP = POOL.getParallelism() * 2;
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
+    public interface Listener {
+        /**
+         * Called for each occurrence, in the order of the positions.
+         *
+         * @param position The position of the occurrence.
+         * @param length   The length of the pattern.
+         */
+        void onMatch(final long position, final int length);
+
+        /**
+         * Called when a chunk is searched.
+         *
+         * @param end All the occurrences before this position were reported.
+         */
+        void onChunk(final long end);
+    }
+
+    private PatternSearch() {
+    }
+
+    /**
+     * Searches all the occurrences of the patterns; when several patterns match at the same position,
+     * only the longest is reported.
+     *
+     * @param source   The bytes.
+     * @param patterns The patterns.
+     * @param cancel   Used to stop the search.
+     * @param listener The listener.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void search(final ByteLineSource source, final List<BytePattern> patterns,
+                              final AtomicBoolean cancel, final Listener listener) throws IOException {
+        int maxLength = 0;
+        for (BytePattern p : patterns)
+            maxLength = Math.max(maxLength, p.length());
+        if (maxLength == 0)
+            return;
+        final long length = source.byteLength();
+        final List<ChunkTask> tasks = new ArrayList<>(CHUNKS_BY_GROUP);
+        long start = 0;
+        while (start < length && !cancel.get()) {
+            tasks.clear();
+            for (int i = 0; i < CHUNKS_BY_GROUP && start < length; i++, start += CHUNK_SIZE)
+                tasks.add(new ChunkTask(source, patterns, maxLength, cancel, start));
+            POOL.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+            for (ChunkTask task : tasks) {
+                if (cancel.get())
+                    return;
+                if (task.mException != null)
+                    throw task.mException;
+                for (int i = 0; i < task.mCount; i++)
+                    listener.onMatch(task.mStart + task.mPositions[i], task.mLengths[i]);
+                listener.onChunk(task.mStart + task.mEnd);
+            }
+        }
+    }
+
+    /**
+     * Searches the occurrences starting in a chunk.
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private final ByteLineSource mSource;
+        private final List<BytePattern> mPatterns;
+        private final int mMaxLength;
+        private final AtomicBoolean mCancel;
+        private final long mStart;
+        private int mEnd = 0;
+        private int[] mPositions = new int[16];
+        private int[] mLengths = new int[16];
+        private int mCount = 0;
+        private IOException mException = null;
+
+        private ChunkTask(final ByteLineSource source, final List<BytePattern> patterns, final int maxLength,
+                          final AtomicBoolean cancel, final long start) {
+            mSource = source;
+            mPatterns = patterns;
+            mMaxLength = maxLength;
+            mCancel = cancel;
+            mStart = start;
+        }
+
+        @Override
+        protected void compute() {
+            if (mCancel.get())
+                return;
+            final int size = CHUNK_SIZE + mMaxLength - 1;
+            byte[] buffer = BUFFERS.get();
+            if (buffer == null || buffer.length < size) {
+                buffer = new byte[size];
+                BUFFERS.set(buffer);
+            }
+            final int reads;
+            try {
+                reads = mSource.readBytes(mStart, buffer, 0, (int) Math.min(size, mSource.byteLength() - mStart));
+            } catch (IOException e) {
+                mException = e;
+                return;
+            }
+            mEnd = Math.min(reads, CHUNK_SIZE);
+            final int[] next = new int[mPatterns.size()];
+            for (int i = 0; i < next.length; i++)
+                next[i] = mPatterns.get(i).indexOf(buffer, 0, reads);
+            int position = nextMatch(next, mEnd);
+            while (position != -1 && !mCancel.get()) {
+                int matchLength = 0;
+                for (int i = 0; i < next.length; i++) {
+                    if (next[i] != position)
+                        continue;
+                    final BytePattern p = mPatterns.get(i);
+                    matchLength = Math.max(matchLength, p.length());
+                    next[i] = p.indexOf(buffer, position + 1, reads);
+                }
+                add(position, matchLength);
+                position = nextMatch(next, mEnd);
+            }
+        }
+
+        /**
+         * Adds an occurrence.
+         *
+         * @param position The position in the chunk.
+         * @param length   The length of the pattern.
+         */
+        private void add(final int position, final int length) {
+            if (mCount == mPositions.length) {
+                mPositions = Arrays.copyOf(mPositions, mCount * 2);
+                mLengths = Arrays.copyOf(mLengths, mCount * 2);
+            }
+            mPositions[mCount] = position;
+            mLengths[mCount++] = length;
+        }
+
+        /**
+         * Returns the smallest position found before the end of the chunk.
+         *
+         * @param next The next position of each pattern.
+         * @param end  The end of the chunk.
+         * @return The position, -1 if none.
+         */
+        private static int nextMatch(final int[] next, final int end) {
+            int position = -1;
+            for (int n : next)
+                if (n != -1 && n < end && (position == -1 || n < position))
+                    position = n;
+            return position;
+        }
+    }
+}
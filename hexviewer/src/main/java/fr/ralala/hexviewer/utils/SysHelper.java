@@ -3,10 +3,9 @@ package fr.ralala.hexviewer.utils;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import fr.ralala.hexviewer.models.Line;
@@ -28,31 +27,20 @@ public class SysHelper {
     private static final float SIZE_1KB = 0x400;
     private static final float SIZE_1MB = 0x100000;
     private static final float SIZE_1GB = 0x40000000;
-
-    /**
-     * Sorts keys.
-     *
-     * @return List<Integer>
-     */
-    public static <T> List<Integer> getMapKeys(final Map<Integer, T> map) {
-        List<Integer> sortedKeys = new ArrayList<>(map.keySet());
-        Collections.sort(sortedKeys);
-        return sortedKeys;
-    }
-
-    /**
-     * Returns the byte array.
-     *
-     * @param bytes  The source list.
-     * @param cancel Used to cancel this method.
-     * @return byte[]
-     */
-    public static byte[] toByteArray(final List<Byte> bytes, final AtomicBoolean cancel) {
-        final byte[] b = new byte[bytes.size()];
-        for (int i = 0; i < bytes.size() && (cancel == null || !cancel.get()); ++i) {
-            b[i] = bytes.get(i);
+    private static final int ASCII_COLUMN = (MAX_BY_ROW * 3) + 2; /* 2 = half line space + separator */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] VISIBLE_CHARS = new char[256];
+    /* formatLine is called for every visible row and by the search workers: each thread reuses its own row buffer. */
+    private static final ThreadLocal<char[]> ROW_BUFFER = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[MAX_BY_LINE];
         }
-        return b;
+    };
+
+    static {
+        for (int i = 0; i < VISIBLE_CHARS.length; i++)
+            VISIBLE_CHARS[i] = (i >= 0x20 && i <= 0x7e) ? (char) i : (char) 0x2e; /* 0x2e = . */
     }
 
     /**
@@ -151,6 +139,7 @@ public class SysHelper {
 
     /**
      * Formats a buffer (wireshark like).
+     * The lines are views on the buffer, so the buffer must not be modified afterwards.
      *
      * @param buffer The input buffer.
      * @param length The input buffer length.
@@ -158,33 +147,14 @@ public class SysHelper {
      * @return List<String>
      */
     public static List<LineData<Line>> formatBuffer(final byte[] buffer, final int length, AtomicBoolean cancel) throws IllegalArgumentException {
-        int len = length;
-        if (len > buffer.length)
+        if (length > buffer.length)
             throw new IllegalArgumentException("length > buffer.length");
-        StringBuilder currentLine = new StringBuilder();
-        StringBuilder currentEndLine = new StringBuilder();
-        final List<LineData<Line>> lines = new ArrayList<>();
-        final List<Byte> currentLineRaw = new ArrayList<>();
-        int currentIndex = 0;
-        int bufferIndex = 0;
-        while (len > 0) {
+        final List<LineData<Line>> lines = new ArrayList<>(length / MAX_BY_ROW + 1);
+        for (int offset = 0; offset < length; offset += MAX_BY_ROW) {
             if (cancel != null && cancel.get())
                 break;
-            final byte c = buffer[bufferIndex++];
-            currentLine.append(String.format("%02x ", c));
-            currentLineRaw.add(c);
-            /* only the visible char */
-            currentEndLine.append((c >= 0x20 && c <= 0x7e) ? (char) c : (char) 0x2e); /* 0x2e = . */
-            /* Prepare the new index. If the index is equal to MAX_BY_ROW - 1, currentLine and currentEndLine will be added to the list and then deleted. */
-            currentIndex = formatBufferPrepareLineComplete(lines, currentIndex, currentLine, currentEndLine, currentLineRaw);
-            /* add a space in the half of the line */
-            formatBufferManageHalfLine(currentIndex, currentLine, currentEndLine);
-            /* next */
-            len--;
+            lines.add(new LineData<>(new Line(buffer, offset, Math.min(MAX_BY_ROW, length - offset))));
         }
-        if (cancel != null && cancel.get())
-            return lines;
-        formatBufferAlign(lines, currentIndex, currentLine.toString(), currentEndLine.toString(), currentLineRaw);
         return lines;
     }
 
@@ -210,61 +180,46 @@ public class SysHelper {
     }
 
     /**
-     * If we get to the half of the line we add an extra space.
+     * Returns the column of the first hexadecimal digit of a byte in a formatted row.
      *
-     * @param currentIndex   The current index.
-     * @param currentLine    The current line.
-     * @param currentEndLine The end of the current line.
+     * @param index The index of the byte in the row.
+     * @return int
      */
-    private static void formatBufferManageHalfLine(final int currentIndex, final StringBuilder currentLine, final StringBuilder currentEndLine) {
-        if (currentIndex == MAX_BY_ROW / 2) {
-            currentLine.append(" ");
-            currentEndLine.append(" ");
-        }
-    }
-
-    /**
-     * Prepare the new index. If the index is equal to MAX_BY_ROW - 1, currentLine and currentEndLine will be added to the list and then deleted.
-     *
-     * @param lines          The lines.
-     * @param currentIndex   The current index.
-     * @param currentLine    The current line.
-     * @param currentEndLine The end of the current line.
-     * @param currentLineRaw The current line in raw.
-     * @return The nex index.
-     */
-    private static int formatBufferPrepareLineComplete(final List<LineData<Line>> lines, final int currentIndex, final StringBuilder currentLine, final StringBuilder currentEndLine, final List<Byte> currentLineRaw) {
-        if (currentIndex == MAX_BY_ROW - 1) {
-            lines.add(new LineData<>(new Line(currentLine + " " + currentEndLine, new ArrayList<>(currentLineRaw))));
-            currentEndLine.delete(0, currentEndLine.length());
-            currentLine.delete(0, currentLine.length());
-            currentLineRaw.clear();
-            return 0;
-        }
-        return currentIndex + 1;
+    public static int getHexColumn(final int index) {
+        return index * 3 + (index < MAX_BY_ROW / 2 ? 0 : 1);
     }
 
-
     /**
-     * Alignment of the end of a line (if the line is not complete).
+     * Formats a row: the hexadecimal values with an extra space in the half of the row,
+     * then the visible chars (the other chars are replaced by '.') starting at ASCII_COLUMN.
+     * If the row is not complete, the spaces around the visible chars are removed.
      *
-     * @param lines          The lines.
-     * @param currentIndex   The current index.
-     * @param currentLine    The current line.
-     * @param currentEndLine The end of the current line.
+     * @param buffer The input buffer.
+     * @param offset The offset of the row in the input buffer.
+     * @param count  The number of bytes in the row.
+     * @return String
      */
-    private static void formatBufferAlign(final List<LineData<Line>> lines, int currentIndex, final String currentLine, final String currentEndLine, final List<Byte> currentLineRaw) {
-        /* align 'line' */
-        int i = currentIndex;
-        if (i != 0 && (i < MAX_BY_ROW || i <= currentLine.length())) {
-            int mid = MAX_BY_ROW / 2;
-            StringBuilder off = new StringBuilder((i == mid) ? " " : "");
-            while (i++ <= MAX_BY_ROW - 1)
-                off.append((i == mid) ? "    " : "   "); /* 4 spaces ex: "00  " or 3 spaces ex: "00 " */
-            off.append("  "); /* 2 spaces separator */
-            String s = currentLine.trim();
-            lines.add(new LineData<>(new Line(s + off.toString() + currentEndLine.trim(), new ArrayList<>(currentLineRaw))));
+    public static String formatLine(final byte[] buffer, final int offset, final int count) {
+        final char[] row = ROW_BUFFER.get();
+        Arrays.fill(row, ' ');
+        for (int i = 0; i < count; i++) {
+            final int b = buffer[offset + i] & 0xFF;
+            final int half = i < MAX_BY_ROW / 2 ? 0 : 1;
+            final int col = getHexColumn(i);
+            row[col] = HEX_DIGITS[b >>> 4];
+            row[col + 1] = HEX_DIGITS[b & 0x0F];
+            row[ASCII_COLUMN + i + half] = VISIBLE_CHARS[b];
         }
+        if (count == MAX_BY_ROW)
+            return new String(row, 0, MAX_BY_LINE);
+        int start = ASCII_COLUMN;
+        int end = ASCII_COLUMN + count + (count > MAX_BY_ROW / 2 ? 1 : 0);
+        while (start < end && row[start] == ' ')
+            start++;
+        while (end > start && row[end - 1] == ' ')
+            end--;
+        System.arraycopy(row, start, row, ASCII_COLUMN, end - start);
+        return new String(row, 0, ASCII_COLUMN + end - start);
     }
 
     /**
@@ -34,6 +34,8 @@ import android.annotation.SuppressLint;
 
 import com.mcal.elfeditor.io.LEDataInputStream;
 import com.mcal.elfeditor.io.LEDataOutputStream;
+import com.mcal.elfeditor.utils.StringExtractor;
+import com.mcal.elfeditor.utils.TsvTranslations;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -45,8 +47,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UnknownFormatConversionException;
 
 public class Elf implements Closeable {
@@ -58,6 +69,7 @@ public class Elf implements Closeable {
     public static final String SHN_DYNSYM = ".dynsym";
     public static final String SHN_DYNSTR = ".dynstr";
     public static final String SHN_HASH = ".hash";
+    public static final String SHN_GNU_HASH = ".gnu.hash";
     public static final String SHN_RODATA = ".rodata";
     public static final String SHN_TEXT = ".text";
     public static final String SHN_DYNAMIC = ".dynamic";
@@ -81,6 +93,11 @@ public class Elf implements Closeable {
     final static int SHT_HASH = 5; // Symbol hash table.
     final static int SHT_DYNAMIC = 6; // Information for dynamic linking.;
     final static int SHT_DYNSYM = 11; // Symbol table.;
+    final static int SHT_REL = 9; // Relocation entries; no explicit addends.
+    final static int SHT_ANDROID_REL = 0x60000001; // Android packed relocation entries.
+    final static int SHT_ANDROID_RELA = 0x60000002; // Android packed relocation entries; explicit addends.
+    final static int SHT_GNU_VERSYM = 0x6fffffff; // Symbol versions.
+    final static int EM_MIPS = 8;
     // --- Begin program header ---
     // Segment types.
     final static int PT_NULL = 0; // Unused segment.
@@ -110,138 +127,142 @@ public class Elf implements Closeable {
     Elf_Sym[] mHashSymbols;
     byte[] mDynStringTable;
     byte[] mDynHashTable;
-    private byte[] mRoDataStringTable;
-    private int num_buckets;
-    // semantics.
-    private int num_chains;
-    // These could probably be memoized.
-    private int[] buckets;
-    private int[] chains;
+    private ByteBuffer mRoData; // .rodata，映射模式下是文件映射的一部分，不复制
+    // 原字符串到条目的索引，重复的字符串只记录第一个
+    private Map<String, ItemHelper> mDyIndex;
+    private Map<String, ItemHelper> mRoIndex;
+    // 各符号名在mDynStringTable中的偏移，按符号索引排列
+    private int[] mDynNameOffsets;
+    private ElfHash.SysV mSysvHash;
+    private ElfHash.Gnu mGnuHash;
+    // 用来存放变长的字符串，为null时不能追加新段
+    private ElfRelayout mRelayout;
     private boolean error; // 解析时是否有错误
+    private boolean mHashDegraded; // .gnu.hash是否退化成只有一个桶
 
     public Elf(ByteArrayInputStream bis) throws IOException, UnknownFormatConversionException {
+        this(new LEDataInputStream(bis));
+    }
+
+    private Elf(LEDataInputStream reader) throws IOException, UnknownFormatConversionException {
         dy_items = new ArrayList<>();
-        final LEDataInputStream r = mReader = new LEDataInputStream(bis);
-        r.readFully(e_ident);
-        if (!checkMagic()) {
-            throw new UnknownFormatConversionException("Invalid elf magic");
-        }
-        r.setIsLittleEndian(isLittleEndian());
+        final LEDataInputStream r = mReader = reader;
+        try {
+            r.readFully(e_ident);
+            if (!checkMagic()) {
+                throw new UnknownFormatConversionException("Invalid elf magic");
+            }
+            r.setIsLittleEndian(isLittleEndian());
 
-        final boolean is64bit = is64bit();
-        if (is64bit) {
-            Elf64_Ehdr header = new Elf64_Ehdr();
-            header.e_type = r.readShort();
-            header.e_machine = r.readShort();
-            header.e_version = r.readInt();
-            header.e_entry = r.readLong();
-            header.e_phoff = r.readLong();
-            header.e_shoff = r.readLong();
-            mHeader = header;
-        } else {
-            Elf32_Ehdr header = new Elf32_Ehdr();
-            header.e_type = r.readShort();
-            header.e_machine = r.readShort();
-            header.e_version = r.readInt();
-            header.e_entry = r.readInt();
-            header.e_phoff = r.readInt();
-            header.e_shoff = r.readInt();
-            mHeader = header;
-        }
-        final Ehdr h = mHeader;
-        h.e_flags = r.readInt();
-        h.e_ehsize = r.readShort();
-        h.e_phentsize = r.readShort();
-        h.e_phnum = r.readShort();
-        h.e_shentsize = r.readShort();
-        h.e_shnum = r.readShort();
-        h.e_shstrndx = r.readShort();
-
-        mSectionHeaders = new Elf_Shdr[h.e_shnum];
-        for (int i = 0; i < h.e_shnum; i++) {
-            final long offset = h.getSectionOffset() + (i * h.e_shentsize);
-            // Logger.write(" h.getSectionOffset()=" + h.getSectionOffset() +
-            // "\n");
-            // Logger.write("h.e_shentsize=" + h.e_shentsize + "\n");
-            r.seek(offset);
+            final boolean is64bit = is64bit();
             if (is64bit) {
-                Elf64_Shdr secHeader = new Elf64_Shdr();
-                secHeader.sh_name = r.readInt();
-                secHeader.sh_type = r.readInt();
-                secHeader.sh_flags = r.readLong();
-                secHeader.sh_addr = r.readLong();
-                secHeader.sh_offset = r.readLong();
-                secHeader.sh_size = r.readLong();
-                secHeader.sh_link = r.readInt();
-                secHeader.sh_info = r.readInt();
-                secHeader.sh_addralign = r.readLong();
-                secHeader.sh_entsize = r.readLong();
-                secHeader.index = i;
-                mSectionHeaders[i] = secHeader;
+                Elf64_Ehdr header = new Elf64_Ehdr();
+                header.e_type = r.readShort();
+                header.e_machine = r.readShort();
+                header.e_version = r.readInt();
+                header.e_entry = r.readLong();
+                header.e_phoff = r.readLong();
+                header.e_shoff = r.readLong();
+                mHeader = header;
             } else {
-                Elf32_Shdr secHeader = new Elf32_Shdr();
-                secHeader.sh_name = r.readInt();
-                secHeader.sh_type = r.readInt();
-                secHeader.sh_flags = r.readInt();
-                secHeader.sh_addr = r.readInt();
-                secHeader.sh_offset = r.readInt();
-                secHeader.sh_size = r.readInt();
-                secHeader.sh_link = r.readInt();
-                secHeader.sh_info = r.readInt();
-                secHeader.sh_addralign = r.readInt();
-                secHeader.sh_entsize = r.readInt();
-                secHeader.index = i;
-                mSectionHeaders[i] = secHeader;
+                Elf32_Ehdr header = new Elf32_Ehdr();
+                header.e_type = r.readShort();
+                header.e_machine = r.readShort();
+                header.e_version = r.readInt();
+                header.e_entry = r.readInt();
+                header.e_phoff = r.readInt();
+                header.e_shoff = r.readInt();
+                mHeader = header;
             }
-        }
-        if (h.e_shstrndx > -1 && h.e_shstrndx < mSectionHeaders.length) {
-            Elf_Shdr strSec = mSectionHeaders[h.e_shstrndx];
-            // Logger.write("lastoff=" +strSec.getOffset() + "\n" );
-            if (strSec.sh_type == SHT_STRTAB) {
-                int strSecSize = strSec.getSize();
-                mStringTable = new byte[strSecSize];
-                r.seek(strSec.getOffset());
-                r.readFully(mStringTable);
-                for (Elf_Shdr sec : mSectionHeaders) {
-                    // Logger.write(getString(sec.sh_name));
-                    System.out.println(getString(sec.sh_name));
+            final Ehdr h = mHeader;
+            h.e_flags = r.readInt();
+            h.e_ehsize = r.readShort();
+            h.e_phentsize = r.readShort();
+            h.e_phnum = r.readShort();
+            h.e_shentsize = r.readShort();
+            h.e_shnum = r.readShort();
+            h.e_shstrndx = r.readShort();
+
+            mSectionHeaders = new Elf_Shdr[h.e_shnum];
+            for (int i = 0; i < h.e_shnum; i++) {
+                final long offset = h.getSectionOffset() + (i * h.e_shentsize);
+                // Logger.write(" h.getSectionOffset()=" + h.getSectionOffset() +
+                // "\n");
+                // Logger.write("h.e_shentsize=" + h.e_shentsize + "\n");
+                r.seek(offset);
+                if (is64bit) {
+                    Elf64_Shdr secHeader = new Elf64_Shdr();
+                    secHeader.sh_name = r.readInt();
+                    secHeader.sh_type = r.readInt();
+                    secHeader.sh_flags = r.readLong();
+                    secHeader.sh_addr = r.readLong();
+                    secHeader.sh_offset = r.readLong();
+                    secHeader.sh_size = r.readLong();
+                    secHeader.sh_link = r.readInt();
+                    secHeader.sh_info = r.readInt();
+                    secHeader.sh_addralign = r.readLong();
+                    secHeader.sh_entsize = r.readLong();
+                    secHeader.index = i;
+                    mSectionHeaders[i] = secHeader;
+                } else {
+                    Elf32_Shdr secHeader = new Elf32_Shdr();
+                    secHeader.sh_name = r.readInt();
+                    secHeader.sh_type = r.readInt();
+                    secHeader.sh_flags = r.readInt();
+                    secHeader.sh_addr = r.readInt();
+                    secHeader.sh_offset = r.readInt();
+                    secHeader.sh_size = r.readInt();
+                    secHeader.sh_link = r.readInt();
+                    secHeader.sh_info = r.readInt();
+                    secHeader.sh_addralign = r.readInt();
+                    secHeader.sh_entsize = r.readInt();
+                    secHeader.index = i;
+                    mSectionHeaders[i] = secHeader;
+                }
+            }
+            if (h.e_shstrndx > -1 && h.e_shstrndx < mSectionHeaders.length) {
+                Elf_Shdr strSec = mSectionHeaders[h.e_shstrndx];
+                // Logger.write("lastoff=" +strSec.getOffset() + "\n" );
+                if (strSec.sh_type == SHT_STRTAB) {
+                    int strSecSize = strSec.getSize();
+                    mStringTable = new byte[strSecSize];
+                    r.seek(strSec.getOffset());
+                    r.readFully(mStringTable);
+                } else {
+                    throw new UnknownFormatConversionException("Wrong string section e_shstrndx=" + h.e_shstrndx);
                 }
             } else {
-                throw new UnknownFormatConversionException("Wrong string section e_shstrndx=" + h.e_shstrndx);
+                throw new UnknownFormatConversionException("Invalid e_shstrndx=" + h.e_shstrndx);
             }
-        } else {
-            throw new UnknownFormatConversionException("Invalid e_shstrndx=" + h.e_shstrndx);
-        }
-        try {
-            if (!readMore(dy_items)) {
+            try {
+                if (!readMore(dy_items)) {
+                    error = true;
+                }
+            } catch (OutOfMemoryError e) {
                 error = true;
             }
-        } catch (OutOfMemoryError e) {
-            error = true;
+        } catch (IOException | RuntimeException e) {
+            // 解析失败时释放映射的文件
+            r.close();
+            throw e;
         }
     }
 
     public Elf(ByteArrayInputStream bis, ResourceCallBack callBack) throws IOException, UnknownFormatConversionException {
         this(bis);
-        for (ItemHelper item : this.dy_items) {
-            ResourceHelper helper = new ResourceHelper();
-            helper.VALUE = item.oldval;
-            helper.TYPE = "dynstr";
-            callBack.back(helper);
-        }
-        if (this.mRoDataStringTable != null) {
-            for (ItemHelper item : this.ro_items) {
-                ResourceHelper helper = new ResourceHelper();
-                helper.VALUE = item.oldval;
-                helper.TYPE = "rodata";
-                callBack.back(helper);
-            }
-        }
+        report(callBack);
+    }
 
+    /**
+     * 以内存映射的方式解析文件
+     */
+    public Elf(File file, ResourceCallBack callBack) throws IOException, UnknownFormatConversionException {
+        this(file);
+        report(callBack);
     }
 
     public Elf(File file) throws IOException, UnknownFormatConversionException {
-        this(new ByteArrayInputStream(readFile(file)));
+        this(new LEDataInputStream(file));
     }
 
     public Elf(String file) throws IOException, UnknownFormatConversionException {
@@ -255,6 +276,23 @@ public class Elf implements Closeable {
         }
     }
 
+    private void report(ResourceCallBack callBack) {
+        for (ItemHelper item : this.dy_items) {
+            ResourceHelper helper = new ResourceHelper();
+            helper.VALUE = item.oldval;
+            helper.TYPE = "dynstr";
+            callBack.back(helper);
+        }
+        if (this.mRoData != null) {
+            for (ItemHelper item : this.ro_items) {
+                ResourceHelper helper = new ResourceHelper();
+                helper.VALUE = item.oldval;
+                helper.TYPE = "rodata";
+                callBack.back(helper);
+            }
+        }
+    }
+
     /**
      * 克隆ELF
      *
@@ -323,13 +361,14 @@ public class Elf implements Closeable {
      * 在内存中搜索数据
      **/
     public static int findBytesPos(byte[] data, byte[] found) {
-        for (int i = 0; i < data.length; i++) {
-            boolean bFound = true;
-            for (int j = 0; j < found.length; j++)
-                bFound = bFound && data[i + j] == found[j];
-            if (bFound) {
-                return i;
+        outer:
+        for (int i = 0; i <= data.length - found.length; i++) {
+            for (int j = 0; j < found.length; j++) {
+                if (data[i + j] != found[j]) {
+                    continue outer;
+                }
             }
+            return i;
         }
         return -1;
     }
@@ -343,33 +382,19 @@ public class Elf implements Closeable {
         mReader.close();
     }
 
-    private String fillString(String string, int length) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(string);
-        if (string.length() < length) {
-            int remaining = length - string.length();
-            while (remaining-- > 0) {
-                sb.append(" ");
-            }
-        }
-        return sb.toString();
-    }
-
     /**
      * 查找是否有这个符号,同时返回索引
      */
     public int find(String str) {
-        long hash = ELFHash(str);
-        if (num_buckets != 0) {
-            for (int i = buckets[(int) (hash % num_buckets)]; i != 0; i = chains[i]) {
-                Elf_Sym ds = mDynamicSymbols[i];
-                String string = getDynString(ds.st_name);
-                System.out.println(string);
-                if (string.equals(str)) {
-                    //Logger.write("str=" + str + " " + "pos=" + i + "\n");
-                    return i;
-                }
-            }
+        if (mDynNameOffsets == null) {
+            return -1;
+        }
+        byte[] name = str.getBytes();
+        if (mGnuHash != null) {
+            return mGnuHash.find(name, mDynStringTable, mDynNameOffsets);
+        }
+        if (mSysvHash != null) {
+            return mSysvHash.find(name, mDynStringTable, mDynNameOffsets);
         }
         return -1;
     }
@@ -440,21 +465,6 @@ public class Elf implements Closeable {
         final LEDataInputStream r = mReader;
         final boolean is64bit = is64bit();
 
-        //读取Hash表
-        Elf_Shdr dyhash = getSectionByName(SHN_HASH);
-        if (dyhash != null) {
-            r.seek(dyhash.getOffset());
-            num_buckets = r.readInt();
-            num_chains = r.readInt();
-            buckets = r.readIntArray(num_buckets);
-            chains = r.readIntArray(num_chains);
-            int actual = num_buckets * 4 + num_chains * 4 + 8;
-            if (dyhash.getSize() != actual) {
-                throw new IOException("Error reading string table (read " + actual + "bytes, expected to " + "read "
-                        + dyhash.getSize() + "bytes).");
-            }
-        }
-
         Elf_Shdr dynsym = getSectionByName(SHN_DYNSYM);
         if (dynsym != null) {
             r.seek(dynsym.getOffset());
@@ -489,22 +499,47 @@ public class Elf implements Closeable {
                 }
             }
 
+            mDynNameOffsets = new int[len];
+            for (int i = 0; i < len; i++) {
+                mDynNameOffsets[i] = mDynamicSymbols[i].st_name;
+            }
+
+            //读取Hash表
+            Elf_Shdr dyhash = getSectionByName(SHN_HASH);
+            if (dyhash != null) {
+                r.seek(dyhash.getOffset());
+                mSysvHash = ElfHash.SysV.read(r, dyhash.getSize());
+            }
+            Elf_Shdr gnuHash = getSectionByName(SHN_GNU_HASH);
+            if (gnuHash != null) {
+                r.seek(gnuHash.getOffset());
+                mGnuHash = ElfHash.Gnu.read(r, gnuHash.getSize(), is64bit, len);
+            }
+
             Elf_Shdr dynLinkSec = mSectionHeaders[dynsym.sh_link];
             r.seek(dynLinkSec.getOffset());
             mDynStringTable = new byte[dynLinkSec.getSize()];
             r.readFully(mDynStringTable);
 
-            String string = new String(mDynStringTable);
-            String[] mDyStrs = string.split("\0");
-            for (String mDyStr : mDyStrs) {
-                if (mDyStr.length() == 0) {
-                    continue;
+            int end = 0;
+            while (end < mDynStringTable.length) {
+                while (end < mDynStringTable.length && mDynStringTable[end] == 0) {
+                    end++;
+                }
+                int start = end;
+                while (end < mDynStringTable.length && mDynStringTable[end] != 0) {
+                    end++;
+                }
+                if (end == start) {
+                    break;
                 }
                 ItemHelper item = new ItemHelper();
-                item.oldval = mDyStr;
+                item.oldval = new String(mDynStringTable, start, end - start);
+                item.offset = start;
                 items.add(item);
-                item.sym_offset = find(mDyStr);
+                item.sym_offset = find(item.oldval);
             }
+            mDyIndex = buildIndex(items);
         }
 
 
@@ -515,12 +550,12 @@ public class Elf implements Closeable {
             if (is64bit) {
                 Elf64_Phdr progHeader = new Elf64_Phdr();
                 progHeader.p_type = r.readInt();
-                progHeader.p_offset = r.readInt();
+                progHeader.p_flags = r.readInt(); // ELF64中p_flags紧跟在p_type之后
+                progHeader.p_offset = (int) r.readLong();
                 progHeader.p_vaddr = r.readLong();
                 progHeader.p_paddr = r.readLong();
                 progHeader.p_filesz = r.readLong();
                 progHeader.p_memsz = r.readLong();
-                progHeader.p_flags = r.readLong();
                 progHeader.p_align = r.readLong();
                 mProgHeaders[i] = progHeader;
             } else {
@@ -539,107 +574,258 @@ public class Elf implements Closeable {
 
         Elf_Shdr roData = getSectionByName(SHN_RODATA);
         if (roData != null) {
-            r.seek(roData.getOffset());
-            mRoDataStringTable = new byte[roData.getSize()];
-            r.readFully(mRoDataStringTable);
-            ro_items = new ArrayList<ItemHelper>();
-
-            int end = 0;
-            while (end != mRoDataStringTable.length) {
-                while (end != mRoDataStringTable.length && mRoDataStringTable[end++] == 0)
-                    ; // 去除开头可能的结尾
-                int start = end;
-                //对于字符串末尾有空格的情况，也要一同取出，空格ascii是20,而0是结尾
-                while (end != mRoDataStringTable.length && mRoDataStringTable[end++] != 0)
-                    ;
+            if (r.isMapped()) {
+                mRoData = r.slice(roData.getOffset(), roData.getSize());
+            } else {
+                byte[] data = new byte[roData.getSize()];
+                r.seek(roData.getOffset());
+                r.readFully(data);
+                mRoData = ByteBuffer.wrap(data);
+            }
+            // 跳过二进制数据，只保留字符串的偏移和长度
+            StringExtractor.Result strings = new StringExtractor().extract(mRoData);
+            ro_items = new ArrayList<ItemHelper>(strings.size());
+            for (int i = 0; i < strings.size(); i++) {
                 ItemHelper item = new ItemHelper();
-                item.oldval = new String(mRoDataStringTable, start - 1, end - start);
-                item.data = new byte[end - start];
-                System.arraycopy(mRoDataStringTable, start - 1, item.data, 0, item.data.length);
+                item.offset = strings.getOffset(i);
+                item.length = strings.getLength(i);
+                item.utf16 = strings.getEncoding(i) == StringExtractor.UTF16LE;
+                byte[] bytes = new byte[item.length];
+                ByteBuffer view = mRoData.duplicate();
+                view.position(item.offset);
+                view.get(bytes);
+                item.oldval = new String(bytes, item.utf16 ? StandardCharsets.UTF_16LE : StandardCharsets.UTF_8);
                 ro_items.add(item);
             }
+            mRoIndex = buildIndex(ro_items);
+        }
+        try {
+            mRelayout = new ElfRelayout(this);
+        } catch (IOException | RuntimeException e) {
+            // 无法识别程序头或重定位时，字符串只能在原位置修改
+            mRelayout = null;
         }
         return true;
     }
 
     public long ELFHash(String strUri) {
-        long hash = 0;
-        long x = 0;
-        for (int i = 0; i < strUri.length(); i++) {
-            hash = (hash << 4) + strUri.charAt(i);
-            if ((x = hash & 0xF0000000L) != 0) {
-                hash ^= (x >> 24);
-                hash &= ~x;
+        byte[] name = strUri.getBytes();
+        byte[] s = new byte[name.length + 1];
+        System.arraycopy(name, 0, s, 0, name.length);
+        return ElfHash.sysv(s, 0) & 0x7FFFFFFF;
+    }
+
+    /**
+     * 生成修改后的符号名表。不超过原长度的字符串在原位置修改，后面补0；
+     * 更长的字符串追加到表的末尾，原位置保持不变
+     *
+     * @param moved 不为null时记录被追加的字符串的原偏移和新偏移，为null时更长的字符串被截断
+     */
+    private byte[] buildDynStringTable(Map<Integer, Integer> moved) {
+        byte[] table = mDynStringTable.clone();
+        ByteArrayOutputStream extra = new ByteArrayOutputStream();
+        for (ItemHelper item : dy_items) {
+            if (item.newVal == null || item.newVal.equals("") || item.offset == -1) {
+                continue;
+            }
+            int end = item.offset;
+            while (end < mDynStringTable.length && mDynStringTable[end] != 0) {
+                end++;
+            }
+            int oldLength = end - item.offset;
+            byte[] data = item.newVal.getBytes();
+            if (data.length > oldLength && moved != null) {
+                moved.put(item.offset, table.length + extra.size());
+                extra.write(data, 0, data.length);
+                extra.write(0);
+                continue;
             }
+            // 超出原长度的部分会覆盖后面的符号名，只写入原长度
+            int len = truncateUtf8(data, oldLength);
+            System.arraycopy(data, 0, table, item.offset, len);
+            Arrays.fill(table, item.offset + len, end, (byte) 0);
+        }
+        if (extra.size() == 0) {
+            return table;
         }
-        return (hash & 0x7FFFFFFF);
+        byte[] grown = Arrays.copyOf(table, table.length + extra.size());
+        System.arraycopy(extra.toByteArray(), 0, grown, table.length, extra.size());
+        return grown;
     }
 
     /**
-     * 写入符号表hash
+     * 截断到不超过max字节，不拆开多字节字符
      */
-    private void writeDynHash(List<ItemHelper> items, LEDataOutputStream lmOut) throws IOException {
-        lmOut.writeInt(num_buckets);
-        lmOut.writeInt(num_chains);
-        int[] buckets_t = new int[num_buckets];
-        int[] chains_t = new int[num_chains];
+    private static int truncateUtf8(byte[] data, int max) {
+        if (data.length <= max) {
+            return data.length;
+        }
+        int len = max;
+        while (len > 0 && (data[len] & 0xc0) == 0x80) {
+            len--;
+        }
+        return len;
+    }
 
-        for (ItemHelper item : items) {
-            //没有符号索引，说明该字符串不是符号表中的
-            if (item.sym_offset == -1) {
-                continue;
+    /**
+     * 修改.dynstr，更长的符号名使整个表被移到新段中，同时修改.dynsym中的st_name
+     */
+    private void writeDynStrings(List<Region> regions, ElfRelayout relayout) throws IOException {
+        Elf_Shdr dynsym = getSectionByName(SHN_DYNSYM);
+        Elf_Shdr dynLinkSec = mSectionHeaders[dynsym.sh_link];
+        Map<Integer, Integer> moved = new HashMap<>();
+        byte[] strtab = buildDynStringTable(relayout != null ? moved : null);
+        int[] names = mDynNameOffsets;
+        if (moved.isEmpty()) {
+            regions.add(new Region(dynLinkSec.getOffset(), strtab)); // 符号名
+        } else {
+            names = names.clone();
+            for (int i = 0; i < names.length; i++) {
+                Integer offset = moved.get(names[i]);
+                if (offset != null) {
+                    names[i] = offset;
+                }
+            }
+            long addr = relayout.append(strtab, 1);
+            relayout.moveSection(dynLinkSec, addr, strtab.length);
+            relayout.setStringTable(addr, strtab.length, moved);
+            regions.add(new Region(dynsym.getOffset(), buildDynSymbols(dynsym, names)));
+        }
+        final ByteOrder order = isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        Elf_Shdr gnuHash = getSectionByName(SHN_GNU_HASH);
+        if (gnuHash != null && mGnuHash != null) {
+            // .gnu.hash要求符号按桶排列，新的符号名打乱了顺序时需要重排.dynsym
+            int[] sorted = mGnuHash.sortOrder(strtab, names);
+            if (sorted != null) {
+                if (canSortDynSymbols(dynsym)) {
+                    names = sortDynSymbols(regions, dynsym, names, sorted);
+                } else {
+                    mHashDegraded = true;
+                }
             }
-            int offset = (int) (ELFHash(item.newVal == null ? item.oldval : item.newVal) % num_buckets);
+            regions.add(new Region(gnuHash.getOffset(), mGnuHash.rebuild(strtab, names, order)));
+        }
+        Elf_Shdr dyhash = getSectionByName(SHN_HASH);
+        if (dyhash != null && mSysvHash != null) {
+            regions.add(new Region(dyhash.getOffset(), mSysvHash.rebuild(strtab, names, order)));
+        }
+    }
 
-            if (buckets_t[offset] == 0) {
-                buckets_t[offset] = item.sym_offset;
-            } else {
-                for (offset = buckets_t[offset]; offset != 0; offset = chains_t[offset]) {
-                    if (chains_t[offset] == 0) {
-                        chains_t[offset] = item.sym_offset;
-                        break;
-                    }
+    /**
+     * 重排.dynsym需要修改所有引用符号索引的地方。MIPS的.dynsym顺序与GOT对应，
+     * 压缩重定位(APS2)无法修改，未指明符号表的重定位无法确定引用的是哪个符号表，这些情况下不能重排
+     */
+    private boolean canSortDynSymbols(Elf_Shdr dynsym) {
+        if (mHeader.e_machine == EM_MIPS || mGnuHash.getSymOffset() < dynsym.sh_info) {
+            return false;
+        }
+        for (Elf_Shdr section : mSectionHeaders) {
+            if (section.sh_type == SHT_ANDROID_REL || section.sh_type == SHT_ANDROID_RELA) {
+                return false;
+            }
+            if ((section.sh_type == SHT_REL || section.sh_type == SHT_RELA) && section.sh_link == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    /**
+     * 按sorted重排.dynsym和.gnu.version，并修改重定位中的符号索引
+     *
+     * @param sorted sorted[新索引]=原索引
+     * @return 重排后的符号名
+     */
+    private int[] sortDynSymbols(List<Region> regions, Elf_Shdr dynsym, int[] names, int[] sorted)
+            throws IOException {
+        final ByteOrder order = isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        final int count = sorted.length;
+        int[] inverse = new int[count];
+        int[] sortedNames = new int[count];
+        for (int i = 0; i < count; i++) {
+            inverse[sorted[i]] = i;
+            sortedNames[i] = names[sorted[i]];
+        }
+        // .dynsym
+        final int entSize = is64bit() ? 24 : 16;
+        byte[] symbols = readSection(dynsym);
+        byte[] data = symbols.clone();
+        ByteBuffer buf = ByteBuffer.wrap(data).order(order);
+        for (int i = 0; i < count && (i + 1) * entSize <= data.length; i++) {
+            System.arraycopy(symbols, sorted[i] * entSize, data, i * entSize, entSize);
+            buf.putInt(i * entSize, sortedNames[i]);
+        }
+        for (Iterator<Region> it = regions.iterator(); it.hasNext(); ) {
+            if (it.next().offset == dynsym.getOffset()) {
+                it.remove(); // 只修改了st_name的.dynsym
+            }
+        }
+        regions.add(new Region(dynsym.getOffset(), data));
+        for (Elf_Shdr section : mSectionHeaders) {
+            if (section.sh_type == SHT_GNU_VERSYM && section.sh_link == dynsym.index) {
+                // .gnu.version
+                byte[] versions = readSection(section);
+                byte[] sortedVersions = versions.clone();
+                for (int i = 0; i < count && (i + 1) * 2 <= versions.length; i++) {
+                    System.arraycopy(versions, sorted[i] * 2, sortedVersions, i * 2, 2);
                 }
+                regions.add(new Region(section.getOffset(), sortedVersions));
+            } else if ((section.sh_type == SHT_REL || section.sh_type == SHT_RELA) && section.sh_link == dynsym.index) {
+                // 重定位，r_info中的符号索引
+                final int wordSize = is64bit() ? 8 : 4;
+                final int relSize = wordSize * (section.sh_type == SHT_RELA ? 3 : 2);
+                byte[] relocations = readSection(section);
+                ByteBuffer rel = ByteBuffer.wrap(relocations).order(order);
+                for (int pos = wordSize; pos + wordSize <= relocations.length; pos += relSize) {
+                    if (is64bit()) {
+                        long info = rel.getLong(pos);
+                        int sym = (int) (info >>> 32);
+                        if (sym < count) {
+                            rel.putLong(pos, (long) inverse[sym] << 32 | (info & 0xffffffffL));
+                        }
+                    } else {
+                        int info = rel.getInt(pos);
+                        int sym = info >>> 8;
+                        if (sym < count) {
+                            rel.putInt(pos, inverse[sym] << 8 | (info & 0xff));
+                        }
+                    }
+                }
+                regions.add(new Region(section.getOffset(), relocations));
             }
         }
-        lmOut.writeIntArray(buckets_t);
-        lmOut.writeIntArray(chains_t);
+        return sortedNames;
     }
 
     /**
-     * 写符号名
-     *
-     * @return 写入的实际大小
-     ***/
-    private long writeDynString(List<ItemHelper> items, LEDataOutputStream lmOut) throws IOException {
+     * 保存时.gnu.hash是否因无法重排.dynsym而退化成只有一个桶，此时符号查找变慢
+     */
+    public boolean isHashDegraded() {
+        return mHashDegraded;
+    }
 
-        long offset = 0;
-        long len = 0;
-        for (ItemHelper item : items) {
-            String old_string = item.oldval;
-            if (old_string.equals("SHN_UNDEF"))
-                continue;
-            // String new_string = item.newVal;
-            lmOut.writeByte((byte) '\0');
-            byte[] data = old_string.getBytes();
-            offset += data.length; // 切勿调换顺序
-
-            if (item.newVal != null) {
-                item.newVal = fillString(item.newVal, item.oldval.length());
-                data = item.newVal.getBytes();
+    private byte[] readSection(Elf_Shdr section) throws IOException {
+        byte[] data = new byte[section.getSize()];
+        mReader.seek(section.getOffset());
+        mReader.readFully(data);
+        return data;
+    }
+
+    /**
+     * 读取.dynsym并替换各符号的st_name
+     */
+    private byte[] buildDynSymbols(Elf_Shdr dynsym, int[] names) throws IOException {
+        byte[] data = new byte[dynsym.getSize()];
+        mReader.seek(dynsym.getOffset());
+        mReader.readFully(data);
+        ByteBuffer buf = ByteBuffer.wrap(data).order(isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        final int entSize = is64bit() ? 24 : 16;
+        for (int i = 0; i < names.length && (i + 1) * entSize <= data.length; i++) {
+            if (names[i] != mDynNameOffsets[i]) {
+                buf.putInt(i * entSize, names[i]);
             }
-            len += data.length;
-            lmOut.writeFully(data);
-            offset += 1;
-            len += 1;
-        }
-        // 写入余下部分
-        if (mDynStringTable.length - (int) offset <= 0)
-            return len;
-        lmOut.writeFully(mDynStringTable, (int) offset, mDynStringTable.length - (int) offset);
-        len += mDynStringTable.length - (int) offset;
-        return len;
+        }
+        return data;
     }
 
     /**
@@ -649,50 +835,104 @@ public class Elf implements Closeable {
      ****/
     public final void writeELF(OutputStream os) throws IOException {
         final LEDataOutputStream lmOut = new LEDataOutputStream(os);
-        Elf_Shdr dynsym = getSectionByName(SHN_DYNSYM);
-        Elf_Shdr dynLinkSec = mSectionHeaders[dynsym.sh_link];
-        long offset = dynLinkSec.getOffset();
-        Elf_Shdr dyhash = getSectionByName(SHN_HASH);
-        long offset2 = dyhash.getOffset();
-        // 需要注意的是哪个段在前，不是所有的elf文件段都是一样顺序的
-        if (offset > offset2) {
-            writeExtra(0, offset2, lmOut); // 写入前面部分
-            writeDynHash(dy_items, lmOut); // 写入符号名hash
-
-            offset2 += num_buckets * 4 + num_chains * 4 + 8;
-            writeExtra(offset2, offset, lmOut); // 写入符号名和符号名hash之间的数据
-            offset2 = offset;
-            writeDynString(dy_items, lmOut); // 写入符号名
-            offset2 += mDynStringTable.length;
-            offset = offset2;
-        } else {
-            writeExtra(0, offset, lmOut); // 写入前面部分
-            writeDynString(dy_items, lmOut); // 写入符号名
-            offset += mDynStringTable.length;
-            writeExtra(offset, offset2, lmOut); // 写入符号名和符号名hash之间的数据
-            offset = offset2;
-            writeDynHash(dy_items, lmOut); // 写入符号名hash
-            offset += num_buckets * 4 + num_chains * 4 + 8;
+        // 变长的字符串放到文件末尾的新段中
+        final ElfRelayout relayout = mRelayout != null && mRelayout.canAppend() ? mRelayout : null;
+        // 需要重写的区域，按偏移排序后依次写入，不依赖各个段在文件中的顺序
+        List<Region> regions = new ArrayList<>();
+        if (hasChanges(dy_items)) {
+            writeDynStrings(regions, relayout);
         }
         // 写RoData
         Elf_Shdr roData = getSectionByName(SHN_RODATA);
         if (roData != null) {
-            writeExtra(offset, roData.getOffset(), lmOut);
-            offset = roData.getOffset();
-            writeRodataBytes();
-            lmOut.writeFully(mRoDataStringTable);
-            offset += mRoDataStringTable.length;
+            writeRodataBytes(regions, relayout, roData);
+        }
+        if (relayout != null) {
+            for (Region region : relayout.finish()) {
+                addRegion(regions, region);
+            }
+        }
+        Collections.sort(regions, (a, b) -> Long.compare(a.offset, b.offset));
+        // 部分重叠的区域会被写两次，使后面的偏移全部错位，写入前检查，不输出损坏的文件
+        long end = 0;
+        for (Region region : regions) {
+            if (region.offset < end) {
+                throw new IOException("Overlapping regions at offset " + region.offset + " (previous region ends at "
+                        + end + ").");
+            }
+            end = region.offset + region.data.length;
         }
 
+        long offset = 0;
+        for (Region region : regions) {
+            writeExtra(offset, region.offset, lmOut); // 写入两个区域之间的数据
+            lmOut.writeFully(region.data);
+            offset = region.offset + region.data.length;
+        }
         writeExtra(offset, mReader.size, lmOut); // 写入余下部分
         lmOut.close();
         close();
     }
 
+    /**
+     * 完全落在已有区域中的小块修改(如重定位中的指针)直接写入该区域，部分重叠的修改由writeELF拒绝
+     */
+    private static void addRegion(List<Region> regions, Region patch) {
+        for (Region region : regions) {
+            if (patch.offset >= region.offset && patch.offset + patch.data.length <= region.offset + region.data.length) {
+                System.arraycopy(patch.data, 0, region.data, (int) (patch.offset - region.offset), patch.data.length);
+                return;
+            }
+        }
+        regions.add(patch);
+    }
+
+    /**
+     * 字符串是否可以比原来更长。.dynstr可以整个移到新段；
+     * .rodata中的字符串只有被RELATIVE重定位引用时才能移动，代码中的引用无法修改
+     */
+    public boolean isResizable(List<ItemHelper> items, String oldval) {
+        if (mRelayout == null || !mRelayout.canAppend() || items == null) {
+            return false;
+        }
+        if (items == dy_items) {
+            return true;
+        }
+        Elf_Shdr roData = getSectionByName(SHN_RODATA);
+        ItemHelper item = findItem(items, oldval);
+        return items == ro_items && roData != null && item != null && item.offset != -1
+                && mRelayout.isReferenced(roData.getAddr() + item.offset);
+    }
+
+    private static boolean hasChanges(List<ItemHelper> items) {
+        if (items == null) {
+            return false;
+        }
+        for (ItemHelper item : items) {
+            if (item.newVal != null && !item.newVal.equals("")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 原样复制未修改的数据，能直接通过文件通道复制时不经过堆内存
+     */
     private void writeExtra(long offset1, long offset2, LEDataOutputStream lmOut) throws IOException {
         long len = offset2 - offset1;
         if (len <= 0)
             return;
+        FileChannel in = mReader.getChannel();
+        if (in != null && in.isOpen() && lmOut.getChannel() != null) {
+            lmOut.transferFrom(in, offset1, len);
+            return;
+        }
+        if (mReader.isMapped()) {
+            // 通道已关闭时映射仍然有效
+            lmOut.write(mReader.slice(offset1, (int) len));
+            return;
+        }
         int buf_len = 2048;
         long remaining = len;
         mReader.seek(offset1);
@@ -710,45 +950,149 @@ public class Elf implements Closeable {
         }
     }
 
+    private static Map<String, ItemHelper> buildIndex(List<ItemHelper> items) {
+        Map<String, ItemHelper> index = new HashMap<>(items.size() * 4 / 3 + 1);
+        for (ItemHelper item : items) {
+            if (!index.containsKey(item.oldval)) {
+                index.put(item.oldval, item);
+            }
+        }
+        return index;
+    }
+
+    private Map<String, ItemHelper> getIndex(List<ItemHelper> items) {
+        if (items == dy_items) {
+            return mDyIndex;
+        }
+        if (items == ro_items) {
+            return mRoIndex;
+        }
+        return buildIndex(items);
+    }
+
+    /**
+     * 按原字符串查找条目，重复的字符串返回第一个
+     */
+    public ItemHelper findItem(List<ItemHelper> items, String oldval) {
+        Map<String, ItemHelper> index = getIndex(items);
+        return index == null ? null : index.get(oldval);
+    }
+
+    /**
+     * 按原字符串应用一条译文，.dynstr和.rodata中相同的字符串都会被修改
+     *
+     * @return 修改的条目数
+     */
+    public int applyTranslation(String original, String translated) {
+        if (translated.equals("") || translated.equals(original)) {
+            return 0;
+        }
+        int count = 0;
+        ItemHelper item = findItem(dy_items, original);
+        if (item != null) {
+            item.newVal = translated;
+            count++;
+        }
+        item = ro_items == null ? null : findItem(ro_items, original);
+        if (item != null) {
+            item.newVal = translated;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 导出所有已修改的字符串
+     *
+     * @throws IOException
+     */
+    public void writeTranslations(TsvTranslations.Writer writer) throws IOException {
+        for (List<ItemHelper> items : Arrays.asList(dy_items, ro_items)) {
+            if (items == null) {
+                continue;
+            }
+            for (ItemHelper item : items) {
+                if (item.newVal != null && !item.newVal.equals("")) {
+                    writer.write(item.oldval, item.newVal);
+                }
+            }
+        }
+    }
+
     /**
      * 整理数据(字符串)
      **/
     @SuppressLint("DefaultLocale")
     public void sortStrData(List<String> source, List<String> target, List<ItemHelper> items) {
-        int index = 0;
-        for (String string : target) {
+        Map<String, ItemHelper> index = getIndex(items);
+        if (index == null) {
+            return;
+        }
+        int count = Math.min(source.size(), target.size());
+        for (int i = 0; i < count; i++) {
+            String string = target.get(i);
             if (!string.equals("")) {
-                int i = items.indexOf(new ItemHelper(source.get(index)));
-                if (i == -1) { // 乱码
+                ItemHelper item = index.get(source.get(i));
+                if (item == null) { // 乱码
                     continue;
                 }
-
-                ItemHelper item = items.get(i);
                 item.newVal = string;
             }
-            index++;
         }
     }
 
-    public void writeRodataBytes() {
+    /**
+     * 把修改后的字符串写回RoData
+     *
+     * @return 是否有字符串被修改
+     */
+    public boolean writeRodataBytes() {
+        Elf_Shdr roData = getSectionByName(SHN_RODATA);
+        return roData != null && writeRodataBytes(new ArrayList<>(), null, roData);
+    }
+
+    /**
+     * 每个修改的字符串作为一个区域写入，.rodata的其余部分直接从原文件复制
+     *
+     * @param relayout 不为null时，被重定位引用的更长的字符串被复制到新段，
+     *                 引用改为指向新位置；原位置仍写入截断后的字符串，供代码中的引用使用
+     */
+    private boolean writeRodataBytes(List<Region> regions, ElfRelayout relayout, Elf_Shdr roData) {
+        boolean changed = false;
+        // 每个条目在读取时都记录了偏移，直接在原位置修改
         for (ItemHelper item : ro_items) {
             if (item.newVal != null && !item.newVal.equals("")) {
-                byte[] s_data = item.data;
-                // 找到偏移位置
-                int pos = findBytesPos(mRoDataStringTable, s_data);
-                if (pos == -1) {
-                    continue;
-                }
-                byte[] data = item.newVal.getBytes();
-                for (byte b : data) { // 替换
-                    mRoDataStringTable[pos++] = b;
-                }
-                int len_s = s_data.length - data.length;
-                while (len_s-- > 0) {
-                    mRoDataStringTable[pos++] = 20; //替换成空格，以保证文件大小不变
+                changed = true;
+                if (relayout != null) {
+                    moveRodataString(item, relayout, roData.getAddr() + item.offset);
                 }
+                regions.add(new Region(roData.getOffset() + item.offset, replaceRodataBytes(item)));
             }
         }
+        return changed;
+    }
+
+    private static void moveRodataString(ItemHelper item, ElfRelayout relayout, long vaddr) {
+        byte[] data = item.encode(item.newVal);
+        if (data.length <= item.getByteLength() || !relayout.isReferenced(vaddr)) {
+            return;
+        }
+        // 加上结尾的0
+        byte[] terminated = Arrays.copyOf(data, data.length + (item.utf16 ? 2 : 1));
+        relayout.redirect(vaddr, relayout.append(terminated, item.utf16 ? 2 : 1));
+    }
+
+    /**
+     * @return 替换原字符串的字节，长度和原字符串相同
+     */
+    private static byte[] replaceRodataBytes(ItemHelper item) {
+        int oldLength = item.getByteLength();
+        byte[] data = item.encode(item.newVal);
+        // 超出原字符串长度的部分会覆盖后面的数据，只写入原长度；剩余部分补0，字符串在新的结尾处结束，文件大小不变
+        int len = item.utf16 ? Math.min(data.length, oldLength) & ~1 : truncateUtf8(data, oldLength);
+        byte[] bytes = new byte[oldLength];
+        System.arraycopy(data, 0, bytes, 0, len);
+        return bytes;
     }
 
     public static abstract class Ehdr {
@@ -813,6 +1157,8 @@ public class Elf implements Closeable {
         public abstract long getOffset();
 
         public abstract int getSize();
+
+        public abstract long getAddr();
     }
 
     // --- Begin symbol table ---
@@ -896,6 +1242,11 @@ public class Elf implements Closeable {
         public int getSize() {
             return sh_size;
         }
+
+        @Override
+        public long getAddr() {
+            return sh_addr & 0xffffffffL;
+        }
     }
 
     // Symbol table entries for ELF32.
@@ -1046,6 +1397,11 @@ public class Elf implements Closeable {
         public int getSize() {
             return (int) sh_size;
         }
+
+        @Override
+        public long getAddr() {
+            return sh_addr;
+        }
     }
 
     // Symbol table entries for ELF64.
@@ -1059,10 +1415,23 @@ public class Elf implements Closeable {
         }
     }
 
+    static final class Region {
+        final long offset;
+        final byte[] data;
+
+        Region(long offset, byte[] data) {
+            this.offset = offset;
+            this.data = data;
+        }
+    }
+
     public static class ItemHelper {
         public String oldval;
         public String newVal;
         public byte[] data;
+        public int offset = -1; //在字符串表中的偏移
+        public int length = -1; //字节长度
+        public boolean utf16; //是否为UTF-16LE编码
         public int sym_offset = -1; //符号索引
 
         public ItemHelper() {
@@ -1072,6 +1441,18 @@ public class Elf implements Closeable {
             this.oldval = val;
         }
 
+        byte[] encode(String value) {
+            return utf16 ? value.getBytes(StandardCharsets.UTF_16LE) : value.getBytes();
+        }
+
+        byte[] getOriginalBytes() {
+            return data != null ? data : encode(oldval);
+        }
+
+        int getByteLength() {
+            return length != -1 ? length : getOriginalBytes().length;
+        }
+
         @Override
         public boolean equals(Object object) {
             return oldval.equals(((ItemHelper) object).oldval);
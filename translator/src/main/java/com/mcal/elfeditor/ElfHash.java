@@ -0,0 +1,311 @@
+package com.mcal.elfeditor;
+
+import com.mcal.elfeditor.io.LEDataInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 符号hash表(.hash和.gnu.hash)的读取、查找和重建
+ * <p>
+ * 符号名都以"字符串表+偏移"的形式传入，避免为每个符号创建String
+ */
+final class ElfHash {
+
+    private ElfHash() {
+    }
+
+    /**
+     * SysV ELF hash
+     */
+    static int sysv(byte[] strtab, int offset) {
+        int hash = 0;
+        for (int i = offset; i < strtab.length && strtab[i] != 0; i++) {
+            hash = (hash << 4) + (strtab[i] & 0xff);
+            int x = hash & 0xf0000000;
+            if (x != 0) {
+                hash ^= x >>> 24;
+            }
+            hash &= ~x;
+        }
+        return hash;
+    }
+
+    /**
+     * GNU hash (djb2)
+     */
+    static int gnu(byte[] strtab, int offset) {
+        int hash = 5381;
+        for (int i = offset; i < strtab.length && strtab[i] != 0; i++) {
+            hash = hash * 33 + (strtab[i] & 0xff);
+        }
+        return hash;
+    }
+
+    /**
+     * 比较name和字符串表中offset处以0结尾的字符串
+     */
+    static boolean nameEquals(byte[] name, byte[] strtab, int offset) {
+        if (offset < 0 || offset + name.length >= strtab.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (strtab[offset + i] != name[i]) {
+                return false;
+            }
+        }
+        return strtab[offset + name.length] == 0;
+    }
+
+    private static byte[] withNul(byte[] name) {
+        byte[] s = new byte[name.length + 1];
+        System.arraycopy(name, 0, s, 0, name.length);
+        return s;
+    }
+
+    /**
+     * .hash
+     */
+    static final class SysV {
+        private final int[] buckets;
+        private final int[] chains;
+
+        private SysV(int[] buckets, int[] chains) {
+            this.buckets = buckets;
+            this.chains = chains;
+        }
+
+        static SysV read(LEDataInputStream r, int size) throws IOException {
+            int nbucket = r.readInt();
+            int nchain = r.readInt();
+            int actual = nbucket * 4 + nchain * 4 + 8;
+            if (nbucket <= 0 || nchain < 0 || size != actual) {
+                throw new IOException("Error reading hash table (read " + actual + "bytes, expected to " + "read "
+                        + size + "bytes).");
+            }
+            return new SysV(r.readIntArray(nbucket), r.readIntArray(nchain));
+        }
+
+        int size() {
+            return 8 + (buckets.length + chains.length) * 4;
+        }
+
+        /**
+         * @param names 各符号名在strtab中的偏移
+         * @return 符号索引，没有找到为-1
+         */
+        int find(byte[] name, byte[] strtab, int[] names) {
+            int hash = sysv(withNul(name), 0);
+            for (int i = buckets[(hash & 0x7fffffff) % buckets.length]; i != 0 && i < chains.length; i = chains[i]) {
+                if (i < names.length && nameEquals(name, strtab, names[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 保持桶数不变，按新的符号名重建，结果和原表大小相同
+         */
+        byte[] rebuild(byte[] strtab, int[] names, ByteOrder order) {
+            final int nbucket = buckets.length;
+            final int nchain = chains.length;
+            int[] newBuckets = new int[nbucket];
+            int[] newChains = new int[nchain];
+            // 倒序插入到链表头部，每条链保持索引从小到大
+            for (int i = Math.min(nchain, names.length) - 1; i > 0; i--) {
+                int b = (sysv(strtab, names[i]) & 0x7fffffff) % nbucket;
+                newChains[i] = newBuckets[b];
+                newBuckets[b] = i;
+            }
+            ByteBuffer out = ByteBuffer.allocate(size()).order(order);
+            out.putInt(nbucket);
+            out.putInt(nchain);
+            out.asIntBuffer().put(newBuckets).put(newChains);
+            return out.array();
+        }
+    }
+
+    /**
+     * .gnu.hash
+     */
+    static final class Gnu {
+        private final boolean is64bit;
+        private final int symOffset;
+        private final int bloomShift;
+        private final long[] bloom;
+        private final int[] buckets;
+        private final int[] chain;
+        private final int size;
+
+        private Gnu(boolean is64bit, int symOffset, int bloomShift, long[] bloom, int[] buckets, int[] chain,
+                    int size) {
+            this.is64bit = is64bit;
+            this.symOffset = symOffset;
+            this.bloomShift = bloomShift;
+            this.bloom = bloom;
+            this.buckets = buckets;
+            this.chain = chain;
+            this.size = size;
+        }
+
+        /**
+         * @param symbolCount .dynsym中符号的个数
+         */
+        static Gnu read(LEDataInputStream r, int size, boolean is64bit, int symbolCount) throws IOException {
+            int nbucket = r.readInt();
+            int symOffset = r.readInt();
+            int bloomSize = r.readInt();
+            int bloomShift = r.readInt();
+            int chainCount = symbolCount - symOffset;
+            int actual = 16 + bloomSize * (is64bit ? 8 : 4) + nbucket * 4 + Math.max(chainCount, 0) * 4;
+            if (nbucket <= 0 || bloomSize <= 0 || symOffset < 0 || chainCount < 0 || actual > size) {
+                throw new IOException("Error reading gnu hash table (need " + actual + "bytes, section has "
+                        + size + "bytes).");
+            }
+            long[] bloom = new long[bloomSize];
+            for (int i = 0; i < bloomSize; i++) {
+                bloom[i] = is64bit ? r.readLong() : r.readInt() & 0xffffffffL;
+            }
+            return new Gnu(is64bit, symOffset, bloomShift, bloom, r.readIntArray(nbucket), r.readIntArray(chainCount),
+                    size);
+        }
+
+        private int wordBits() {
+            return is64bit ? 64 : 32;
+        }
+
+        private boolean maybeContains(int hash) {
+            final int bits = wordBits();
+            long word = bloom[(int) (((hash & 0xffffffffL) / bits) % bloom.length)];
+            long mask = 1L << ((hash & 0xffffffffL) % bits) | 1L << (((hash & 0xffffffffL) >>> bloomShift) % bits);
+            return (word & mask) == mask;
+        }
+
+        /**
+         * 先用bloom过滤器排除不存在的符号，再沿桶中的链查找
+         *
+         * @return 符号索引，没有找到为-1
+         */
+        int find(byte[] name, byte[] strtab, int[] names) {
+            int hash = gnu(withNul(name), 0);
+            if (!maybeContains(hash)) {
+                return -1;
+            }
+            int i = buckets[(int) ((hash & 0xffffffffL) % buckets.length)];
+            if (i < symOffset) {
+                return -1;
+            }
+            for (; i - symOffset < chain.length; i++) {
+                int value = chain[i - symOffset];
+                if ((value | 1) == (hash | 1) && i < names.length && nameEquals(name, strtab, names[i])) {
+                    return i;
+                }
+                if ((value & 1) != 0) {
+                    break;
+                }
+            }
+            return -1;
+        }
+
+        int getSymOffset() {
+            return symOffset;
+        }
+
+        /**
+         * 检查新的符号名是否仍使symOffset之后的符号按桶有序
+         *
+         * @return 不再有序时返回按桶稳定排序后的顺序，order[新索引]=原索引；仍然有序时为null
+         */
+        int[] sortOrder(byte[] strtab, int[] names) {
+            final int count = chain.length;
+            final int nbucket = buckets.length;
+            final int[] bucket = new int[count];
+            boolean sorted = true;
+            for (int i = 0; i < count; i++) {
+                bucket[i] = bucketOf(gnu(strtab, names[symOffset + i]), nbucket);
+                if (i > 0 && bucket[i] < bucket[i - 1]) {
+                    sorted = false;
+                }
+            }
+            if (sorted) {
+                return null;
+            }
+            // 计数排序，同一个桶中保持原来的顺序
+            int[] start = new int[nbucket + 1];
+            for (int b : bucket) {
+                start[b + 1]++;
+            }
+            for (int b = 0; b < nbucket; b++) {
+                start[b + 1] += start[b];
+            }
+            int[] order = new int[symOffset + count];
+            for (int i = 0; i < symOffset; i++) {
+                order[i] = i;
+            }
+            for (int i = 0; i < count; i++) {
+                order[symOffset + start[bucket[i]]++] = symOffset + i;
+            }
+            return order;
+        }
+
+        /**
+         * 按新的符号名重建，符号应已按sortOrder排好。如果符号仍不按桶有序(无法调整符号顺序时)，
+         * 就退化成只有一个桶，剩余空间补0，结果和原表大小相同
+         */
+        byte[] rebuild(byte[] strtab, int[] names, ByteOrder order) {
+            final int count = chain.length;
+            int[] hashes = new int[count];
+            for (int i = 0; i < count; i++) {
+                hashes[i] = gnu(strtab, names[symOffset + i]);
+            }
+            int nbucket = buckets.length;
+            for (int i = 1; i < count; i++) {
+                if (bucketOf(hashes[i], nbucket) < bucketOf(hashes[i - 1], nbucket)) {
+                    nbucket = 1;
+                    break;
+                }
+            }
+
+            final int bits = wordBits();
+            long[] newBloom = new long[bloom.length];
+            int[] newBuckets = new int[nbucket];
+            int[] newChain = new int[count];
+            for (int i = 0; i < count; i++) {
+                long h = hashes[i] & 0xffffffffL;
+                newBloom[(int) ((h / bits) % newBloom.length)] |= 1L << (h % bits) | 1L << ((h >>> bloomShift) % bits);
+                int b = bucketOf(hashes[i], nbucket);
+                if (newBuckets[b] == 0) {
+                    newBuckets[b] = symOffset + i;
+                }
+                boolean last = i == count - 1 || bucketOf(hashes[i + 1], nbucket) != b;
+                newChain[i] = last ? hashes[i] | 1 : hashes[i] & ~1;
+            }
+
+            ByteBuffer out = ByteBuffer.allocate(size).order(order);
+            out.putInt(nbucket);
+            out.putInt(symOffset);
+            out.putInt(newBloom.length);
+            out.putInt(bloomShift);
+            for (long word : newBloom) {
+                if (is64bit) {
+                    out.putLong(word);
+                } else {
+                    out.putInt((int) word);
+                }
+            }
+            for (int b : newBuckets) {
+                out.putInt(b);
+            }
+            for (int c : newChain) {
+                out.putInt(c);
+            }
+            return out.array();
+        }
+
+        private static int bucketOf(int hash, int nbucket) {
+            return (int) ((hash & 0xffffffffL) % nbucket);
+        }
+    }
+}
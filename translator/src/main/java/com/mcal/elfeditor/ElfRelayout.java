@@ -0,0 +1,449 @@
+package com.mcal.elfeditor;
+
+import com.mcal.elfeditor.io.LEDataInputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在文件末尾追加一个只读的PT_LOAD段，存放变长后放不回原位置的数据
+ * <p>
+ * 程序头表的大小不能改变，新段占用一个PT_NULL或PT_NOTE程序头的位置。
+ * 指向被移动数据的引用(.dynamic中的条目、.dynstr的节头和RELATIVE重定位)
+ * 在这里被修改，所有修改都以Elf.Region的形式返回，由Elf按偏移顺序写出
+ */
+final class ElfRelayout {
+    // Dynamic table tags
+    private static final int DT_NULL = 0;
+    private static final int DT_NEEDED = 1;
+    private static final int DT_STRTAB = 5;
+    private static final int DT_STRSZ = 10;
+    private static final int DT_SONAME = 14;
+    private static final int DT_RPATH = 15;
+    private static final int DT_RUNPATH = 29;
+    // Relocation section types
+    private static final int SHT_RELA = 4;
+    private static final int SHT_REL = 9;
+    private static final int SHT_RELR = 19;
+    // Machines
+    private static final int EM_386 = 3;
+    private static final int EM_ARM = 40;
+    private static final int EM_X86_64 = 62;
+    private static final int EM_AARCH64 = 183;
+    private static final int EM_RISCV = 243;
+
+    private final Elf elf;
+    private final LEDataInputStream reader;
+    private final ByteOrder order;
+    private final boolean is64bit;
+    private final int wordSize;
+    private final long fileSize;
+
+    private final Segment[] segments;
+    // 可以被新段替换的程序头，没有为-1
+    private final int slot;
+    private final Elf.Elf_Shdr dynamicSection;
+    private final long[] dynTags;
+    private final long[] dynValues;
+    private boolean dynamicChanged;
+
+    // 重定位中保存的指针：指针所在的文件偏移和指针的值
+    private long[] refOffsets = new long[64];
+    private long[] refValues = new long[64];
+    private int refCount;
+    private long[] sortedValues;
+
+    // 新段在文件中的偏移和虚拟地址
+    private final long baseOffset;
+    private final long baseAddr;
+    private final long align;
+    private final ByteArrayOutputStream appended = new ByteArrayOutputStream();
+    private final Map<Long, Long> moved = new HashMap<>();
+    private final List<Elf.Region> sectionHeaders = new ArrayList<>();
+
+    ElfRelayout(Elf elf) throws IOException {
+        this.elf = elf;
+        this.reader = elf.getReader();
+        this.order = elf.isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        this.is64bit = elf.is64bit();
+        this.wordSize = is64bit ? 8 : 4;
+        this.fileSize = reader.size;
+
+        final Elf.Ehdr h = elf.getHeader();
+        ByteBuffer phdrs = read(h.getProgramOffset(), h.e_phnum * h.e_phentsize);
+        segments = new Segment[h.e_phnum];
+        int nullSlot = -1;
+        int noteSlot = -1;
+        long maxAlign = 0x1000;
+        long end = 0;
+        for (int i = 0; i < segments.length; i++) {
+            phdrs.position(i * h.e_phentsize);
+            Segment s = segments[i] = Segment.read(phdrs, is64bit);
+            if (s.type == Elf.PT_NULL && nullSlot == -1) {
+                nullSlot = i;
+            } else if (s.type == Elf.PT_NOTE && noteSlot == -1) {
+                noteSlot = i;
+            } else if (s.type == Elf.PT_LOAD) {
+                maxAlign = Math.max(maxAlign, s.align);
+                end = Math.max(end, s.vaddr + s.memsz);
+            }
+        }
+        slot = nullSlot != -1 ? nullSlot : noteSlot;
+        align = maxAlign;
+        baseOffset = alignUp(fileSize, 16);
+        // 文件偏移和虚拟地址对页大小同余，新段不需要在文件中按页对齐
+        baseAddr = alignUp(end, align) + baseOffset % align;
+
+        Elf.Elf_Shdr dynamic = null;
+        for (Elf.Elf_Shdr section : elf.getSectionHeaders()) {
+            if (section.sh_type == Elf.SHT_DYNAMIC && dynamic == null) {
+                dynamic = section;
+            }
+        }
+        dynamicSection = dynamic;
+        if (dynamic != null) {
+            ByteBuffer buf = read(dynamic.getOffset(), dynamic.getSize());
+            int count = dynamic.getSize() / (wordSize * 2);
+            dynTags = new long[count];
+            dynValues = new long[count];
+            for (int i = 0; i < count; i++) {
+                dynTags[i] = getWord(buf);
+                dynValues[i] = getWord(buf);
+            }
+        } else {
+            dynTags = dynValues = new long[0];
+        }
+        readRelocations(h.e_machine & 0xffff);
+    }
+
+    private static long alignUp(long value, long alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    private static int relativeType(int machine) {
+        switch (machine) {
+            case EM_386:
+            case EM_X86_64:
+                return 8;
+            case EM_ARM:
+                return 23;
+            case EM_AARCH64:
+                return 1027;
+            case EM_RISCV:
+                return 3;
+            default:
+                return -1;
+        }
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+        reader.seek(offset);
+        reader.readFully(data);
+        return ByteBuffer.wrap(data).order(order);
+    }
+
+    private long getWord(ByteBuffer buf) {
+        return is64bit ? buf.getLong() : buf.getInt() & 0xffffffffL;
+    }
+
+    private byte[] word(long value) {
+        ByteBuffer buf = ByteBuffer.allocate(wordSize).order(order);
+        if (is64bit) {
+            buf.putLong(value);
+        } else {
+            buf.putInt((int) value);
+        }
+        return buf.array();
+    }
+
+    /**
+     * 虚拟地址在文件中的偏移，不在任何PT_LOAD段的文件内容中时返回-1
+     */
+    private long toFileOffset(long vaddr) {
+        for (Segment s : segments) {
+            if (s.type == Elf.PT_LOAD && vaddr >= s.vaddr && vaddr + wordSize <= s.vaddr + s.filesz) {
+                return s.offset + (vaddr - s.vaddr);
+            }
+        }
+        return -1;
+    }
+
+    private void addReference(long fileOffset, long value) {
+        if (refCount == refOffsets.length) {
+            refOffsets = Arrays.copyOf(refOffsets, refCount * 2);
+            refValues = Arrays.copyOf(refValues, refCount * 2);
+        }
+        refOffsets[refCount] = fileOffset;
+        refValues[refCount] = value;
+        refCount++;
+    }
+
+    /**
+     * 指针保存在r_offset处的重定位(REL和RELR)
+     */
+    private void addImplicitReference(long vaddr) throws IOException {
+        long offset = toFileOffset(vaddr);
+        if (offset == -1) {
+            return;
+        }
+        reader.seek(offset);
+        addReference(offset, is64bit ? reader.readLong() : reader.readInt() & 0xffffffffL);
+    }
+
+    /**
+     * 收集RELATIVE重定位指向的地址。Android的压缩重定位(APS2)不被识别，
+     * 其中引用的数据不能被移动
+     */
+    private void readRelocations(int machine) throws IOException {
+        final int relative = relativeType(machine);
+        for (Elf.Elf_Shdr section : elf.getSectionHeaders()) {
+            if (section.sh_type == SHT_RELR) {
+                ByteBuffer buf = read(section.getOffset(), section.getSize());
+                long where = 0;
+                while (buf.remaining() >= wordSize) {
+                    long entry = getWord(buf);
+                    if ((entry & 1) == 0) {
+                        addImplicitReference(entry);
+                        where = entry + wordSize;
+                    } else {
+                        long bits = entry >>> 1;
+                        for (int i = 0; bits != 0; i++, bits >>>= 1) {
+                            if ((bits & 1) != 0) {
+                                addImplicitReference(where + (long) i * wordSize);
+                            }
+                        }
+                        where += (long) (wordSize * 8 - 1) * wordSize;
+                    }
+                }
+            } else if ((section.sh_type == SHT_REL || section.sh_type == SHT_RELA) && relative != -1) {
+                final boolean rela = section.sh_type == SHT_RELA;
+                final int entSize = wordSize * (rela ? 3 : 2);
+                ByteBuffer buf = read(section.getOffset(), section.getSize());
+                int count = section.getSize() / entSize;
+                for (int i = 0; i < count; i++) {
+                    buf.position(i * entSize);
+                    long offset = getWord(buf);
+                    long info = getWord(buf);
+                    long type = is64bit ? info & 0xffffffffL : info & 0xff;
+                    if (type != relative) {
+                        continue;
+                    }
+                    if (rela) {
+                        addReference(section.getOffset() + (long) i * entSize + wordSize * 2L, getWord(buf));
+                    } else {
+                        addImplicitReference(offset);
+                    }
+                }
+            }
+        }
+        sortedValues = Arrays.copyOf(refValues, refCount);
+        Arrays.sort(sortedValues);
+    }
+
+    /**
+     * 是否可以追加新段
+     */
+    boolean canAppend() {
+        return slot != -1 && dynamicSection != null && (is64bit || baseAddr < 0x80000000L);
+    }
+
+    /**
+     * 是否有RELATIVE重定位指向vaddr，只有这样的数据才能被移动
+     */
+    boolean isReferenced(long vaddr) {
+        return Arrays.binarySearch(sortedValues, vaddr) >= 0;
+    }
+
+    /**
+     * 把数据追加到新段
+     *
+     * @return 数据在新段中的虚拟地址
+     */
+    long append(byte[] data, int alignment) {
+        while (appended.size() % alignment != 0) {
+            appended.write(0);
+        }
+        long vaddr = baseAddr + appended.size();
+        appended.write(data, 0, data.length);
+        return vaddr;
+    }
+
+    /**
+     * 把指向oldAddr的RELATIVE重定位改为指向newAddr
+     */
+    void redirect(long oldAddr, long newAddr) {
+        moved.put(oldAddr, newAddr);
+    }
+
+    /**
+     * 修改.dynamic中的DT_STRTAB和DT_STRSZ，以及在字符串表中被移动的库名
+     *
+     * @param movedNames 原偏移到新偏移
+     */
+    void setStringTable(long addr, long size, Map<Integer, Integer> movedNames) {
+        for (int i = 0; i < dynTags.length && dynTags[i] != DT_NULL; i++) {
+            int tag = (int) dynTags[i];
+            if (tag == DT_STRTAB) {
+                dynValues[i] = addr;
+            } else if (tag == DT_STRSZ) {
+                dynValues[i] = size;
+            } else if (tag == DT_NEEDED || tag == DT_SONAME || tag == DT_RPATH || tag == DT_RUNPATH) {
+                Integer offset = movedNames.get((int) dynValues[i]);
+                if (offset != null) {
+                    dynValues[i] = offset;
+                }
+            }
+        }
+        dynamicChanged = true;
+    }
+
+    /**
+     * 让节头指向新段中的数据
+     */
+    void moveSection(Elf.Elf_Shdr section, long addr, long size) throws IOException {
+        final Elf.Ehdr h = elf.getHeader();
+        long offset = h.getSectionOffset() + (long) section.index * h.e_shentsize;
+        ByteBuffer buf = read(offset, h.e_shentsize);
+        long fileOffset = baseOffset + (addr - baseAddr);
+        if (is64bit) {
+            buf.putLong(16, addr);
+            buf.putLong(24, fileOffset);
+            buf.putLong(32, size);
+        } else {
+            buf.putInt(12, (int) addr);
+            buf.putInt(16, (int) fileOffset);
+            buf.putInt(20, (int) size);
+        }
+        sectionHeaders.add(new Elf.Region(offset, buf.array()));
+    }
+
+    /**
+     * @return 需要重写的区域，没有追加数据时为空
+     */
+    List<Elf.Region> finish() {
+        List<Elf.Region> regions = new ArrayList<>();
+        if (appended.size() == 0) {
+            return regions;
+        }
+        for (int i = 0; i < refCount; i++) {
+            Long target = moved.get(refValues[i]);
+            if (target != null) {
+                regions.add(new Elf.Region(refOffsets[i], word(target)));
+            }
+        }
+        if (dynamicChanged) {
+            ByteBuffer buf = ByteBuffer.allocate(dynamicSection.getSize()).order(order);
+            for (int i = 0; i < dynTags.length; i++) {
+                if (is64bit) {
+                    buf.putLong(dynTags[i]).putLong(dynValues[i]);
+                } else {
+                    buf.putInt((int) dynTags[i]).putInt((int) dynValues[i]);
+                }
+            }
+            regions.add(new Elf.Region(dynamicSection.getOffset(), buf.array()));
+        }
+        regions.addAll(sectionHeaders);
+        regions.add(new Elf.Region(elf.getHeader().getProgramOffset(), buildProgramHeaders()));
+
+        byte[] tail = new byte[(int) (baseOffset - fileSize) + appended.size()];
+        byte[] data = appended.toByteArray();
+        System.arraycopy(data, 0, tail, tail.length - data.length, data.length);
+        regions.add(new Elf.Region(fileSize, tail));
+        return regions;
+    }
+
+    /**
+     * 去掉被替换的程序头，把新段放在最后一个PT_LOAD之后，
+     * PT_LOAD必须按虚拟地址从小到大排列
+     */
+    private byte[] buildProgramHeaders() {
+        Segment load = new Segment();
+        load.type = Elf.PT_LOAD;
+        load.flags = Elf.PF_R;
+        load.offset = baseOffset;
+        load.vaddr = load.paddr = baseAddr;
+        load.filesz = load.memsz = appended.size();
+        load.align = align;
+
+        List<Segment> list = new ArrayList<>(Arrays.asList(segments));
+        list.remove(slot);
+        int insert = 0;
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).type == Elf.PT_LOAD) {
+                insert = i + 1;
+            }
+        }
+        list.add(insert, load);
+
+        final Elf.Ehdr h = elf.getHeader();
+        ByteBuffer buf = ByteBuffer.allocate(h.e_phnum * h.e_phentsize).order(order);
+        for (int i = 0; i < list.size(); i++) {
+            buf.position(i * h.e_phentsize);
+            list.get(i).write(buf, is64bit);
+        }
+        return buf.array();
+    }
+
+    private static final class Segment {
+        int type;
+        int flags;
+        long offset;
+        long vaddr;
+        long paddr;
+        long filesz;
+        long memsz;
+        long align;
+
+        static Segment read(ByteBuffer buf, boolean is64bit) {
+            Segment s = new Segment();
+            s.type = buf.getInt();
+            if (is64bit) {
+                s.flags = buf.getInt();
+                s.offset = buf.getLong();
+                s.vaddr = buf.getLong();
+                s.paddr = buf.getLong();
+                s.filesz = buf.getLong();
+                s.memsz = buf.getLong();
+                s.align = buf.getLong();
+            } else {
+                s.offset = buf.getInt() & 0xffffffffL;
+                s.vaddr = buf.getInt() & 0xffffffffL;
+                s.paddr = buf.getInt() & 0xffffffffL;
+                s.filesz = buf.getInt() & 0xffffffffL;
+                s.memsz = buf.getInt() & 0xffffffffL;
+                s.flags = buf.getInt();
+                s.align = buf.getInt() & 0xffffffffL;
+            }
+            return s;
+        }
+
+        void write(ByteBuffer buf, boolean is64bit) {
+            buf.putInt(type);
+            if (is64bit) {
+                buf.putInt(flags);
+                buf.putLong(offset);
+                buf.putLong(vaddr);
+                buf.putLong(paddr);
+                buf.putLong(filesz);
+                buf.putLong(memsz);
+                buf.putLong(align);
+            } else {
+                buf.putInt((int) offset);
+                buf.putInt((int) vaddr);
+                buf.putInt((int) paddr);
+                buf.putInt((int) filesz);
+                buf.putInt((int) memsz);
+                buf.putInt(flags);
+                buf.putInt((int) align);
+            }
+        }
+    }
+}
@@ -75,19 +75,25 @@ import com.google.android.material.floatingactionbutton.ExtendedFloatingActionBu
 import com.google.android.material.textfield.TextInputLayout;
 import com.mcal.materialdesign.view.CenteredToolBar;
 import com.mcal.materialdesign.widgets.SnackBar;
+import com.mcal.elfeditor.utils.StringFilter;
+import com.mcal.elfeditor.utils.TsvTranslations;
 import com.mcal.translator.R;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -98,7 +104,11 @@ public class MainActivity extends AppCompatActivity {
     public static List<String> mTypes;
     private final int TVERY_LIGHT_BLUE = Color.argb(100, 51, 204, 255);
     private final int TVERY_LIGHT_GREY = Color.argb(50, 204, 204, 204);
-    private final List<Integer> filteredList = new ArrayList<>();
+    // 在后台线程中过滤字符串
+    private final StringFilter stringFilter = new StringFilter();
+    // 搜索结果，按位置从小到大排列
+    private int[] filtered = StringFilter.NONE;
+    private FilterTask filterTask;
     // 存储字符串的集合
     public List<String> txtOriginal = new ArrayList<>();
     // 存储修改后的字符串的集合
@@ -147,22 +157,7 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void afterTextChanged(Editable s) {
-            filteredList.clear();
-            searchPosition = 0;
-            String text = s.toString().toLowerCase();
-            if (text.equals("")) {
-                return;
-            }
-            for (int i = 0; i < txtOriginal.size(); i++) {
-                String str = txtOriginal.get(i);
-                if (str.toLowerCase().contains(text)) {
-                    filteredList.add(i);
-                }
-            }
-            mAdapter.notifyDataSetChanged();
-            if (!filteredList.isEmpty()) {
-                scroll(filteredList.get(searchPosition));
-            }
+            startFilter(s.toString());
         }
 
         @Override
@@ -237,6 +232,42 @@ public class MainActivity extends AppCompatActivity {
         return false;
     }
 
+    /**
+     * 在后台过滤字符串，正在进行的上一次过滤会被取消
+     */
+    private void startFilter(String query) {
+        clearFilter();
+        searchPosition = 0;
+        String text = query.toLowerCase();
+        if (text.equals("")) {
+            mAdapter.notifyDataSetChanged();
+            return;
+        }
+        filterTask = new FilterTask();
+        filterTask.execute(text);
+    }
+
+    /**
+     * 字符串列表改变后重新执行当前的搜索
+     */
+    private void refilter() {
+        if (searchWrap.getVisibility() == LinearLayout.VISIBLE) {
+            startFilter(searchField.getText().toString());
+        }
+    }
+
+    private void clearFilter() {
+        if (filterTask != null) {
+            filterTask.cancel(false);
+            filterTask = null;
+        }
+        filtered = StringFilter.NONE;
+    }
+
+    private boolean isFiltered(int position) {
+        return Arrays.binarySearch(filtered, position) >= 0;
+    }
+
     /**
      * 初始化容器
      **/
@@ -254,7 +285,7 @@ public class MainActivity extends AppCompatActivity {
     public void onBackPressed() {
         if (searchWrap.getVisibility() == LinearLayout.VISIBLE) {
             searchWrap.setVisibility(LinearLayout.GONE);
-            filteredList.clear();
+            clearFilter();
             mAdapter.notifyDataSetChanged();
             return;
         }
@@ -290,15 +321,15 @@ public class MainActivity extends AppCompatActivity {
         searchField.addTextChangedListener(searchWatcher);
         searchField.setOnKeyListener((v, keyCode, event) -> {
             if (event.getAction() == KeyEvent.ACTION_DOWN && keyCode == KeyEvent.KEYCODE_ENTER) {
-                if (searchPosition + 1 < filteredList.size()) {
+                if (searchPosition + 1 < filtered.length) {
                     searchPosition++;
                 } else {
                     searchPosition = 0;
                 }
-                if (filteredList.isEmpty()) {
+                if (filtered.length == 0) {
                     st(R.string.not_found);
                 } else {
-                    scroll(filteredList.get(searchPosition));
+                    scroll(filtered[searchPosition]);
                 }
                 return true;
             }
@@ -307,7 +338,7 @@ public class MainActivity extends AppCompatActivity {
         if (savedInstanceState != null && savedInstanceState.containsKey("opened_file")) {
             openedFile = savedInstanceState.getString("opened_file");
             try {
-                open(new FileInputStream(openedFile));
+                open(new File(openedFile));
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -352,12 +383,12 @@ public class MainActivity extends AppCompatActivity {
         Toast.makeText(this, s, Toast.LENGTH_SHORT).show();
     }
 
-    private void open(InputStream resInputStream) {
+    private void open(File file) {
         // 初始化一个线程用来解析资源文件
-        AsyncTask<InputStream, Integer, String> task = new ParseTask();
+        AsyncTask<File, Integer, String> task = new ParseTask();
         try {
             // 开启该线程
-            task.execute(resInputStream);
+            task.execute(file);
         } catch (OutOfMemoryError e) {
             showMessage(this, getString(R.string.out_of_memory)).show();
             return;
@@ -375,11 +406,35 @@ public class MainActivity extends AppCompatActivity {
      * ELF解析器
      *
      * @param callBack 用来存放结果
-     * @param is       文件输入流
+     * @param file     文件，以内存映射的方式读取
      **/
-    public void parseELF(ResourceCallBack callBack, InputStream is)
+    public void parseELF(ResourceCallBack callBack, File file)
             throws UnknownFormatConversionException, IOException {
-        elfParser = new Elf(new ByteArrayInputStream(InputStream2ByteArray(is)), callBack);
+        if (elfParser != null) {
+            elfParser.close();
+        }
+        elfParser = new Elf(file, callBack);
+    }
+
+    /**
+     * 选择要导入的TSV文件
+     */
+    private void pickTranslations() {
+        DialogProperties properties = new DialogProperties();
+        properties.selection_mode = DialogConfigs.SINGLE_MODE;
+        properties.selection_type = DialogConfigs.FILE_SELECT;
+        properties.root = new File(ScopedStorage.getRootDirectory().getAbsolutePath());
+        properties.extensions = new String[]{".tsv", ".TSV"};
+        FilePickerDialog dialog = new FilePickerDialog(this, properties, R.style.AlertDialogTheme);
+        dialog.setTitle(R.string.pickTsv);
+        dialog.setPositiveBtnName(getString(R.string.choose_button_label));
+        dialog.setNegativeBtnName(getString(R.string.cancel_button_label));
+        dialog.setDialogSelectionListener(files -> {
+            for (String path : files) {
+                new ImportTask().execute(path);
+            }
+        });
+        dialog.show();
     }
 
     /**
@@ -408,15 +463,55 @@ public class MainActivity extends AppCompatActivity {
     // 保存ELF字符串
     @SuppressLint("DefaultLocale")
     public void writeELFString(String output) throws IOException {
+        sortCurrentCategory();
+        OutputStream fos = new FileOutputStream(output);
+        elfParser.writeELF(fos);
+        fos.close();
+    }
+
+    /**
+     * 当前显示的字符串对应的条目
+     */
+    private List<Elf.ItemHelper> getCurrentItems() {
         // 整理RoData
         if (textCategory.getText().toString().equals("rodata")) {
-            elfParser.sortStrData(txtOriginal, txtTranslated, elfParser.ro_items);
+            return elfParser.ro_items;
         } else { // 整理Dynstr
-            elfParser.sortStrData(txtOriginal, txtTranslated, elfParser.dy_items);
+            return elfParser.dy_items;
+        }
+    }
+
+    /**
+     * 把列表中修改的字符串写入条目
+     */
+    private void sortCurrentCategory() {
+        elfParser.sortStrData(txtOriginal, txtTranslated, getCurrentItems());
+    }
+
+    /**
+     * 把已修改的字符串保存到翻译记忆库
+     */
+    private void rememberTranslations() {
+        Map<String, String> translations = new HashMap<>();
+        collectTranslations(elfParser.dy_items, translations);
+        collectTranslations(elfParser.ro_items, translations);
+        try {
+            TranslationMemory.getInstance(this).putAll(translations);
+        } catch (RuntimeException e) {
+            // 记忆库写入失败不影响文件的保存
+            e.printStackTrace();
+        }
+    }
+
+    private static void collectTranslations(List<Elf.ItemHelper> items, Map<String, String> out) {
+        if (items == null) {
+            return;
+        }
+        for (Elf.ItemHelper item : items) {
+            if (item.newVal != null && !item.newVal.equals("") && !item.newVal.equals(item.oldval)) {
+                out.put(item.oldval, item.newVal);
+            }
         }
-        OutputStream fos = new FileOutputStream(output);
-        elfParser.writeELF(fos);
-        fos.close();
     }
 
     @Override
@@ -433,7 +528,7 @@ public class MainActivity extends AppCompatActivity {
         } /*else if (itemId == R.id.open) {
             if (searchWrap.getVisibility() == LinearLayout.VISIBLE) {
                 searchWrap.setVisibility(LinearLayout.GONE);
-                filteredList.clear();
+                clearFilter();
                 mAdapter.notifyDataSetChanged();
             }
             if (isChanged || checkChanged()) { // 保存文件
@@ -443,6 +538,14 @@ public class MainActivity extends AppCompatActivity {
             }
         }*/ else if (itemId == R.id.save) {
             showSaveDialog(false);
+        } else if (itemId == R.id.export_translations) {
+            if (elfParser != null) {
+                new ExportTask().execute(openedFile + ".tsv");
+            }
+        } else if (itemId == R.id.import_translations) {
+            if (elfParser != null) {
+                pickTranslations();
+            }
         } else if (itemId == R.id.opened) {
             if (openedFile != null) {
                 new AlertDialog.Builder(this).
@@ -491,7 +594,7 @@ public class MainActivity extends AppCompatActivity {
             } else {
                 searchWrap.setVisibility(LinearLayout.GONE);
                 searchField.clearFocus();
-                filteredList.clear();
+                clearFilter();
                 mAdapter.notifyDataSetChanged();
             }
         }
@@ -524,13 +627,7 @@ public class MainActivity extends AppCompatActivity {
                 File file = new File(path);
                 if (file.getName().endsWith(".so") || file.getName().endsWith(".SO")) {
                     openedFile = file.getAbsolutePath();
-                    try {
-                        open(new FileInputStream(openedFile));
-                    } catch (FileNotFoundException e) {
-                        e.printStackTrace();
-                        openedFile = null;
-                        showMessage(MainActivity.this, e.toString()).show();
-                    }
+                    open(file);
                 } else {
                     new SnackBar(this, getString(R.string.noFile)).show();
                 }
@@ -548,6 +645,8 @@ public class MainActivity extends AppCompatActivity {
     class GetTask extends AsyncTask<String, Void, Void> {
         // 进度条
         private ProgressDialog dlg;
+        // 从翻译记忆库中应用的译文数量
+        private int applied;
 
         // 执行耗时任务
         @Override
@@ -577,18 +676,44 @@ public class MainActivity extends AppCompatActivity {
                     }
                 }
                 initList();
+                stringFilter.setStrings(txtOriginal);
+                applyRemembered();
             }
             return null;
         }
 
+        /**
+         * 从翻译记忆库中批量取出已有的译文
+         */
+        private void applyRemembered() {
+            Map<String, String> remembered;
+            try {
+                remembered = TranslationMemory.getInstance(MainActivity.this).getAll(txtOriginal);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return;
+            }
+            for (int i = 0; i < txtOriginal.size(); i++) {
+                String translated = remembered.get(txtOriginal.get(i));
+                if (translated != null && !translated.equals(txtOriginal.get(i)) && txtTranslated.get(i).equals("")) {
+                    txtTranslated.set(i, translated);
+                    applied++;
+                }
+            }
+        }
+
         // 耗时任务执行完毕后的事件处理
         @Override
         protected void onPostExecute(Void result) {
             // 隐藏进度条
             dlg.dismiss();
+            if (applied > 0) {
+                st(getString(R.string.tm_applied, applied));
+            }
             // 通知数据适配器更新数据
             // mAdapter.notifyDataSetInvalidated();
             mAdapter.notifyDataSetInvalidated();
+            refilter();
         }
 
         // 耗时任务开始前执行的任务
@@ -599,16 +724,44 @@ public class MainActivity extends AppCompatActivity {
             dlg.setCancelable(false);
             dlg.setTitle(R.string.parsing);
             dlg.show();
+            clearFilter();
             txtOriginal.clear();
             txtTranslated.clear();
         }
     }
 
+    /**
+     * 在后台线程中过滤字符串的任务，结果按位置从小到大排列
+     */
+    @SuppressLint("StaticFieldLeak")
+    class FilterTask extends AsyncTask<String, Void, int[]> {
+
+        @Override
+        protected int[] doInBackground(String... params) {
+            return stringFilter.filter(params[0], this::isCancelled);
+        }
+
+        @Override
+        protected void onPostExecute(int[] result) {
+            // 已经开始了新的过滤
+            if (result == null || filterTask != this) {
+                return;
+            }
+            filterTask = null;
+            filtered = result;
+            searchPosition = 0;
+            mAdapter.notifyDataSetChanged();
+            if (filtered.length > 0) {
+                scroll(filtered[0]);
+            }
+        }
+    }
+
     /**
      * @author zhaohai 一个用来解析ARSC的线程
      */
     @SuppressLint("StaticFieldLeak")
-    class ParseTask extends AsyncTask<InputStream, Integer, String> {
+    class ParseTask extends AsyncTask<File, Integer, String> {
         // 进度条
         private ProgressDialog dlg;
         // 资源回调接口
@@ -616,7 +769,7 @@ public class MainActivity extends AppCompatActivity {
 
         // 执行耗时任务
         @Override
-        protected String doInBackground(InputStream... params) {
+        protected String doInBackground(File... params) {
 
             try {
                 parseELF(callback, params[0]);
@@ -705,6 +858,7 @@ public class MainActivity extends AppCompatActivity {
                 e.printStackTrace();
                 return e.toString();
             }
+            rememberTranslations();
             return getString(R.string.success);
         }
 
@@ -719,7 +873,12 @@ public class MainActivity extends AppCompatActivity {
                 showMessage(MainActivity.this, result).show();
                 return;
             }
-            st(R.string.success);
+            if (elfParser.isHashDegraded()) {
+                // .gnu.hash只剩一个桶，符号查找变慢
+                Toast.makeText(MainActivity.this, R.string.gnu_hash_degraded, Toast.LENGTH_LONG).show();
+            } else {
+                st(R.string.success);
+            }
             if (exit) {
                 finish();
             } else {
@@ -731,7 +890,9 @@ public class MainActivity extends AppCompatActivity {
                         txtTranslated.set(i, "");
                     }
                 }
+                stringFilter.setStrings(txtOriginal);
                 mAdapter.notifyDataSetChanged();
+                refilter();
             }
         }
 
@@ -751,6 +912,132 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    /**
+     * 导出所有修改过的字符串
+     */
+    @SuppressLint("StaticFieldLeak")
+    class ExportTask extends AsyncTask<String, Void, String> {
+        private ProgressDialog dlg;
+
+        @Override
+        protected void onPreExecute() {
+            dlg = new ProgressDialog(MainActivity.this);
+            dlg.setCancelable(false);
+            dlg.setTitle(R.string.exporting);
+            dlg.show();
+        }
+
+        @Override
+        protected String doInBackground(String... params) {
+            sortCurrentCategory();
+            try (TsvTranslations.Writer writer = new TsvTranslations.Writer(
+                    new OutputStreamWriter(new FileOutputStream(params[0]), StandardCharsets.UTF_8))) {
+                elfParser.writeTranslations(writer);
+                return getString(R.string.exported, writer.getCount(), params[0]);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return e.toString();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(String result) {
+            dlg.dismiss();
+            showMessage(MainActivity.this, result).setTitle(R.string.export_translations).show();
+        }
+    }
+
+    /**
+     * 逐行导入翻译对，按原字符串索引应用到所有条目
+     */
+    @SuppressLint("StaticFieldLeak")
+    class ImportTask extends AsyncTask<String, Void, String> {
+        private ProgressDialog dlg;
+        private int applied;
+
+        @Override
+        protected void onPreExecute() {
+            dlg = new ProgressDialog(MainActivity.this);
+            dlg.setCancelable(false);
+            dlg.setTitle(R.string.importing);
+            dlg.show();
+        }
+
+        @Override
+        protected String doInBackground(String... params) {
+            // 先保存列表中的修改，避免被导入的内容覆盖后又写回
+            sortCurrentCategory();
+            try (Reader reader = new InputStreamReader(new FileInputStream(params[0]), StandardCharsets.UTF_8)) {
+                TsvTranslations.read(reader, (original, translated) ->
+                        applied += elfParser.applyTranslation(original, translated));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return e.toString();
+            }
+            // 刷新当前列表的译文
+            List<Elf.ItemHelper> items = getCurrentItems();
+            for (int i = 0; i < txtOriginal.size(); i++) {
+                Elf.ItemHelper item = elfParser.findItem(items, txtOriginal.get(i));
+                if (item != null && item.newVal != null) {
+                    txtTranslated.set(i, item.newVal);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(String error) {
+            dlg.dismiss();
+            if (error != null) {
+                showMessage(MainActivity.this, error).show();
+                return;
+            }
+            if (applied > 0) {
+                isChanged = true;
+            }
+            mAdapter.notifyDataSetChanged();
+            st(getString(R.string.imported, applied));
+        }
+    }
+
+    /**
+     * 在翻译记忆库中模糊查找相似字符串的译文
+     */
+    @SuppressLint("StaticFieldLeak")
+    class SuggestTask extends AsyncTask<String, Void, List<TranslationMemory.Match>> {
+        private final AppCompatEditText target;
+
+        SuggestTask(AppCompatEditText target) {
+            this.target = target;
+        }
+
+        @Override
+        protected List<TranslationMemory.Match> doInBackground(String... params) {
+            try {
+                return TranslationMemory.getInstance(MainActivity.this).findSimilar(params[0], 0.5f, 10);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return Collections.emptyList();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(List<TranslationMemory.Match> matches) {
+            if (matches.isEmpty()) {
+                st(R.string.tm_no_suggestions);
+                return;
+            }
+            String[] items = new String[matches.size()];
+            for (int i = 0; i < items.length; i++) {
+                TranslationMemory.Match match = matches.get(i);
+                items[i] = Math.round(match.score * 100) + "%  " + match.translated + "\n" + match.original;
+            }
+            new AlertDialog.Builder(MainActivity.this).setTitle(R.string.tm_suggestions)
+                    .setItems(items, (dialog, which) -> target.setText(matches.get(which).translated))
+                    .setNegativeButton(R.string.cancel, null).create().show();
+        }
+    }
+
     // 数据适配器
     public class StringListAdapter extends BaseAdapter {
 
@@ -797,7 +1084,7 @@ public class MainActivity extends AppCompatActivity {
                     // 向当前位置添加新的内容，以此实现文本的更新
                     txtTranslated.set(position, s.toString());
                     isChanged = true;
-                    if (!filteredList.contains(position)) {
+                    if (!isFiltered(position)) {
                         if (s.length() > 0) {
                             view.setBackgroundColor(TVERY_LIGHT_GREY);
                         } else {
@@ -819,7 +1106,7 @@ public class MainActivity extends AppCompatActivity {
             };
 
             String trans = txtTranslated.get(position);
-            if (filteredList.contains(position)) {
+            if (isFiltered(position)) {
                 view.setBackgroundColor(TVERY_LIGHT_BLUE);
             } else if (!trans.equals("")) {
                 view.setBackgroundColor(TVERY_LIGHT_GREY);
@@ -843,7 +1130,7 @@ public class MainActivity extends AppCompatActivity {
             // 获取显示原来的字符串的控件
             final AppCompatTextView txtOriginalView = view.findViewById(R.id.txtOriginal);
             // 获取用来修改的文本框
-            AppCompatEditText txtTranslatedView = view.findViewById(R.id.txtTranslated);
+            final AppCompatEditText txtTranslatedView = view.findViewById(R.id.txtTranslated);
 
             final String originalStr = txtOriginal.get(position);
             // 显示原来的字符串
@@ -851,21 +1138,26 @@ public class MainActivity extends AppCompatActivity {
             // 显示修改后的字符串
             // txtTranslatedView.setText(originalStr);
             txtTranslatedView.setText(trans);
-            txtTranslatedView.setFilters(new InputFilter[]{(source, start, end, dest, dstart, dend) -> {
-                int len = 0;
-                boolean more = false;
-                do {
-                    SpannableStringBuilder builder = new SpannableStringBuilder(dest).replace(dstart, dend,
-                            source.subSequence(start, end));
-                    len = builder.toString().getBytes().length;
-                    more = len > originalStr.getBytes().length;
-                    if (more) {
-                        end--;
-                        source = source.subSequence(start, end);
-                    }
-                } while (more);
-                return source;
-            }});
+            if (elfParser.isResizable(getCurrentItems(), originalStr)) {
+                // 更长的字符串会被移到文件末尾的新段中
+                txtTranslatedView.setFilters(new InputFilter[0]);
+            } else {
+                txtTranslatedView.setFilters(new InputFilter[]{(source, start, end, dest, dstart, dend) -> {
+                    int len = 0;
+                    boolean more = false;
+                    do {
+                        SpannableStringBuilder builder = new SpannableStringBuilder(dest).replace(dstart, dend,
+                                source.subSequence(start, end));
+                        len = builder.toString().getBytes().length;
+                        more = len > originalStr.getBytes().length;
+                        if (more) {
+                            end--;
+                            source = source.subSequence(start, end);
+                        }
+                    } while (more);
+                    return source;
+                }});
+            }
             // 为文本框设置内容改变的监听器
             txtTranslatedView.addTextChangedListener(textWatcher);
             View.OnLongClickListener longclick_listener = v1 -> {
@@ -897,6 +1189,11 @@ public class MainActivity extends AppCompatActivity {
                     }
                     return true;
                 });
+                MenuItem mi3 = popup.getMenu().add(0, 1012, 0, getString(R.string.tm_suggestions));
+                mi3.setOnMenuItemClickListener(m -> {
+                    new SuggestTask(txtTranslatedView).execute(originalStr);
+                    return true;
+                });
                 popup.show();
             });
             txtOriginalView.setOnLongClickListener(longclick_listener);
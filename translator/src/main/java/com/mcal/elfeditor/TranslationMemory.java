@@ -0,0 +1,224 @@
+package com.mcal.elfeditor;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 翻译记忆库，以原字符串为键保存译文，并用三元组索引做模糊匹配
+ */
+public final class TranslationMemory extends SQLiteOpenHelper {
+    // SQLite单条语句中参数个数的上限是999
+    private static final int BATCH_SIZE = 500;
+    // 模糊匹配时先按公共三元组个数取出的候选数量
+    private static final int CANDIDATES = 50;
+
+    private static TranslationMemory instance;
+
+    private TranslationMemory(Context context) {
+        super(context, "translation_memory.db", null, 1);
+    }
+
+    public static synchronized TranslationMemory getInstance(Context context) {
+        if (instance == null) {
+            instance = new TranslationMemory(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 字符串的三元组集合，首尾补空格，不区分大小写
+     */
+    static Set<String> trigrams(String text) {
+        String s = " " + text.toLowerCase(Locale.ROOT) + " ";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            grams.add(s.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Dice系数 2|A∩B| / (|A| + |B|)
+     */
+    static float dice(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1f;
+        }
+        Set<String> small = a.size() < b.size() ? a : b;
+        Set<String> large = small == a ? b : a;
+        int common = 0;
+        for (String gram : small) {
+            if (large.contains(gram)) {
+                common++;
+            }
+        }
+        return 2f * common / (a.size() + b.size());
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE Translations (Original TEXT PRIMARY KEY, Translated TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE Trigrams (Gram TEXT NOT NULL, Original TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX TrigramsGram ON Trigrams (Gram)");
+        db.execSQL("CREATE INDEX TrigramsOriginal ON Trigrams (Original)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // 记忆库可以重新积累，升级时直接重建
+        db.execSQL("DROP TABLE IF EXISTS Trigrams");
+        db.execSQL("DROP TABLE IF EXISTS Translations");
+        onCreate(db);
+    }
+
+    /**
+     * 在一个事务中保存多条译文，已有的原字符串会被覆盖
+     */
+    public void putAll(Map<String, String> translations) {
+        if (translations.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement insertGram = db.compileStatement("INSERT INTO Trigrams (Gram, Original) VALUES (?, ?)");
+        db.beginTransaction();
+        try {
+            for (Map.Entry<String, String> entry : translations.entrySet()) {
+                String original = entry.getKey();
+                ContentValues values = new ContentValues(2);
+                values.put("Original", original);
+                values.put("Translated", entry.getValue());
+                db.insertWithOnConflict("Translations", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                db.delete("Trigrams", "Original = ?", new String[]{original});
+                for (String gram : trigrams(original)) {
+                    insertGram.bindString(1, gram);
+                    insertGram.bindString(2, original);
+                    insertGram.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertGram.close();
+        }
+    }
+
+    /**
+     * 批量查找完全相同的原字符串的译文
+     *
+     * @return 原字符串到译文，没有记录的不包含在内
+     */
+    public Map<String, String> getAll(Collection<String> originals) {
+        Map<String, String> result = new HashMap<>();
+        SQLiteDatabase db = getReadableDatabase();
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        for (String original : originals) {
+            batch.add(original);
+            if (batch.size() == BATCH_SIZE) {
+                queryBatch(db, batch, result);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            queryBatch(db, batch, result);
+        }
+        return result;
+    }
+
+    private static void queryBatch(SQLiteDatabase db, List<String> batch, Map<String, String> result) {
+        StringBuilder sql = new StringBuilder("SELECT Original, Translated FROM Translations WHERE Original IN (");
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        sql.append(')');
+        try (Cursor cursor = db.rawQuery(sql.toString(), batch.toArray(new String[0]))) {
+            while (cursor.moveToNext()) {
+                result.put(cursor.getString(0), cursor.getString(1));
+            }
+        }
+    }
+
+    /**
+     * 模糊查找相似的原字符串。先用三元组索引取出公共三元组最多的候选，
+     * 再计算Dice系数过滤和排序
+     *
+     * @param minScore 最低相似度，0到1之间
+     */
+    public List<Match> findSimilar(String text, float minScore, int limit) {
+        Set<String> grams = trigrams(text);
+        if (grams.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String[] args = sample(grams, BATCH_SIZE);
+        StringBuilder sql = new StringBuilder("SELECT Original FROM Trigrams WHERE Gram IN (");
+        for (int i = 0; i < args.length; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        sql.append(") GROUP BY Original ORDER BY COUNT(*) DESC LIMIT ").append(CANDIDATES);
+
+        SQLiteDatabase db = getReadableDatabase();
+        List<String> candidates = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(sql.toString(), args)) {
+            while (cursor.moveToNext()) {
+                candidates.add(cursor.getString(0));
+            }
+        }
+        Map<String, String> translations = getAll(candidates);
+        List<Match> matches = new ArrayList<>();
+        for (String candidate : candidates) {
+            String translated = translations.get(candidate);
+            if (translated == null) {
+                continue;
+            }
+            float score = dice(grams, trigrams(candidate));
+            if (score >= minScore) {
+                matches.add(new Match(candidate, translated, score));
+            }
+        }
+        Collections.sort(matches, (a, b) -> Float.compare(b.score, a.score));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * 长字符串的三元组可能超过参数个数的上限，此时等间隔取出max个用于选取候选，
+     * 相似度仍按全部三元组计算
+     */
+    private static String[] sample(Set<String> grams, int max) {
+        String[] all = grams.toArray(new String[0]);
+        if (all.length <= max) {
+            return all;
+        }
+        Arrays.sort(all); // 相同的文本每次取出相同的三元组
+        String[] sampled = new String[max];
+        for (int i = 0; i < max; i++) {
+            sampled[i] = all[(int) ((long) i * all.length / max)];
+        }
+        return sampled;
+    }
+
+    public static final class Match {
+        public final String original;
+        public final String translated;
+        public final float score;
+
+        Match(String original, String translated, float score) {
+            this.original = original;
+            this.translated = translated;
+            this.score = score;
+        }
+    }
+}
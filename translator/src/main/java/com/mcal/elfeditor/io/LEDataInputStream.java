@@ -35,9 +35,16 @@ package com.mcal.elfeditor.io;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 public class LEDataInputStream {
     public long size;
@@ -53,6 +60,12 @@ public class LEDataInputStream {
      * 输入流
      */
     private InputStream is;
+    /**
+     * 内存映射的文件，只在以文件构造时使用
+     */
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
     private boolean mIsLittleEndian = true;
 
     public LEDataInputStream(byte[] data) throws IOException {
@@ -72,10 +85,73 @@ public class LEDataInputStream {
         size = in.available();
     }
 
+    /**
+     * 以内存映射的方式打开文件，不会把整个文件读入堆内存
+     *
+     * @throws IOException
+     */
+    public LEDataInputStream(File file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        try {
+            channel = raf.getChannel();
+            size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + size);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        work = new byte[8];
+    }
+
+    /**
+     * 是否为内存映射模式
+     */
+    public boolean isMapped() {
+        return mapped != null;
+    }
+
+    /**
+     * 获取文件通道，非内存映射模式时返回null
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * 截取一段数据，不复制内容，不影响当前读取位置
+     *
+     * @throws IOException
+     */
+    public ByteBuffer slice(long offset, int length) throws IOException {
+        if (mapped == null) {
+            throw new IOException("Unsupported");
+        }
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new EOFException("Slice out of range: " + offset + "+" + length);
+        }
+        ByteBuffer dup = mapped.duplicate();
+        dup.limit((int) offset + length);
+        dup.position((int) offset);
+        return dup.slice().order(mapped.order());
+    }
+
+    private void require(int n) throws EOFException {
+        if (mapped.remaining() < n) {
+            throw new EOFException();
+        }
+    }
+
     /**
      * 剩余未读取的数据大小
      */
     public int available() throws IOException {
+        if (mapped != null) {
+            return mapped.remaining();
+        }
         return is.available();
     }
 
@@ -83,11 +159,20 @@ public class LEDataInputStream {
      * 关闭流
      */
     public void close() throws IOException {
+        if (mapped != null) {
+            channel.close();
+            raf.close();
+            return;
+        }
         dis.close();
         is.close();
     }
 
     public void mark(int readlimit) throws IOException {
+        if (mapped != null) {
+            mapped.mark();
+            return;
+        }
         is.mark(readlimit);
     }
 
@@ -97,6 +182,17 @@ public class LEDataInputStream {
      * @throws IOException
      */
     public int read(byte[] buffer, int start, int end) throws IOException {
+        if (mapped != null) {
+            if (end == 0) {
+                return 0;
+            }
+            if (!mapped.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(end, mapped.remaining());
+            mapped.get(buffer, start, count);
+            return count;
+        }
         return dis.read(buffer, start, end);
     }
 
@@ -106,6 +202,10 @@ public class LEDataInputStream {
      * @throws IOException
      */
     public byte readByte() throws IOException {
+        if (mapped != null) {
+            require(1);
+            return mapped.get();
+        }
         return dis.readByte();
     }
 
@@ -115,7 +215,7 @@ public class LEDataInputStream {
      * @throws IOException
      */
     public void readFully(byte[] ba) throws IOException {
-        dis.readFully(ba, 0, ba.length);
+        readFully(ba, 0, ba.length);
     }
 
     /**
@@ -124,6 +224,11 @@ public class LEDataInputStream {
      * @throws IOException
      */
     public void readFully(byte[] ba, int off, int len) throws IOException {
+        if (mapped != null) {
+            require(len);
+            mapped.get(ba, off, len);
+            return;
+        }
         dis.readFully(ba, off, len);
     }
 
@@ -133,6 +238,10 @@ public class LEDataInputStream {
      * @throws IOException
      */
     public int readInt() throws IOException {
+        if (mapped != null) {
+            require(4);
+            return mapped.getInt();
+        }
         if (mIsLittleEndian) {
             dis.readFully(work, 0, 4);
             return (work[3]) << 24 | (work[2] & 0xff) << 16 | (work[1] & 0xff) << 8 | (work[0] & 0xff);
@@ -148,6 +257,12 @@ public class LEDataInputStream {
      */
     public int[] readIntArray(int length) throws IOException {
         int[] array = new int[length];
+        if (mapped != null) {
+            require(length * 4);
+            mapped.asIntBuffer().get(array);
+            mapped.position(mapped.position() + length * 4);
+            return array;
+        }
         for (int i = 0; i < length; i++) {
             array[i] = readInt();
         }
@@ -158,6 +273,10 @@ public class LEDataInputStream {
      * 读取一个64位长整型数据
      */
     public final long readLong() throws IOException {
+        if (mapped != null) {
+            require(8);
+            return mapped.getLong();
+        }
         if (mIsLittleEndian) {
             dis.readFully(work, 0, 8);
             return (long) (work[7]) << 56 | (long) (work[6] & 0xff) << 48 | (long) (work[5] & 0xff) << 40
@@ -193,6 +312,10 @@ public class LEDataInputStream {
      * @throws IOException
      */
     public short readShort() throws IOException {
+        if (mapped != null) {
+            require(2);
+            return mapped.getShort();
+        }
         if (mIsLittleEndian) {
             dis.readFully(work, 0, 2);
             return (short) ((work[1] & 0xff) << 8 | (work[0] & 0xff));
@@ -205,10 +328,19 @@ public class LEDataInputStream {
      * 读取一个16位的无符号Short型数据
      */
     public int readUnsignedShort() throws IOException {
+        if (mapped != null) {
+            // 与DataInputStream一致，按大端读取
+            require(2);
+            return (mapped.get() & 0xff) << 8 | (mapped.get() & 0xff);
+        }
         return dis.readUnsignedShort();
     }
 
     public void reset() throws IOException {
+        if (mapped != null) {
+            mapped.reset();
+            return;
+        }
         is.reset();
     }
 
@@ -221,7 +353,12 @@ public class LEDataInputStream {
      * @throws NoSuchFieldException
      */
     public void seek(long position) throws IOException {
-        if (is instanceof ByteArrayInputStream) {
+        if (mapped != null) {
+            if (position < 0 || position > size) {
+                throw new EOFException("Seek out of range: " + position);
+            }
+            mapped.position((int) position);
+        } else if (is instanceof ByteArrayInputStream) {
             Class<ByteArrayInputStream> clazz = ByteArrayInputStream.class;
             Field field;
             try {
@@ -239,6 +376,9 @@ public class LEDataInputStream {
 
     public void setIsLittleEndian(boolean isLittleEndian) {
         mIsLittleEndian = isLittleEndian;
+        if (mapped != null) {
+            mapped.order(isLittleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        }
     }
 
     /**
@@ -256,6 +396,10 @@ public class LEDataInputStream {
      * @throws IOException
      */
     public void skipBytes(int n) throws IOException {
+        if (mapped != null) {
+            mapped.position(mapped.position() + Math.min(Math.max(n, 0), mapped.remaining()));
+            return;
+        }
         dis.skipBytes(n);
     }
 
@@ -33,9 +33,13 @@
 
 package com.mcal.elfeditor.io;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 public class LEDataOutputStream {
 
@@ -43,12 +47,83 @@ public class LEDataOutputStream {
      * 二进制文件输出流
      */
     private DataOutputStream dos;
+    /**
+     * 输出文件的通道，输出不是文件时为null
+     */
+    private FileChannel channel;
+    /**
+     * 直接通过通道写入的字节数
+     */
+    private long transferred;
 
     /**
      * 构造函数
      */
     public LEDataOutputStream(OutputStream out) {
-        dos = new DataOutputStream(out);
+        if (out instanceof FileOutputStream) {
+            channel = ((FileOutputStream) out).getChannel();
+            dos = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        } else {
+            dos = new DataOutputStream(out);
+        }
+    }
+
+    /**
+     * 获取输出文件的通道
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * 从文件通道直接复制数据，不经过堆内存
+     *
+     * @param src      源文件通道
+     * @param position 源文件中的起始位置
+     * @param count    复制的长度
+     * @throws IOException
+     */
+    public void transferFrom(FileChannel src, long position, long count) throws IOException {
+        if (channel == null) {
+            throw new IOException("Unsupported");
+        }
+        dos.flush();
+        long remaining = count;
+        while (remaining > 0) {
+            long n = src.transferTo(position, remaining, channel);
+            if (n <= 0) {
+                throw new IOException("transferTo stalled at " + position);
+            }
+            position += n;
+            remaining -= n;
+        }
+        transferred += count;
+    }
+
+    /**
+     * 写入缓冲区中剩余的数据
+     *
+     * @throws IOException
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        if (channel != null) {
+            dos.flush();
+            int count = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            transferred += count;
+        } else if (buffer.hasArray()) {
+            dos.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            byte[] chunk = new byte[(int) Math.min(buffer.remaining(), 64 * 1024)];
+            while (buffer.hasRemaining()) {
+                int n = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, n);
+                dos.write(chunk, 0, n);
+            }
+        }
     }
 
     /**
@@ -67,7 +142,7 @@ public class LEDataOutputStream {
      * @return
      */
     public int size() {
-        return dos.size();
+        return (int) (dos.size() + transferred);
     }
 
     /**
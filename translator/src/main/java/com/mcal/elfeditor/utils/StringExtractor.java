@@ -0,0 +1,268 @@
+package com.mcal.elfeditor.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 从二进制数据中提取字符串，只记录偏移和长度，不复制内容
+ * <p>
+ * 以0结尾的UTF-8字符串和2字节对齐的UTF-16LE字符串都会被识别，
+ * 可打印字符比例太低或长度太短的数据被当作二进制数据忽略。
+ * 数据较大时按连续两个0字节的位置分块并行扫描，字符串不会跨越这样的位置，
+ * 所以结果和单线程扫描相同
+ */
+public class StringExtractor {
+    public static final int UTF8 = 0;
+    public static final int UTF16LE = 1;
+
+    // 小于这个大小时不分块
+    private static final int PARALLEL_THRESHOLD = 256 * 1024;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    // 所有提取共用的线程池，线程为守护线程，不需要关闭
+    private static ExecutorService executor;
+
+    private final int minLength;
+    private final int minUtf16Length;
+    private final float minPrintableRatio;
+
+    public StringExtractor() {
+        this(2, 4, 0.9f);
+    }
+
+    /**
+     * @param minLength         UTF-8字符串的最小字符数
+     * @param minUtf16Length    UTF-16字符串的最小字符数
+     * @param minPrintableRatio 可打印字符的最低比例
+     */
+    public StringExtractor(int minLength, int minUtf16Length, float minPrintableRatio) {
+        this.minLength = minLength;
+        this.minUtf16Length = minUtf16Length;
+        this.minPrintableRatio = minPrintableRatio;
+    }
+
+    private static boolean isPrintableAscii(int b) {
+        return (b >= 0x20 && b < 0x7f) || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "StringExtractor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    public Result extract(byte[] data) {
+        return extract(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * @param data 可以是内存映射的段，按绝对位置读取，不改变其position
+     */
+    public Result extract(ByteBuffer data) {
+        return extract(data, 0, data.limit());
+    }
+
+    public Result extract(ByteBuffer data, int from, int to) {
+        if (to - from < PARALLEL_THRESHOLD || THREADS < 2) {
+            Result result = new Result();
+            scan(data, from, to, result);
+            return result;
+        }
+        List<int[]> chunks = split(data, from, to, THREADS);
+        ExecutorService executor = getExecutor();
+        List<Future<Result>> futures = new ArrayList<>(chunks.size());
+        try {
+            for (final int[] chunk : chunks) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        Result result = new Result();
+                        scan(data, chunk[0], chunk[1], result);
+                        return result;
+                    }
+                }));
+            }
+            Result merged = new Result();
+            for (Future<Result> future : futures) {
+                merged.addAll(future.get());
+            }
+            return merged;
+        } catch (InterruptedException e) {
+            for (Future<Result> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 把[from, to)分成大约parts块，分界点都在连续两个0字节之后
+     */
+    private static List<int[]> split(ByteBuffer data, int from, int to, int parts) {
+        List<int[]> chunks = new ArrayList<>(parts);
+        int size = (to - from) / parts;
+        int start = from;
+        for (int i = 1; i < parts && start < to; i++) {
+            int boundary = Math.max(start, from + size * i);
+            while (boundary < to && !(boundary - from >= 2 && data.get(boundary - 1) == 0 && data.get(boundary - 2) == 0)) {
+                boundary++;
+            }
+            if (boundary >= to) {
+                break;
+            }
+            if (boundary > start) {
+                chunks.add(new int[]{start, boundary});
+                start = boundary;
+            }
+        }
+        chunks.add(new int[]{start, to});
+        return chunks;
+    }
+
+    private void scan(ByteBuffer data, int from, int to, Result result) {
+        int i = from;
+        while (i < to) {
+            if (data.get(i) == 0) {
+                i++;
+                continue;
+            }
+            // UTF-16字符串按2字节对齐
+            if ((i & 1) == 0) {
+                int chars = utf16Length(data, i, to);
+                if (chars >= minUtf16Length) {
+                    result.add(i, chars * 2, UTF16LE);
+                    i += chars * 2;
+                    continue;
+                }
+            }
+            int end = i;
+            while (end < to && data.get(end) != 0) {
+                end++;
+            }
+            if (acceptUtf8(data, i, end)) {
+                result.add(i, end - i, UTF8);
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * 从start开始连续的"可打印ASCII字符, 0"字节对的个数
+     */
+    private static int utf16Length(ByteBuffer data, int start, int to) {
+        int chars = 0;
+        for (int i = start; i + 1 < to && data.get(i + 1) == 0 && isPrintableAscii(data.get(i) & 0xff); i += 2) {
+            chars++;
+        }
+        return chars;
+    }
+
+    /**
+     * 检查UTF-8编码是否合法，并统计可打印字符的比例
+     */
+    private boolean acceptUtf8(ByteBuffer data, int start, int end) {
+        int chars = 0;
+        int printable = 0;
+        int i = start;
+        while (i < end) {
+            int b = data.get(i) & 0xff;
+            int extra;
+            if (b < 0x80) {
+                extra = 0;
+                if (isPrintableAscii(b)) {
+                    printable++;
+                }
+            } else if (b >= 0xc2 && b < 0xe0) {
+                extra = 1;
+            } else if (b >= 0xe0 && b < 0xf0) {
+                extra = 2;
+            } else if (b >= 0xf0 && b < 0xf5) {
+                extra = 3;
+            } else {
+                return false;
+            }
+            if (extra > 0 && i + extra >= end) {
+                return false;
+            }
+            for (int k = 1; k <= extra; k++) {
+                if ((data.get(i + k) & 0xc0) != 0x80) {
+                    return false;
+                }
+            }
+            if (extra > 0) {
+                // 多字节字符都是可打印的文字
+                printable++;
+            }
+            chars++;
+            i += extra + 1;
+        }
+        return chars >= minLength && printable >= chars * minPrintableRatio;
+    }
+
+    /**
+     * 提取结果，按偏移从小到大排列
+     */
+    public static final class Result {
+        private int count;
+        private int[] offsets = new int[64];
+        private int[] lengths = new int[64];
+        private byte[] encodings = new byte[64];
+
+        void add(int offset, int length, int encoding) {
+            if (count == offsets.length) {
+                int capacity = count * 2;
+                int[] o = new int[capacity];
+                int[] l = new int[capacity];
+                byte[] e = new byte[capacity];
+                System.arraycopy(offsets, 0, o, 0, count);
+                System.arraycopy(lengths, 0, l, 0, count);
+                System.arraycopy(encodings, 0, e, 0, count);
+                offsets = o;
+                lengths = l;
+                encodings = e;
+            }
+            offsets[count] = offset;
+            lengths[count] = length;
+            encodings[count] = (byte) encoding;
+            count++;
+        }
+
+        void addAll(Result other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.offsets[i], other.lengths[i], other.encodings[i]);
+            }
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public int getOffset(int index) {
+            return offsets[index];
+        }
+
+        /**
+         * 字节长度，不包含结尾的0
+         */
+        public int getLength(int index) {
+            return lengths[index];
+        }
+
+        public int getEncoding(int index) {
+            return encodings[index];
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.mcal.elfeditor.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不区分大小写的子串过滤
+ * <p>
+ * 新的查询包含上一次的查询时（例如继续输入），只在上一次的结果中查找；
+ * 字符串较多时建立三元组索引，先用索引取出候选再逐个确认
+ */
+public class StringFilter {
+    public static final int[] NONE = new int[0];
+    // 字符串数量达到这个值时才建立索引
+    private static final int INDEX_THRESHOLD = 5000;
+
+    private List<String> source;
+    private boolean dirty;
+    private String[] lowered = new String[0];
+    private Map<Long, int[]> index;
+    private String lastQuery;
+    private int[] lastMatches;
+
+    private static long trigram(String s, int i) {
+        return (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * 设置要过滤的字符串，内容在下一次过滤时才被读取
+     */
+    public synchronized void setStrings(List<String> strings) {
+        source = strings;
+        dirty = true;
+    }
+
+    private void refresh() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        String[] snapshot = source == null ? new String[0] : source.toArray(new String[0]);
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = snapshot[i].toLowerCase();
+        }
+        lowered = snapshot;
+        index = null;
+        lastQuery = null;
+        lastMatches = null;
+    }
+
+    private void buildIndex(CancelSignal signal) {
+        Map<Long, IntList> postings = new HashMap<>();
+        for (int i = 0; i < lowered.length; i++) {
+            if ((i & 0xff) == 0 && signal.isCancelled()) {
+                return;
+            }
+            String s = lowered[i];
+            for (int k = 0; k + 3 <= s.length(); k++) {
+                Long key = trigram(s, k);
+                IntList list = postings.get(key);
+                if (list == null) {
+                    list = new IntList();
+                    postings.put(key, list);
+                }
+                // 同一个字符串中重复的三元组只记录一次
+                if (list.size == 0 || list.data[list.size - 1] != i) {
+                    list.add(i);
+                }
+            }
+        }
+        Map<Long, int[]> built = new HashMap<>(postings.size() * 4 / 3 + 1);
+        for (Map.Entry<Long, IntList> entry : postings.entrySet()) {
+            built.put(entry.getKey(), entry.getValue().toArray());
+        }
+        index = built;
+    }
+
+    /**
+     * @param query 已经转为小写的查询
+     * @return 按位置从小到大排列的匹配结果，被取消时返回null
+     */
+    public synchronized int[] filter(String query, CancelSignal signal) {
+        refresh();
+        if (query.isEmpty()) {
+            return NONE;
+        }
+        int[] candidates = null;
+        if (lastQuery != null && query.contains(lastQuery)) {
+            candidates = lastMatches;
+        } else if (query.length() >= 3 && lowered.length >= INDEX_THRESHOLD) {
+            if (index == null) {
+                buildIndex(signal);
+                if (index == null) {
+                    return null;
+                }
+            }
+            candidates = lookup(query);
+        }
+
+        int[] matches = new int[candidates == null ? lowered.length : candidates.length];
+        int n = 0;
+        int count = candidates == null ? lowered.length : candidates.length;
+        for (int k = 0; k < count; k++) {
+            if ((k & 0x3ff) == 0 && signal.isCancelled()) {
+                return null;
+            }
+            int i = candidates == null ? k : candidates[k];
+            if (lowered[i].contains(query)) {
+                matches[n++] = i;
+            }
+        }
+        matches = Arrays.copyOf(matches, n);
+        lastQuery = query;
+        lastMatches = matches;
+        return matches;
+    }
+
+    /**
+     * 包含查询中所有三元组的字符串
+     */
+    private int[] lookup(String query) {
+        int[] result = null;
+        for (int k = 0; k + 3 <= query.length(); k++) {
+            int[] postings = index.get(trigram(query, k));
+            if (postings == null) {
+                return NONE;
+            }
+            result = result == null ? postings : intersect(result, postings);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public interface CancelSignal {
+        boolean isCancelled();
+    }
+
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
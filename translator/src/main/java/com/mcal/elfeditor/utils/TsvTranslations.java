@@ -0,0 +1,135 @@
+package com.mcal.elfeditor.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 以TSV格式逐行读写翻译对，每行为"原字符串\t译文"，
+ * 字符串中的反斜杠、制表符和换行符被转义，读写时只在内存中保存当前一行
+ */
+public class TsvTranslations {
+
+    private TsvTranslations() {
+    }
+
+    static String escape(String s) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String replacement;
+            switch (c) {
+                case '\\':
+                    replacement = "\\\\";
+                    break;
+                case '\t':
+                    replacement = "\\t";
+                    break;
+                case '\n':
+                    replacement = "\\n";
+                    break;
+                case '\r':
+                    replacement = "\\r";
+                    break;
+                default:
+                    if (sb != null) {
+                        sb.append(c);
+                    }
+                    continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(s.length() + 8);
+                sb.append(s, 0, i);
+            }
+            sb.append(replacement);
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    static String unescape(String s, int start, int end) {
+        int backslash = s.indexOf('\\', start);
+        if (backslash == -1 || backslash >= end) {
+            return s.substring(start, end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < end) {
+                char next = s.charAt(++i);
+                switch (next) {
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    default:
+                        sb.append(next);
+                        break;
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 逐行读取翻译对，没有制表符的行和空行被忽略
+     *
+     * @return 读取的翻译对数量
+     * @throws IOException
+     */
+    public static int read(Reader reader, PairHandler handler) throws IOException {
+        BufferedReader br = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        int count = 0;
+        String line;
+        while ((line = br.readLine()) != null) {
+            int tab = line.indexOf('\t');
+            if (tab <= 0) {
+                continue;
+            }
+            handler.onPair(unescape(line, 0, tab), unescape(line, tab + 1, line.length()));
+            count++;
+        }
+        return count;
+    }
+
+    public interface PairHandler {
+        void onPair(String original, String translated);
+    }
+
+    public static class Writer implements Closeable {
+        private final BufferedWriter out;
+        private int count;
+
+        public Writer(java.io.Writer out) {
+            this.out = out instanceof BufferedWriter ? (BufferedWriter) out : new BufferedWriter(out);
+        }
+
+        public void write(String original, String translated) throws IOException {
+            out.write(escape(original));
+            out.write('\t');
+            out.write(escape(translated));
+            out.write('\n');
+            count++;
+        }
+
+        /**
+         * 已写入的翻译对数量
+         */
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}